@@ -52,6 +52,7 @@ import java.util.Locale;
 
 import proguard.annotation.Keep;
 import proguard.annotation.KeepPublicProtectedClassMembers;
+import ru.nikitenkogleb.mpegencoder.BufferPool;
 import ru.nikitenkogleb.mpegencoder.MpegEncoder;
 import ru.nikitenkogleb.mpegencoder.MpegEncoder.Motion;
 
@@ -90,10 +91,6 @@ public final class MainActivity extends AppCompatActivity {
     /** The one seconds of video. */
     private static final int NUM_FRAMES = 131;
 
-    /** The input buffer. */
-    private static final ByteBuffer INPUT_BUFFER =
-            ByteBuffer.allocate(WIDTH * HEIGHT * 2);
-
     /** The content view. */
     @Nullable
     private VideoView mContentView = null;
@@ -257,10 +254,11 @@ public final class MainActivity extends AppCompatActivity {
 
             final MpegEncoder encoder =
                     MpegEncoder
-                            .from(INPUT_BUFFER, WIDTH, HEIGHT)
+                            .from(BufferPool.getDefault(), WIDTH, HEIGHT)
                             .fps(FRAME_RATE).motion(Motion.LOW)
                             .to(mFilePath, WIDTH, HEIGHT);
 
+            final ByteBuffer input = encoder.getInputBuffer();
             for (int i = 0; i < NUM_FRAMES; i++) {
                 if (isCancelled()) {
                     break;
@@ -269,8 +267,8 @@ public final class MainActivity extends AppCompatActivity {
                 try (final InputStream is = mAssetManager.open(fileNames[i])) {
                     final Bitmap bitmap = BitmapFactory.decodeStream(is, null, options);
                     if (bitmap != null) {
-                        INPUT_BUFFER.rewind();
-                        bitmap.copyPixelsToBuffer(INPUT_BUFFER);
+                        input.rewind();
+                        bitmap.copyPixelsToBuffer(input);
                     }
                 } catch (IOException exception) {
                     Log.w(TAG, exception);
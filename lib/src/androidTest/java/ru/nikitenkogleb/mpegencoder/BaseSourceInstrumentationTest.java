@@ -0,0 +1,113 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.test.InstrumentationRegistry;
+
+import java.io.File;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * Base Android Instrumentation Test of the encoded source files.
+ * <p>
+ * Encodes a plain and a rotated source before each test and removes them after it,
+ * along with the output file.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+public abstract class BaseSourceInstrumentationTest extends BaseInstrumentationTest {
+
+    /** The test source file name. */
+    private static final String SOURCE_FILE_NAME = "source.mp4";
+    /** The test rotated source file name. */
+    private static final String ROTATED_FILE_NAME = "rotated.mp4";
+
+    /** The test width of video. */
+    protected static final int WIDTH = 352;
+    /** The test height of video. */
+    protected static final int HEIGHT = 288;
+    /** The test frame-rate of video. */
+    protected static final int FRAME_RATE = 8;
+    /** The two seconds of video. */
+    protected static final int NUM_FRAMES = FRAME_RATE * 2;
+    /** The test rotation of the rotated source. */
+    protected static final int ROTATION = 90;
+
+    /** The output file name. */
+    @NonNull
+    private final String mOutputFileName;
+
+    /** The source file. */
+    @Nullable
+    protected File mSourceFile = null;
+    /** The rotated source file. */
+    @Nullable
+    protected File mRotatedFile = null;
+    /** The output file. */
+    @Nullable
+    protected File mOutputFile = null;
+
+    /**
+     * Constructs a new {@link BaseSourceInstrumentationTest}.
+     *
+     * @param outputFileName the output file name
+     */
+    protected BaseSourceInstrumentationTest(@NonNull String outputFileName) {
+        mOutputFileName = outputFileName;
+    }
+
+    /** Common "before" functionality. */
+    @Before
+    public final void setUpSources() throws Exception {
+        final Context context = InstrumentationRegistry.getContext();
+        mSourceFile = new File(context.getFilesDir(), SOURCE_FILE_NAME);
+        mRotatedFile = new File(context.getFilesDir(), ROTATED_FILE_NAME);
+        mOutputFile = new File(context.getFilesDir(), mOutputFileName);
+
+        encode(mSourceFile, 0);
+        encode(mRotatedFile, ROTATION);
+    }
+
+    /**
+     * Encodes red and blue frames with a key frame each second.
+     *
+     * @param file the source file
+     * @param rotation the orientation hint of the source
+     */
+    private static void encode(@NonNull File file, int rotation) {
+        final Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        final MpegEncoder encoder =
+                MpegEncoder.from(WIDTH, HEIGHT)
+                        .fps(FRAME_RATE).iFrame(1)
+                        .orientation(rotation)
+                        .to(file.getAbsolutePath(), WIDTH, HEIGHT);
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            bitmap.eraseColor(i % 2 == 0 ? Color.RED : Color.BLUE);
+            encoder.draw(bitmap);
+        }
+        encoder.close();
+        bitmap.recycle();
+    }
+
+    /** Common "after" functionality. */
+    @After
+    public final void tearDownSources() throws Exception {
+        assert mSourceFile != null && mRotatedFile != null && mOutputFile != null;
+        Assert.assertTrue(mSourceFile.delete());
+        Assert.assertTrue(mRotatedFile.delete());
+        Assert.assertTrue(!mOutputFile.exists() || mOutputFile.delete());
+    }
+}
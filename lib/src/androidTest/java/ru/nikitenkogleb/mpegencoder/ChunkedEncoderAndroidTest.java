@@ -0,0 +1,101 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.media.MediaExtractor;
+import android.support.annotation.NonNull;
+import android.support.test.InstrumentationRegistry;
+
+import java.io.File;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * The {@link ChunkedEncoder} Instrumentation Test.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+public class ChunkedEncoderAndroidTest extends BaseInstrumentationTest {
+
+    /** The test output file name. */
+    private static final String OUTPUT_FILE_NAME = "chunked.mp4";
+
+    /** The test width of video. */
+    private static final int WIDTH = 352;
+    /** The test height of video. */
+    private static final int HEIGHT = 288;
+    /** The test frame-rate of video. */
+    private static final int FRAME_RATE = 8;
+    /** The five seconds of video. */
+    private static final int NUM_FRAMES = FRAME_RATE * 5;
+
+    /**
+     * Test for {@link ChunkedEncoder} with one-second chunks.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testChunks() throws Exception {
+        final File file =
+                new File(InstrumentationRegistry.getContext().getFilesDir(), OUTPUT_FILE_NAME);
+        final int chunks = ChunkedEncoder
+                .from(MpegEncoder.from(WIDTH, HEIGHT).fps(FRAME_RATE).iFrame(1),
+                        new ChunkedEncoder.Source() {
+                            @Override
+                            public final void onDrawFrame(int index, @NonNull Bitmap bitmap) {
+                                bitmap.eraseColor(index % 2 == 0 ? Color.RED : Color.BLUE);
+                            }
+                        }, NUM_FRAMES)
+                .chunk(FRAME_RATE)
+                .to(file.getAbsolutePath(), WIDTH, HEIGHT);
+        Assert.assertEquals(NUM_FRAMES / FRAME_RATE, chunks);
+
+        final MediaExtractor extractor = new MediaExtractor();
+        extractor.setDataSource(file.getAbsolutePath());
+        extractor.selectTrack(0);
+        int samples = 0;
+        while (extractor.getSampleTime() >= 0) {
+            samples++;
+            extractor.advance();
+        }
+        extractor.release();
+        Assert.assertEquals(NUM_FRAMES, samples);
+        Assert.assertTrue(file.delete());
+    }
+
+    /**
+     * Test for {@link ChunkedEncoder#from(MpegEncoder.Builder, ChunkedEncoder.Source, int)}
+     * with the builders unsuitable for chunks.
+     */
+    @Test
+    public final void testBuilders() {
+        final ChunkedEncoder.Source source = new ChunkedEncoder.Source() {
+            @Override
+            public final void onDrawFrame(int index, @NonNull Bitmap bitmap) {
+                bitmap.eraseColor(Color.RED);
+            }
+        };
+        final MpegEncoder.Builder[] builders = {
+                MpegEncoder.from(WIDTH, HEIGHT)
+                        .bitRate(TargetBitRateController.throughput(WIDTH * HEIGHT)),
+                MpegEncoder.from(WIDTH, HEIGHT).keyFrames(1000),
+                MpegEncoder.from(WIDTH, HEIGHT).timeLapse(1000)
+        };
+        for (MpegEncoder.Builder builder : builders) {
+            try {
+                ChunkedEncoder.from(builder, source, NUM_FRAMES);
+                Assert.fail();
+            } catch (IllegalStateException exception) {
+                logd(exception.getMessage());
+            }
+        }
+    }
+}
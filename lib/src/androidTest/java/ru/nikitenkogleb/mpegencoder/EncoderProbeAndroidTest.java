@@ -0,0 +1,57 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import android.support.test.InstrumentationRegistry;
+
+import java.io.File;
+import java.util.List;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * The {@link EncoderProbe} Instrumentation Test.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+public class EncoderProbeAndroidTest extends BaseInstrumentationTest {
+
+    /** H.264 Advanced Video Coding. */
+    private static final String MIME_TYPE = "video/avc";
+
+    /** The test width of video. */
+    private static final int WIDTH = 352;
+    /** The test height of video. */
+    private static final int HEIGHT = 288;
+
+    /**
+     * Test for {@link EncoderProbe#getEncoders(File)} and {@link EncoderProbe#find}.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testProbe() throws Exception {
+        final File cacheDir = InstrumentationRegistry.getContext().getCacheDir();
+        final List<EncoderInfo> encoders = EncoderProbe.getEncoders(cacheDir);
+        Assert.assertFalse(encoders.isEmpty());
+        Assert.assertSame(encoders, EncoderProbe.getEncoders(cacheDir));
+
+        final EncoderInfo info = EncoderProbe.find(cacheDir, MIME_TYPE, WIDTH, HEIGHT);
+        Assert.assertNotNull(info);
+        Assert.assertTrue(info.isSurfaceSupported());
+        logd(info.toString());
+
+        final List<EncoderInfo> all = EncoderProbe.findAll(cacheDir, MIME_TYPE, WIDTH, HEIGHT);
+        Assert.assertEquals(info, all.get(0));
+        for (EncoderInfo encoder : all) {
+            Assert.assertTrue(encoder.isSizeSupported(WIDTH, HEIGHT));
+        }
+        Assert.assertTrue(new File(cacheDir, "mpegencoder.encoders").exists());
+    }
+}
@@ -0,0 +1,196 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.support.annotation.NonNull;
+import android.support.test.InstrumentationRegistry;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * The {@link EncoderScheduler} Instrumentation Test.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+public class EncoderSchedulerAndroidTest extends BaseInstrumentationTest {
+
+    /** The test width of video. */
+    private static final int WIDTH = 352;
+    /** The test height of video. */
+    private static final int HEIGHT = 288;
+    /** The test frame-rate of video. */
+    private static final int FRAME_RATE = 8;
+
+    /**
+     * Test for {@link EncoderScheduler} priorities, cancellation and warm starts.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testSchedule() throws Exception {
+        final File dir = InstrumentationRegistry.getContext().getFilesDir();
+        final File first = new File(dir, "first.mp4");
+        final File low = new File(dir, "low.mp4");
+        final File high = new File(dir, "high.mp4");
+        final File cancelled = new File(dir, "cancelled.mp4");
+        final MpegEncoder.Builder builder = MpegEncoder.from(WIDTH, HEIGHT).fps(FRAME_RATE);
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch proceed = new CountDownLatch(1);
+
+        final EncoderScheduler scheduler = new EncoderScheduler(1);
+        final Future<Void> blocking = scheduler.submit(builder, first.getAbsolutePath(),
+                WIDTH, HEIGHT, 0, new EncoderScheduler.Job() {
+                    @Override
+                    public final void onEncode(@NonNull MpegEncoder encoder) throws Exception {
+                        order.add(first.getName());
+                        started.countDown();
+                        proceed.await();
+                        drawFrames(encoder);
+                    }
+                });
+        started.await();
+        final Future<Void> lowJob = scheduler.submit(builder, low.getAbsolutePath(),
+                WIDTH, HEIGHT, 0, new Frames(low.getName(), order));
+        final Future<Void> highJob = scheduler.submit(builder, high.getAbsolutePath(),
+                WIDTH, HEIGHT, 1, new Frames(high.getName(), order));
+        final Future<Void> cancelledJob = scheduler.submit(builder, cancelled.getAbsolutePath(),
+                WIDTH, HEIGHT, -1, new Frames(cancelled.getName(), order));
+        Assert.assertEquals(3, scheduler.getQueuedJobs());
+        Assert.assertEquals(1, scheduler.getRunningJobs());
+
+        Assert.assertTrue(cancelledJob.cancel(false));
+        proceed.countDown();
+        blocking.get();
+        highJob.get();
+        lowJob.get();
+        while (scheduler.getRunningJobs() != 0) {
+            Thread.sleep(10);
+        }
+
+        Assert.assertEquals(Arrays.asList(first.getName(), high.getName(), low.getName()), order);
+        Assert.assertEquals(3, scheduler.getCompletedJobs());
+        Assert.assertEquals(1, scheduler.getCancelledJobs());
+        Assert.assertEquals(0, scheduler.getQueuedJobs());
+        Assert.assertTrue(scheduler.getMaxWaitTime() >= scheduler.getAverageWaitTime());
+        // Every job after the first one takes the encoder of the previous job
+        Assert.assertEquals(CodecPool.isSupported() ? 2 : 0, scheduler.getWarmStarts());
+        logd("Throughput: " + scheduler.getThroughput());
+        scheduler.close();
+
+        Assert.assertTrue(first.delete());
+        Assert.assertTrue(low.delete());
+        Assert.assertTrue(high.delete());
+        Assert.assertFalse(cancelled.exists());
+    }
+
+    /**
+     * Test for {@link EncoderScheduler} admission by the max jobs and the codec instances.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testAdmission() throws Exception {
+        final File dir = InstrumentationRegistry.getContext().getFilesDir();
+        final MpegEncoder.Builder builder = MpegEncoder.from(WIDTH, HEIGHT).fps(FRAME_RATE);
+        final EncoderInfo info = builder.findEncoder(WIDTH, HEIGHT);
+        final int maxJobs = 2, jobs = maxJobs + 1;
+        final int limit = info != null && info.getMaxInstances() != EncoderInfo.UNKNOWN ?
+                Math.min(info.getMaxInstances(), maxJobs) : maxJobs;
+        final CountDownLatch started = new CountDownLatch(limit);
+        final CountDownLatch proceed = new CountDownLatch(1);
+
+        final EncoderScheduler scheduler = new EncoderScheduler(maxJobs);
+        final File[] files = new File[jobs];
+        final List<Future<Void>> futures = new ArrayList<>(jobs);
+        for (int i = 0; i < jobs; i++) {
+            files[i] = new File(dir, "admission" + i + ".mp4");
+            futures.add(scheduler.submit(builder, files[i].getAbsolutePath(),
+                    WIDTH, HEIGHT, 0, new EncoderScheduler.Job() {
+                        @Override
+                        public final void onEncode(@NonNull MpegEncoder encoder)
+                                throws Exception {
+                            started.countDown();
+                            proceed.await();
+                            drawFrames(encoder);
+                        }
+                    }));
+        }
+        started.await();
+        Assert.assertEquals(limit, scheduler.getRunningJobs());
+        Assert.assertEquals(jobs - limit, scheduler.getQueuedJobs());
+
+        proceed.countDown();
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        while (scheduler.getRunningJobs() != 0) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(jobs, scheduler.getCompletedJobs());
+        scheduler.close();
+
+        for (File file : files) {
+            Assert.assertTrue(file.delete());
+        }
+    }
+
+    /**
+     * Draws one second of frames.
+     *
+     * @param encoder the encoder
+     */
+    private static void drawFrames(@NonNull MpegEncoder encoder) {
+        final Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        for (int i = 0; i < FRAME_RATE; i++) {
+            bitmap.eraseColor(i % 2 == 0 ? Color.RED : Color.BLUE);
+            encoder.draw(bitmap);
+        }
+        bitmap.recycle();
+    }
+
+    /** The job drawing one second of frames. */
+    private static final class Frames implements EncoderScheduler.Job {
+
+        /** The name of the job. */
+        @NonNull
+        private final String mName;
+        /** The start order of jobs. */
+        @NonNull
+        private final List<String> mOrder;
+
+        /**
+         * Constructs a new {@link Frames}.
+         *
+         * @param name the name of the job
+         * @param order the start order of jobs
+         */
+        Frames(@NonNull String name, @NonNull List<String> order) {
+            mName = name;
+            mOrder = order;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public final void onEncode(@NonNull MpegEncoder encoder) throws Exception {
+            mOrder.add(mName);
+            drawFrames(encoder);
+        }
+    }
+}
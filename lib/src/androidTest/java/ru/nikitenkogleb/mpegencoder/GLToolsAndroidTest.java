@@ -11,8 +11,12 @@ import android.opengl.EGLContext;
 import android.opengl.EGLDisplay;
 import android.opengl.EGLSurface;
 import android.opengl.GLES20;
+import android.opengl.Matrix;
+import android.support.test.InstrumentationRegistry;
 import android.view.Surface;
 
+import java.io.File;
+import java.io.FilenameFilter;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
 
@@ -230,7 +234,7 @@ public final class GLToolsAndroidTest extends BaseInstrumentationTest {
 
         GLTools.makeCurrent(eglDisplay, eglSurface, eglContext);
 
-        final int[] attrs = new int[5];
+        final int[] attrs = new int[GLTools.SHADER_ATTRS];
         GLTools.newShader(attrs);
         GLTools.closeShader(attrs);
 
@@ -240,7 +244,56 @@ public final class GLToolsAndroidTest extends BaseInstrumentationTest {
     }
 
     /**
-     * Test for {@link GLTools#drawFrame(Buffer, int, int, int)}.
+     * Test for {@link GLTools#newShader(int[], boolean, File)} with the program cache.
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testShaderCache() throws Exception {
+        final EGLDisplay eglDisplay = GLTools.newDisplay();
+        final EGLConfig eglConfig = GLTools.newConfig(eglDisplay, true);
+        final EGLContext eglContext = GLTools.newContext(eglDisplay, eglConfig);
+        final EGLSurface eglSurface =
+                GLTools.newSurface(eglDisplay, eglConfig, FRAME_SIZE, FRAME_SIZE);
+
+        GLTools.makeCurrent(eglDisplay, eglSurface, eglContext);
+
+        final File cacheDir = InstrumentationRegistry.getTargetContext().getCacheDir();
+        final FilenameFilter filter = new FilenameFilter() {
+            @Override
+            public final boolean accept(File dir, String name) {
+                return name.startsWith("mpegencoder.program.");
+            }
+        };
+        for (File file : cacheDir.listFiles(filter)) {
+            Assert.assertTrue(file.delete());
+        }
+        final boolean supported = ProgramCache.isSupported();
+
+        // Compiled from the sources and saved
+        final int[] attrs = new int[GLTools.SHADER_ATTRS];
+        GLTools.newShader(attrs, false, cacheDir);
+        Assert.assertTrue(attrs[1] != 0 && attrs[2] != 0);
+        GLTools.closeShader(attrs);
+        Assert.assertEquals(supported ? 1 : 0, cacheDir.listFiles(filter).length);
+
+        // Loaded from the cache, no shaders compiled
+        GLTools.newShader(attrs, false, cacheDir);
+        Assert.assertTrue(attrs[0] != 0);
+        Assert.assertEquals(supported, attrs[1] == 0 && attrs[2] == 0);
+        GLTools.closeShader(attrs);
+
+        // The external program has its own binary
+        GLTools.newShader(attrs, true, cacheDir);
+        GLTools.closeShader(attrs);
+        Assert.assertEquals(supported ? 2 : 0, cacheDir.listFiles(filter).length);
+
+        GLTools.closeSurface(eglDisplay, eglSurface);
+        GLTools.closeContext(eglDisplay, eglContext);
+        GLTools.closeDisplay(eglDisplay);
+    }
+
+    /**
+     * Test for {@link GLState#drawFrame(Buffer, int, int)}.
      * @throws Exception by some fails
      */
     @Test
@@ -253,9 +306,13 @@ public final class GLToolsAndroidTest extends BaseInstrumentationTest {
 
         GLTools.makeCurrent(eglDisplay, eglSurface, eglContext);
 
-        final int[] attrs = new int[5];
+        final int[] attrs = new int[GLTools.SHADER_ATTRS];
         GLTools.newShader(attrs);
         final int texture = GLTools.newTexture(TEXTURE_LEVEL);
+        final GLState state = new GLState();
+        final float[] identity = new float[16]; Matrix.setIdentityM(identity, 0);
+        state.setTransform(attrs, identity, identity);
+        state.bindTexture(texture, false);
 
         // 1-st pass
         Bitmap bitmap = Bitmap.createBitmap(FRAME_SIZE, FRAME_SIZE, Bitmap.Config.RGB_565);
@@ -265,7 +322,7 @@ public final class GLToolsAndroidTest extends BaseInstrumentationTest {
         bitmap.copyPixelsToBuffer(buffer); bitmap.recycle();
 
         GLTools.makeCurrent(eglDisplay, eglSurface, eglContext);
-        GLTools.drawFrame(buffer, FRAME_SIZE, FRAME_SIZE, 0); buffer.clear();
+        state.drawFrame(buffer, FRAME_SIZE, FRAME_SIZE); buffer.clear();
         //GLTools.swapBuffers(eglDisplay, eglSurface);
 
         buffer = ByteBuffer.allocateDirect(FRAME_SIZE * FRAME_SIZE * 4);
@@ -289,7 +346,7 @@ public final class GLToolsAndroidTest extends BaseInstrumentationTest {
         bitmap.copyPixelsToBuffer(buffer); bitmap.recycle();
 
         GLTools.makeCurrent(eglDisplay, eglSurface, eglContext);
-        GLTools.drawFrame(buffer, FRAME_SIZE, FRAME_SIZE, 0); buffer.clear();
+        state.drawFrame(buffer, FRAME_SIZE, FRAME_SIZE); buffer.clear();
         //GLTools.swapBuffers(eglDisplay, eglSurface);
 
         buffer = ByteBuffer.allocateDirect(FRAME_SIZE * FRAME_SIZE * 4);
@@ -305,6 +362,7 @@ public final class GLToolsAndroidTest extends BaseInstrumentationTest {
         Assert.assertArrayEquals(new int[]{bitmap.getPixel(1, 1)}, new int[]{Color.BLUE});
         bitmap.recycle();
 
+        state.close();
         GLTools.closeTexture(texture, TEXTURE_LEVEL);
         GLTools.closeShader(attrs);
 
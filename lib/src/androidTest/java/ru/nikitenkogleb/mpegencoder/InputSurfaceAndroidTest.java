@@ -7,6 +7,7 @@ import org.junit.Test;
 
 import android.graphics.Bitmap;
 import android.graphics.Color;
+import android.graphics.Rect;
 import android.graphics.SurfaceTexture;
 import android.opengl.EGLConfig;
 import android.opengl.EGLContext;
@@ -39,12 +40,14 @@ public class InputSurfaceAndroidTest extends BaseInstrumentationTest {
 
     /** The test frame size. */
     private static final int FRAME_SIZE = 2;
+    /** The frame size of the crop test. */
+    private static final int CROP_SIZE = 8;
     /** The test presentation time. */
     private static final int PRESENTATION_TIME = 1000000;
 
     /** The EGL Surface. */
     @NonNull
-    private int[] mShader = new int[5];
+    private int[] mShader = new int[GLTools.SHADER_ATTRS];
 
     /** The EGL Display. */
     @Nullable
@@ -174,5 +177,72 @@ public class InputSurfaceAndroidTest extends BaseInstrumentationTest {
         inputBuffer.clear();
     }
 
+    /**
+     * Test for the cropped quadrant rendered to the whole frame.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testCrop() throws Exception {
+        final int half = CROP_SIZE / 2;
+        final ByteBuffer inputBuffer = ByteBuffer.allocate(CROP_SIZE * CROP_SIZE * 2);
+        final Bitmap bitmap = Bitmap.createBitmap(CROP_SIZE, CROP_SIZE, Bitmap.Config.RGB_565);
+        for (int y = 0; y < CROP_SIZE; y++) {
+            for (int x = 0; x < CROP_SIZE; x++) {
+                bitmap.setPixel(x, y, y < half ?
+                        (x < half ? Color.RED : Color.GREEN) :
+                        (x < half ? Color.BLUE : Color.YELLOW));
+            }
+        }
+        bitmap.copyPixelsToBuffer(inputBuffer); bitmap.recycle();
+
+        assertCrop(inputBuffer, new Rect(half, 0, CROP_SIZE, half), Color.GREEN);
+        assertCrop(inputBuffer, new Rect(0, half, half, CROP_SIZE), Color.BLUE);
+    }
+
+    /**
+     * Renders the cropped frame and asserts its inner pixels,
+     * the edge pixels are blended with the neighbour quadrants by the filtering.
+     *
+     * @param inputBuffer the input frame
+     * @param crop the crop rectangle
+     * @param color the expected color
+     */
+    private void assertCrop(@NonNull ByteBuffer inputBuffer, @NonNull Rect crop, int color) {
+        final ByteBuffer outputBuffer = ByteBuffer.allocateDirect(CROP_SIZE * CROP_SIZE * 4);
+
+        final Transform transform = new Transform();
+        transform.crop = crop;
+        final float[] mvp = new float[Transform.MATRIX_SIZE];
+        final float[] st = new float[Transform.MATRIX_SIZE];
+        final boolean clear =
+                transform.compute(CROP_SIZE, CROP_SIZE, CROP_SIZE, CROP_SIZE, mvp, st);
+
+        assert mSurfaceTexture != null;
+        mSurfaceTexture.setDefaultBufferSize(CROP_SIZE, CROP_SIZE);
+        assert mSurface != null;
+        final InputSurface inputSurface =
+                InputSurface.create(mSurface, inputBuffer, CROP_SIZE, CROP_SIZE)
+                        .transform(mvp, st, clear)
+                        .build();
+
+        inputBuffer.rewind();
+        inputSurface.draw(PRESENTATION_TIME);
+        inputBuffer.rewind();
+
+        GLES20.glReadPixels(0, 0, CROP_SIZE, CROP_SIZE,
+                GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, outputBuffer);
+        final Bitmap bitmap = Bitmap.createBitmap(CROP_SIZE, CROP_SIZE, Bitmap.Config.ARGB_8888);
+        bitmap.copyPixelsFromBuffer(outputBuffer);
+        for (int y = 1; y < CROP_SIZE - 1; y++) {
+            for (int x = 1; x < CROP_SIZE - 1; x++) {
+                Assert.assertEquals("Pixel " + x + ", " + y, color, bitmap.getPixel(x, y));
+            }
+        }
+        bitmap.recycle();
+
+        inputSurface.close();
+    }
+
 
 }
\ No newline at end of file
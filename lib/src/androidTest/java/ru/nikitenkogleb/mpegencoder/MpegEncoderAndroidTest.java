@@ -8,13 +8,26 @@ import org.junit.Test;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.opengl.GLES20;
+import android.os.Build;
 import android.os.Environment;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.test.InstrumentationRegistry;
+import android.view.Surface;
 
 import java.io.File;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
 
 import proguard.annotation.Keep;
 import proguard.annotation.KeepPublicProtectedClassMembers;
@@ -65,6 +78,9 @@ public class MpegEncoderAndroidTest extends BaseInstrumentationTest {
     @Motion
     private static final int MOTION = Motion.LOW;
 
+    /** The explicit bitrate. */
+    private static final int BIT_RATE = 500000;
+
     /** The video rotate. */
     private static final int ROTATE = 0;
 
@@ -138,4 +154,648 @@ public class MpegEncoderAndroidTest extends BaseInstrumentationTest {
 
         bitmap.recycle();
     }
-}
\ No newline at end of file
+
+    /**
+     * Test for {@link MpegEncoder} drawing in the real-time mode.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testRealTime() throws Exception {
+
+        assert mOutputFile != null;
+        final String path = mOutputFile.getAbsolutePath();
+
+        final Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.RGB_565);
+
+        final MpegEncoder encoder =
+                MpegEncoder
+                        .from(INPUT_BUFFER, WIDTH, HEIGHT)
+                        .fps(FRAME_RATE).motion(MOTION)
+                        .realTime()
+                        .to(path, WIDTH, HEIGHT);
+
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            final int color = i * 3;
+            bitmap.eraseColor(Color.rgb(255 - color, 0, color));
+            INPUT_BUFFER.rewind();
+            bitmap.copyPixelsToBuffer(INPUT_BUFFER);
+            encoder.draw();
+            encoder.draw();
+        }
+
+        Assert.assertTrue(encoder.getDecimatedFrames() > 0);
+        Assert.assertEquals(2 * NUM_FRAMES, encoder.getFrameCount() +
+                encoder.getDecimatedFrames() + encoder.getDroppedFrames());
+
+        encoder.close();
+
+        bitmap.recycle();
+    }
+
+    /**
+     * Test for {@link MpegEncoder} with explicit rate-control.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testRateControl() throws Exception {
+
+        assert mOutputFile != null;
+        final String path = mOutputFile.getAbsolutePath();
+
+        final Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.RGB_565);
+
+        final MpegEncoder encoder =
+                MpegEncoder
+                        .from(INPUT_BUFFER, WIDTH, HEIGHT)
+                        .fps(FRAME_RATE)
+                        .bitRate(BIT_RATE).bitRateMode(MpegEncoder.BitRateMode.CBR)
+                        .to(path, WIDTH, HEIGHT);
+
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            bitmap.eraseColor(Color.rgb(i * 3, 0, 0));
+            INPUT_BUFFER.rewind();
+            bitmap.copyPixelsToBuffer(INPUT_BUFFER);
+            encoder.draw();
+        }
+
+        encoder.close();
+
+        Assert.assertTrue(mOutputFile.length() > 0);
+        bitmap.recycle();
+    }
+
+    /**
+     * Test for {@link MpegEncoder} with the constant quality and QP bounds.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testQuality() throws Exception {
+
+        assert mOutputFile != null;
+        final String path = mOutputFile.getAbsolutePath();
+
+        try {
+            MpegEncoder.from(INPUT_BUFFER, WIDTH, HEIGHT).qp(40, 20);
+            Assert.fail();
+        } catch (IllegalArgumentException exception) {
+            Assert.assertNotNull(exception.getMessage());
+        }
+
+        // The out of range quality is clamped
+        final MpegEncoder encoder =
+                MpegEncoder
+                        .from(INPUT_BUFFER, WIDTH, HEIGHT)
+                        .fps(FRAME_RATE)
+                        .bitRateMode(MpegEncoder.BitRateMode.CQ).quality(Integer.MAX_VALUE)
+                        .qp(20, 40)
+                        .to(path, WIDTH, HEIGHT);
+
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            encoder.draw();
+        }
+
+        encoder.close();
+
+        Assert.assertTrue(mOutputFile.length() > 0);
+    }
+
+    /**
+     * Test for {@link MpegEncoder} key frames control.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testKeyFrames() throws Exception {
+
+        assert mOutputFile != null;
+        final String path = mOutputFile.getAbsolutePath();
+
+        final Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.RGB_565);
+
+        final MpegEncoder encoder =
+                MpegEncoder
+                        .from(INPUT_BUFFER, WIDTH, HEIGHT)
+                        .fps(FRAME_RATE).iFrame(-1)
+                        .keyFrames(500)
+                        .to(path, WIDTH, HEIGHT);
+
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            bitmap.eraseColor(Color.rgb(0, i * 3, 0));
+            INPUT_BUFFER.rewind();
+            bitmap.copyPixelsToBuffer(INPUT_BUFFER);
+            if (i == 2) {
+                encoder.requestKeyFrame();
+            }
+            encoder.draw();
+        }
+
+        encoder.close();
+
+        Assert.assertTrue(encoder.getKeyFrameCount() >= 3);
+        bitmap.recycle();
+    }
+
+    /**
+     * Test for {@link MpegEncoder} codec preferences.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testCodecs() throws Exception {
+
+        assert mOutputFile != null;
+        final String path = mOutputFile.getAbsolutePath();
+
+        final Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.RGB_565);
+
+        final MpegEncoder encoder =
+                MpegEncoder
+                        .from(INPUT_BUFFER, WIDTH, HEIGHT)
+                        .fps(FRAME_RATE)
+                        .codecs(MpegEncoder.Codec.HEVC, MpegEncoder.Codec.AVC)
+                        .to(path, WIDTH, HEIGHT);
+
+        final String mime = encoder.getMime();
+        Assert.assertTrue(mime.equals(MpegEncoder.Codec.HEVC) ||
+                mime.equals(MpegEncoder.Codec.AVC));
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            // The muxer has no HEVC track below API24
+            Assert.assertEquals(MpegEncoder.Codec.AVC, mime);
+        }
+
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            bitmap.eraseColor(Color.rgb(0, 0, i * 3));
+            INPUT_BUFFER.rewind();
+            bitmap.copyPixelsToBuffer(INPUT_BUFFER);
+            encoder.draw();
+        }
+
+        encoder.close();
+
+        Assert.assertTrue(mOutputFile.length() > 0);
+        bitmap.recycle();
+    }
+
+    /**
+     * Test for the muxer output formats by API levels.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testOutputFormats() throws Exception {
+        final int mp4 = MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4;
+        final int webm = MediaMuxer.OutputFormat.MUXER_OUTPUT_WEBM;
+        final int m = Build.VERSION_CODES.M, n = Build.VERSION_CODES.N;
+
+        Assert.assertEquals(mp4, MpegEncoder.getOutputFormat(MpegEncoder.Codec.AVC, m));
+        Assert.assertEquals(webm, MpegEncoder.getOutputFormat(MpegEncoder.Codec.VP8, m));
+        Assert.assertTrue(MpegEncoder.getOutputFormat(MpegEncoder.Codec.HEVC, m) < 0);
+        Assert.assertTrue(MpegEncoder.getOutputFormat(MpegEncoder.Codec.VP9, m) < 0);
+        Assert.assertEquals(mp4, MpegEncoder.getOutputFormat(MpegEncoder.Codec.HEVC, n));
+        Assert.assertEquals(webm, MpegEncoder.getOutputFormat(MpegEncoder.Codec.VP9, n));
+
+        // The unsupported codecs fall through to the next preference
+        final MpegEncoder.Builder builder = MpegEncoder.from(INPUT_BUFFER, WIDTH, HEIGHT)
+                .codecs(MpegEncoder.Codec.HEVC, MpegEncoder.Codec.VP9, MpegEncoder.Codec.AVC);
+        final EncoderInfo info = builder.findEncoder(WIDTH, HEIGHT);
+        Assert.assertNotNull(info);
+        if (Build.VERSION.SDK_INT < n) {
+            Assert.assertEquals(MpegEncoder.Codec.AVC, info.getMime());
+        }
+    }
+
+    /**
+     * Test for {@link MpegEncoder} GPU transform.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testTransform() throws Exception {
+
+        assert mOutputFile != null;
+        final String path = mOutputFile.getAbsolutePath();
+
+        final Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.RGB_565);
+
+        final MpegEncoder encoder =
+                MpegEncoder
+                        .from(INPUT_BUFFER, WIDTH, HEIGHT)
+                        .fps(FRAME_RATE)
+                        .crop(new Rect(0, 0, WIDTH / 2, HEIGHT))
+                        .rotate(90).mirror(true)
+                        .scale(MpegEncoder.ScaleType.FIT)
+                        .to(path, WIDTH, HEIGHT);
+
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            bitmap.eraseColor(Color.rgb(i * 3, i * 3, 0));
+            INPUT_BUFFER.rewind();
+            bitmap.copyPixelsToBuffer(INPUT_BUFFER);
+            encoder.draw();
+        }
+
+        encoder.close();
+
+        Assert.assertTrue(mOutputFile.length() > 0);
+        bitmap.recycle();
+    }
+
+    /**
+     * Test for {@link MpegEncoder} overlays.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testOverlay() throws Exception {
+
+        assert mOutputFile != null;
+        final String path = mOutputFile.getAbsolutePath();
+
+        final Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.RGB_565);
+        final Bitmap logo = Bitmap.createBitmap(WIDTH / 4, HEIGHT / 4, Bitmap.Config.ARGB_8888);
+        logo.eraseColor(Color.argb(128, 255, 255, 255));
+        final Bitmap caption = Bitmap.createBitmap(WIDTH / 2, HEIGHT / 8, Bitmap.Config.ARGB_8888);
+
+        final Overlay watermark = new Overlay(logo, new Rect(0, 0, WIDTH / 4, HEIGHT / 4));
+        final Overlay timestamp =
+                new Overlay(caption, new Rect(0, HEIGHT - HEIGHT / 8, WIDTH / 2, HEIGHT));
+
+        final MpegEncoder encoder =
+                MpegEncoder
+                        .from(INPUT_BUFFER, WIDTH, HEIGHT)
+                        .fps(FRAME_RATE)
+                        .overlay(watermark)
+                        .overlay(timestamp)
+                        .to(path, WIDTH, HEIGHT);
+
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            bitmap.eraseColor(Color.rgb(i * 3, i * 3, 0));
+            INPUT_BUFFER.rewind();
+            bitmap.copyPixelsToBuffer(INPUT_BUFFER);
+            caption.eraseColor(Color.argb(255, i * 3, 0, 0));
+            timestamp.update(caption);
+            encoder.draw();
+        }
+        Assert.assertTrue(encoder.getGLCalls() > 0);
+        Assert.assertTrue(encoder.getSkippedGLCalls() > 0);
+
+        encoder.close();
+
+        Assert.assertTrue(mOutputFile.length() > 0);
+        bitmap.recycle();
+        logo.recycle();
+        caption.recycle();
+    }
+
+    /**
+     * Test for {@link MpegEncoder} bitmap input.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testBitmap() throws Exception {
+
+        assert mOutputFile != null;
+        final String path = mOutputFile.getAbsolutePath();
+
+        final Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.RGB_565);
+
+        final MpegEncoder encoder =
+                MpegEncoder
+                        .from(WIDTH, HEIGHT)
+                        .fps(FRAME_RATE)
+                        .to(path, WIDTH, HEIGHT);
+
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            bitmap.eraseColor(Color.rgb(i * 3, 0, i * 3));
+            Assert.assertTrue(encoder.draw(bitmap));
+        }
+
+        encoder.close();
+
+        Assert.assertTrue(mOutputFile.length() > 0);
+        bitmap.recycle();
+    }
+
+    /**
+     * Test for {@link MpegEncoder} external input.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testExternal() throws Exception {
+
+        assert mOutputFile != null;
+        final String path = mOutputFile.getAbsolutePath();
+
+        final MpegEncoder encoder =
+                MpegEncoder
+                        .from(WIDTH, HEIGHT)
+                        .external()
+                        .fps(FRAME_RATE)
+                        .to(path, WIDTH, HEIGHT);
+
+        final Surface surface = encoder.getInputSurface();
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            final Canvas canvas = surface.lockCanvas(null);
+            canvas.drawColor(Color.rgb(0, i * 3, i * 3));
+            surface.unlockCanvasAndPost(canvas);
+            Assert.assertTrue(encoder.awaitFrame(1000));
+            Assert.assertTrue(encoder.draw());
+        }
+
+        encoder.close();
+
+        Assert.assertTrue(mOutputFile.length() > 0);
+    }
+
+    /**
+     * Test for {@link MpegEncoder} renderer.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testRenderer() throws Exception {
+
+        assert mOutputFile != null;
+        final String path = mOutputFile.getAbsolutePath();
+
+        final long[] frames = new long[1];
+        final MpegEncoder encoder =
+                MpegEncoder
+                        .from(WIDTH, HEIGHT)
+                        .renderer(new MpegEncoder.Renderer() {
+                            @Override
+                            public final void onDrawFrame(long presentationTime) {
+                                final float value = (frames[0]++ % FRAME_RATE) / (float) FRAME_RATE;
+                                GLES20.glClearColor(value, value, 0f, 1f);
+                                GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+                            }
+                        })
+                        .fps(FRAME_RATE)
+                        .to(path, WIDTH, HEIGHT);
+
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            Assert.assertTrue(encoder.draw());
+        }
+
+        encoder.close();
+
+        Assert.assertEquals(NUM_FRAMES, frames[0]);
+        Assert.assertTrue(mOutputFile.length() > 0);
+    }
+
+    /**
+     * Test for {@link MpegEncoder} canvas input.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testCanvas() throws Exception {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return;
+        }
+
+        assert mOutputFile != null;
+        final String path = mOutputFile.getAbsolutePath();
+
+        final long[] times = {-1, -1};
+        final MpegEncoder encoder =
+                MpegEncoder
+                        .from(WIDTH, HEIGHT)
+                        .canvas()
+                        .fps(FRAME_RATE)
+                        .output(new MpegEncoder.Output() {
+                            @Override
+                            public final void onFormat(@NonNull MediaFormat format) {}
+
+                            @Override
+                            public final void onSample(@NonNull ByteBuffer data,
+                                    @NonNull MediaCodec.BufferInfo info) {
+                                if (times[0] == -1) {
+                                    times[0] = info.presentationTimeUs;
+                                }
+                                times[1] = info.presentationTimeUs;
+                            }
+
+                            @Override
+                            public final void onEnd() {}
+                        })
+                        .to(path, WIDTH, HEIGHT);
+
+        final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(Color.WHITE);
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            final Canvas canvas = encoder.lockCanvas();
+            if (canvas != null) {
+                canvas.drawColor(Color.BLUE);
+                canvas.drawCircle(i * 4, HEIGHT / 2, HEIGHT / 8, paint);
+                encoder.unlockCanvasAndPost(canvas);
+            }
+            Thread.sleep(1000 / FRAME_RATE);
+        }
+
+        encoder.close();
+
+        Assert.assertTrue(encoder.getFrameCount() > 0);
+        Assert.assertTrue(mOutputFile.length() > 0);
+
+        // The timestamps are rebased to the first frame, the latency is matched
+        Assert.assertTrue(times[0] >= 0 && times[0] < 1000000 / FRAME_RATE);
+        Assert.assertTrue(times[1] < 2 * NUM_FRAMES * 1000000L / FRAME_RATE);
+        Assert.assertTrue(encoder.getMaxFrameLatency() > 0);
+    }
+
+    /**
+     * Test for {@link MpegEncoder} dirty region upload.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testDirty() throws Exception {
+
+        assert mOutputFile != null;
+        final String path = mOutputFile.getAbsolutePath();
+
+        final Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.RGB_565);
+        final Canvas canvas = new Canvas(bitmap);
+        final Paint paint = new Paint();
+        paint.setColor(Color.RED);
+        final Rect dirty = new Rect();
+
+        final MpegEncoder encoder =
+                MpegEncoder
+                        .from(INPUT_BUFFER, WIDTH, HEIGHT)
+                        .fps(FRAME_RATE)
+                        .to(path, WIDTH, HEIGHT);
+
+        bitmap.eraseColor(Color.BLACK);
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            dirty.set(i % (WIDTH - 16), HEIGHT / 2, i % (WIDTH - 16) + 16, HEIGHT / 2 + 16);
+            canvas.drawRect(dirty, paint);
+            INPUT_BUFFER.rewind();
+            bitmap.copyPixelsToBuffer(INPUT_BUFFER);
+            Assert.assertTrue(encoder.draw(dirty));
+        }
+
+        encoder.close();
+
+        Assert.assertTrue(mOutputFile.length() > 0);
+        bitmap.recycle();
+    }
+
+    /**
+     * Test for {@link MpegEncoder} on its own thread.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testAsync() throws Exception {
+
+        assert mOutputFile != null;
+        final String path = mOutputFile.getAbsolutePath();
+
+        final AsyncMpegEncoder encoder =
+                MpegEncoder
+                        .from(WIDTH, HEIGHT)
+                        .fps(FRAME_RATE)
+                        .toAsync(path, WIDTH, HEIGHT);
+
+        final Bitmap[] bitmaps = new Bitmap[NUM_FRAMES];
+        final List<Future<Boolean>> frames = new ArrayList<>();
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            bitmaps[i] = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.RGB_565);
+            bitmaps[i].eraseColor(Color.rgb(i * 3, 0, i * 3));
+            frames.add(encoder.draw(bitmaps[i]));
+        }
+        final Future<Long> count = encoder.submit(new AsyncMpegEncoder.Command<Long>() {
+            @Override
+            public final Long run(@NonNull MpegEncoder encoder) {
+                return encoder.getFrameCount();
+            }
+        });
+
+        for (Future<Boolean> frame : frames) {
+            Assert.assertTrue(frame.get());
+        }
+        Assert.assertEquals(NUM_FRAMES, count.get().longValue());
+        encoder.close();
+
+        Assert.assertTrue(mOutputFile.length() > 0);
+        for (Bitmap bitmap : bitmaps) {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Test for {@link MpegEncoder} writing on the muxer thread.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testWriteBuffer() throws Exception {
+
+        assert mOutputFile != null;
+        final String path = mOutputFile.getAbsolutePath();
+
+        final MpegEncoder encoder =
+                MpegEncoder
+                        .from(INPUT_BUFFER, WIDTH, HEIGHT)
+                        .fps(FRAME_RATE)
+                        .writeBuffer(BIT_RATE)
+                        .to(path, WIDTH, HEIGHT);
+
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            encoder.draw();
+        }
+
+        encoder.close();
+
+        Assert.assertTrue(mOutputFile.length() > 0);
+    }
+
+    /**
+     * Test for the low-latency profile.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testLowLatency() throws Exception {
+
+        assert mOutputFile != null;
+        final String path = mOutputFile.getAbsolutePath();
+
+        final MpegEncoder encoder =
+                MpegEncoder
+                        .from(INPUT_BUFFER, WIDTH, HEIGHT)
+                        .fps(FRAME_RATE)
+                        .realTime()
+                        .lowLatency()
+                        .to(path, WIDTH, HEIGHT);
+
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            encoder.draw();
+            Thread.sleep(1000 / FRAME_RATE);
+        }
+
+        encoder.close();
+
+        logd("Latency: " + encoder.getAverageFrameLatency() + " us average, " +
+                encoder.getMaxFrameLatency() + " us max");
+        Assert.assertTrue(encoder.getMaxFrameLatency() > 0);
+        Assert.assertTrue(encoder.getAverageFrameLatency() <= encoder.getMaxFrameLatency());
+        Assert.assertTrue(encoder.getAverageFrameLatency() < 1000000 / FRAME_RATE);
+        Assert.assertTrue(mOutputFile.length() > 0);
+    }
+
+    /**
+     * Test for the time-lapse decimation.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testTimeLapse() throws Exception {
+
+        assert mOutputFile != null;
+        final String path = mOutputFile.getAbsolutePath();
+
+        try {
+            MpegEncoder.from(WIDTH, HEIGHT).canvas().timeLapse(1000).to(path, WIDTH, HEIGHT);
+            Assert.fail();
+        } catch (IllegalStateException exception) {
+            logd(exception.getMessage());
+        }
+
+        final Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.RGB_565);
+        // Uploading a recycled bitmap throws, so the decimated draws prove nothing was uploaded
+        final Bitmap recycled = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.RGB_565);
+        recycled.recycle();
+
+        final MpegEncoder encoder =
+                MpegEncoder
+                        .from(WIDTH, HEIGHT)
+                        .fps(FRAME_RATE)
+                        .timeLapse(1000)
+                        .to(path, WIDTH, HEIGHT);
+
+        int decimated = 0;
+        for (int i = 0; i < NUM_FRAMES * 4; i++) {
+            final long captureTime = i * 250000000L;
+            if (i % 4 == 0) {
+                bitmap.eraseColor(Color.rgb(i, 0, i));
+                Assert.assertTrue(encoder.draw(bitmap, captureTime));
+            } else {
+                Assert.assertFalse(encoder.draw(recycled, captureTime));
+                decimated++;
+            }
+        }
+
+        encoder.close();
+
+        Assert.assertEquals(decimated, encoder.getDecimatedFrames());
+        Assert.assertTrue(mOutputFile.length() > 0);
+        bitmap.recycle();
+    }
+}
@@ -0,0 +1,327 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.support.annotation.NonNull;
+import android.support.test.InstrumentationRegistry;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * The {@link ReactiveEncoder} Instrumentation Test.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+public class ReactiveEncoderAndroidTest extends BaseInstrumentationTest {
+
+    /** The test output file name. */
+    private static final String OUTPUT_FILE_NAME = "reactive.mp4";
+
+    /** The test width of video. */
+    private static final int WIDTH = 352;
+    /** The test height of video. */
+    private static final int HEIGHT = 288;
+    /** The test frame-rate of video. */
+    private static final int FRAME_RATE = 8;
+    /** The one second of video. */
+    private static final int NUM_FRAMES = FRAME_RATE;
+    /** The completion timeout (in seconds). */
+    private static final int TIMEOUT = 10;
+
+    /**
+     * Test for {@link ReactiveEncoder} frames and samples.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testStreams() throws Exception {
+        final File file =
+                new File(InstrumentationRegistry.getContext().getFilesDir(), OUTPUT_FILE_NAME);
+        final ReactiveEncoder encoder = ReactiveEncoder.to(
+                MpegEncoder.from(WIDTH, HEIGHT).fps(FRAME_RATE),
+                file.getAbsolutePath(), WIDTH, HEIGHT);
+
+        final AtomicInteger samples = new AtomicInteger();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final CountDownLatch completed = new CountDownLatch(1);
+        encoder.getSamples().subscribe(new Flow.Subscriber<ReactiveEncoder.EncodedSample>() {
+            @Override
+            public final void onSubscribe(@NonNull Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public final void onNext(@NonNull ReactiveEncoder.EncodedSample sample) {
+                Assert.assertTrue(samples.get() != 0 || sample.isKeyFrame());
+                samples.incrementAndGet();
+            }
+
+            @Override
+            public final void onError(@NonNull Throwable throwable) {
+                error.set(throwable);
+                completed.countDown();
+            }
+
+            @Override
+            public final void onComplete() {
+                completed.countDown();
+            }
+        });
+
+        final AtomicInteger outstanding = new AtomicInteger();
+        final Bitmap[] bitmaps = new Bitmap[NUM_FRAMES];
+        for (int i = 0; i < NUM_FRAMES; i++) {
+            bitmaps[i] = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.RGB_565);
+            bitmaps[i].eraseColor(i % 2 == 0 ? Color.RED : Color.BLUE);
+        }
+        encoder.onSubscribe(new Flow.Subscription() {
+
+            /** The next frame. */
+            private int mFrame = 0;
+
+            @Override
+            public final synchronized void request(long count) {
+                Assert.assertTrue(outstanding.addAndGet((int) count) <= 2);
+                while (outstanding.get() > 0 && mFrame < NUM_FRAMES) {
+                    outstanding.decrementAndGet();
+                    encoder.onNext(ReactiveEncoder.Frame.of(bitmaps[mFrame++]));
+                }
+                if (mFrame == NUM_FRAMES) {
+                    mFrame++;
+                    encoder.onComplete();
+                }
+            }
+
+            @Override
+            public final void cancel() {}
+        });
+
+        Assert.assertTrue(completed.await(TIMEOUT, TimeUnit.SECONDS));
+        Assert.assertNull(error.get());
+        Assert.assertTrue(samples.get() > 0);
+        Assert.assertNotNull(encoder.getOutputFormat());
+        for (Bitmap bitmap : bitmaps) {
+            bitmap.recycle();
+        }
+        Assert.assertTrue(file.delete());
+    }
+
+    /**
+     * Test for {@link ReactiveEncoder} frames waiting for the demand of samples.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testBackpressure() throws Exception {
+        final File file =
+                new File(InstrumentationRegistry.getContext().getFilesDir(), OUTPUT_FILE_NAME);
+        final ReactiveEncoder encoder = ReactiveEncoder.to(
+                MpegEncoder.from(WIDTH, HEIGHT).fps(FRAME_RATE),
+                file.getAbsolutePath(), WIDTH, HEIGHT);
+
+        final AtomicReference<Flow.Subscription> samples = new AtomicReference<>();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final CountDownLatch completed = new CountDownLatch(1);
+        encoder.getSamples().subscribe(new Flow.Subscriber<ReactiveEncoder.EncodedSample>() {
+            @Override
+            public final void onSubscribe(@NonNull Flow.Subscription subscription) {
+                samples.set(subscription);
+            }
+
+            @Override
+            public final void onNext(@NonNull ReactiveEncoder.EncodedSample sample) {}
+
+            @Override
+            public final void onError(@NonNull Throwable throwable) {
+                error.set(throwable);
+                completed.countDown();
+            }
+
+            @Override
+            public final void onComplete() {
+                completed.countDown();
+            }
+        });
+
+        final int frames = NUM_FRAMES * 4;
+        final AtomicInteger requested = new AtomicInteger();
+        final Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.RGB_565);
+        bitmap.eraseColor(Color.RED);
+        encoder.onSubscribe(new Flow.Subscription() {
+
+            /** The next frame. */
+            private int mFrame = 0;
+
+            @Override
+            public final synchronized void request(long count) {
+                requested.addAndGet((int) count);
+                for (int i = 0; i < count && mFrame < frames; i++) {
+                    mFrame++;
+                    encoder.onNext(ReactiveEncoder.Frame.of(bitmap));
+                }
+                if (mFrame == frames) {
+                    mFrame++;
+                    encoder.onComplete();
+                }
+            }
+
+            @Override
+            public final void cancel() {}
+        });
+
+        // No samples are requested, so the frames stop after a few undelivered samples
+        Assert.assertFalse(completed.await(1, TimeUnit.SECONDS));
+        Assert.assertTrue(requested.get() < frames);
+
+        samples.get().request(Long.MAX_VALUE);
+        Assert.assertTrue(completed.await(TIMEOUT, TimeUnit.SECONDS));
+        Assert.assertNull(error.get());
+        Assert.assertTrue(requested.get() >= frames);
+        bitmap.recycle();
+        Assert.assertTrue(file.delete());
+    }
+
+    /**
+     * Test for {@link ReactiveEncoder} frames without a samples subscriber.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testWithoutSamples() throws Exception {
+        final File file =
+                new File(InstrumentationRegistry.getContext().getFilesDir(), OUTPUT_FILE_NAME);
+        final ReactiveEncoder encoder = ReactiveEncoder.to(
+                MpegEncoder.from(WIDTH, HEIGHT).fps(FRAME_RATE),
+                file.getAbsolutePath(), WIDTH, HEIGHT);
+
+        final int frames = NUM_FRAMES * 4;
+        final CountDownLatch completed = new CountDownLatch(1);
+        final Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.RGB_565);
+        bitmap.eraseColor(Color.RED);
+        encoder.onSubscribe(new Flow.Subscription() {
+
+            /** The next frame. */
+            private int mFrame = 0;
+
+            @Override
+            public final synchronized void request(long count) {
+                for (int i = 0; i < count && mFrame < frames; i++) {
+                    mFrame++;
+                    encoder.onNext(ReactiveEncoder.Frame.of(bitmap));
+                }
+                if (mFrame == frames) {
+                    mFrame++;
+                    encoder.onComplete();
+                    completed.countDown();
+                }
+            }
+
+            @Override
+            public final void cancel() {}
+        });
+
+        // The undelivered samples don't hold the frames back without a subscriber
+        Assert.assertTrue(completed.await(TIMEOUT, TimeUnit.SECONDS));
+
+        // The late subscriber gets the end of stream only, once the encoder is closed
+        final AtomicInteger received = new AtomicInteger();
+        final CountDownLatch closed = new CountDownLatch(1);
+        encoder.getSamples().subscribe(new Flow.Subscriber<ReactiveEncoder.EncodedSample>() {
+            @Override
+            public final void onSubscribe(@NonNull Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public final void onNext(@NonNull ReactiveEncoder.EncodedSample sample) {
+                received.incrementAndGet();
+            }
+
+            @Override
+            public final void onError(@NonNull Throwable throwable) {}
+
+            @Override
+            public final void onComplete() {
+                closed.countDown();
+            }
+        });
+        Assert.assertTrue(closed.await(TIMEOUT, TimeUnit.SECONDS));
+        Assert.assertTrue(received.get() < frames);
+        Assert.assertTrue(file.length() > 0);
+        bitmap.recycle();
+        Assert.assertTrue(file.delete());
+    }
+
+    /**
+     * Test for {@link ReactiveEncoder} failed by the frame.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testFailure() throws Exception {
+        final File file =
+                new File(InstrumentationRegistry.getContext().getFilesDir(), OUTPUT_FILE_NAME);
+        final ReactiveEncoder encoder = ReactiveEncoder.to(
+                MpegEncoder.from(WIDTH, HEIGHT).fps(FRAME_RATE),
+                file.getAbsolutePath(), WIDTH, HEIGHT);
+
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final CountDownLatch completed = new CountDownLatch(1);
+        encoder.getSamples().subscribe(new Flow.Subscriber<ReactiveEncoder.EncodedSample>() {
+            @Override
+            public final void onSubscribe(@NonNull Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public final void onNext(@NonNull ReactiveEncoder.EncodedSample sample) {}
+
+            @Override
+            public final void onError(@NonNull Throwable throwable) {
+                error.set(throwable);
+                completed.countDown();
+            }
+
+            @Override
+            public final void onComplete() {
+                completed.countDown();
+            }
+        });
+
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        encoder.onSubscribe(new Flow.Subscription() {
+            @Override
+            public final void request(long count) {}
+
+            @Override
+            public final void cancel() {
+                cancelled.countDown();
+            }
+        });
+        // The bitmap input has no frame buffer to draw
+        encoder.onNext(ReactiveEncoder.Frame.of());
+
+        Assert.assertTrue(completed.await(TIMEOUT, TimeUnit.SECONDS));
+        Assert.assertTrue(error.get() instanceof IllegalStateException);
+        Assert.assertTrue(cancelled.await(TIMEOUT, TimeUnit.SECONDS));
+
+        // The frames after the failure are dropped
+        encoder.onNext(ReactiveEncoder.Frame.of());
+        encoder.onComplete();
+        Assert.assertTrue(!file.exists() || file.delete());
+    }
+}
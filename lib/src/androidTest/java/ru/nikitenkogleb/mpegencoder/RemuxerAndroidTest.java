@@ -0,0 +1,106 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import android.media.MediaExtractor;
+import android.os.Build;
+
+import java.io.File;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * The {@link Remuxer} Instrumentation Test.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+public class RemuxerAndroidTest extends BaseSourceInstrumentationTest {
+
+    /** The one second (in microseconds). */
+    private static final long SECOND = 1000000L;
+
+    /** The test output file name. */
+    private static final String OUTPUT_FILE_NAME = "remuxed.mp4";
+
+    /** Constructs a new {@link RemuxerAndroidTest}. */
+    public RemuxerAndroidTest() {
+        super(OUTPUT_FILE_NAME);
+    }
+
+    /**
+     * Test for {@link Remuxer#trim(String, String, long, long)}.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testTrim() throws Exception {
+        assert mSourceFile != null && mOutputFile != null;
+        final long start = Remuxer.trim(mSourceFile.getAbsolutePath(),
+                mOutputFile.getAbsolutePath(), SECOND + 1, -1);
+        Assert.assertTrue(start <= SECOND + 1);
+        final int samples = countSamples(mOutputFile);
+        Assert.assertTrue(samples > 0 && samples < NUM_FRAMES);
+    }
+
+    /**
+     * Test for {@link Remuxer#concat(String, String...)}.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testConcat() throws Exception {
+        assert mSourceFile != null && mOutputFile != null;
+        final String source = mSourceFile.getAbsolutePath();
+        final long duration = Remuxer.concat(mOutputFile.getAbsolutePath(), source, source);
+        Assert.assertEquals(2 * NUM_FRAMES * SECOND / FRAME_RATE, duration, SECOND / FRAME_RATE);
+        Assert.assertEquals(2 * NUM_FRAMES, countSamples(mOutputFile));
+    }
+
+    /**
+     * Test for {@link Remuxer#concat(String, String...)} of sources with different rotations.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testConcatRotated() throws Exception {
+        assert mSourceFile != null && mRotatedFile != null && mOutputFile != null;
+        // The rotation of tracks is reported by the extractor since API23
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return;
+        }
+        try {
+            Remuxer.concat(mOutputFile.getAbsolutePath(),
+                    mSourceFile.getAbsolutePath(), mRotatedFile.getAbsolutePath());
+            Assert.fail("Sources of different rotations are joined");
+        } catch (IllegalArgumentException exception) {
+            logd(exception.getMessage());
+        }
+        Assert.assertFalse(mOutputFile.exists());
+    }
+
+    /**
+     * @param file the media file
+     * @return the number of samples of the first track
+     */
+    private static int countSamples(File file) throws Exception {
+        final MediaExtractor extractor = new MediaExtractor();
+        try {
+            extractor.setDataSource(file.getAbsolutePath());
+            extractor.selectTrack(0);
+            int result = 0;
+            while (extractor.getSampleTime() >= 0) {
+                result++;
+                extractor.advance();
+            }
+            return result;
+        } finally {
+            extractor.release();
+        }
+    }
+}
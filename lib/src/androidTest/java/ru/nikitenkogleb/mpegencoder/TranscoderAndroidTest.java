@@ -0,0 +1,92 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import android.os.Build;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * The {@link Transcoder} Instrumentation Test.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+public class TranscoderAndroidTest extends BaseSourceInstrumentationTest {
+
+    /** The test output file name. */
+    private static final String OUTPUT_FILE_NAME = "transcoded.mp4";
+
+    /** Constructs a new {@link TranscoderAndroidTest}. */
+    public TranscoderAndroidTest() {
+        super(OUTPUT_FILE_NAME);
+    }
+
+    /**
+     * Test for {@link Transcoder#transcode(MpegEncoder)} to the half size.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testTranscode() throws Exception {
+        assert mSourceFile != null && mOutputFile != null;
+
+        final Transcoder transcoder = new Transcoder(mSourceFile.getAbsolutePath());
+        Assert.assertEquals(WIDTH, transcoder.getWidth());
+        Assert.assertEquals(HEIGHT, transcoder.getHeight());
+
+        final MpegEncoder encoder = transcoder.encoder()
+                .to(mOutputFile.getAbsolutePath(), WIDTH / 2, HEIGHT / 2);
+        final long frames = transcoder.transcode(encoder);
+        encoder.close();
+        transcoder.close();
+
+        Assert.assertEquals(NUM_FRAMES, frames);
+        Assert.assertTrue(mOutputFile.length() > 0);
+
+        final Transcoder result = new Transcoder(mOutputFile.getAbsolutePath());
+        Assert.assertEquals(WIDTH / 2, result.getWidth());
+        Assert.assertEquals(HEIGHT / 2, result.getHeight());
+        result.close();
+    }
+
+    /**
+     * Test for {@link Transcoder#transcode(MpegEncoder)} of the rotated source.
+     * The frames keep the coded size and the rotation stays the orientation hint.
+     *
+     * @throws Exception by some fails
+     */
+    @Test
+    public final void testRotated() throws Exception {
+        assert mRotatedFile != null && mOutputFile != null;
+
+        final Transcoder transcoder = new Transcoder(mRotatedFile.getAbsolutePath());
+        Assert.assertEquals(WIDTH, transcoder.getWidth());
+        Assert.assertEquals(HEIGHT, transcoder.getHeight());
+        final boolean hinted = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+        if (hinted) {
+            Assert.assertEquals(ROTATION, transcoder.getRotation());
+        }
+
+        final MpegEncoder encoder = transcoder.encoder()
+                .to(mOutputFile.getAbsolutePath(), WIDTH, HEIGHT);
+        final long frames = transcoder.transcode(encoder);
+        encoder.close();
+        transcoder.close();
+
+        Assert.assertEquals(NUM_FRAMES, frames);
+
+        final Transcoder result = new Transcoder(mOutputFile.getAbsolutePath());
+        Assert.assertEquals(WIDTH, result.getWidth());
+        Assert.assertEquals(HEIGHT, result.getHeight());
+        if (hinted) {
+            Assert.assertEquals(ROTATION, result.getRotation());
+        }
+        result.close();
+    }
+}
@@ -0,0 +1,91 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import android.graphics.Rect;
+import android.opengl.Matrix;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * The {@link Transform} Instrumentation Test.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+public class TransformAndroidTest extends BaseInstrumentationTest {
+
+    /** The comparison precision. */
+    private static final float DELTA = 0.0001f;
+
+    /** Test for the crop. */
+    @Test
+    public final void testCrop() throws Exception {
+        final Transform transform = new Transform();
+        transform.crop = new Rect(10, 20, 60, 70);
+
+        final float[] mvp = new float[Transform.MATRIX_SIZE];
+        final float[] st = new float[Transform.MATRIX_SIZE];
+        Assert.assertFalse(transform.compute(100, 100, 100, 100, mvp, st));
+
+        // bottom-left and top-right texture corners
+        assertPoint(st, 0, 0, 0.1f, 0.3f);
+        assertPoint(st, 1, 1, 0.6f, 0.8f);
+        assertPoint(mvp, 1, 1, 1, 1);
+    }
+
+    /** Test for the letterbox. */
+    @Test
+    public final void testFit() throws Exception {
+        final Transform transform = new Transform();
+        transform.scaleType = MpegEncoder.ScaleType.FIT;
+
+        final float[] mvp = new float[Transform.MATRIX_SIZE];
+        final float[] st = new float[Transform.MATRIX_SIZE];
+        Assert.assertTrue(transform.compute(100, 100, 200, 100, mvp, st));
+        assertPoint(mvp, 1, 1, 0.5f, 1);
+
+        transform.scaleType = MpegEncoder.ScaleType.FILL;
+        Assert.assertFalse(transform.compute(100, 100, 200, 100, mvp, st));
+        assertPoint(mvp, 1, 1, 1, 2);
+    }
+
+    /** Test for the rotation and mirror. */
+    @Test
+    public final void testRotate() throws Exception {
+        final Transform transform = new Transform();
+        transform.rotation = 90;
+
+        final float[] mvp = new float[Transform.MATRIX_SIZE];
+        final float[] st = new float[Transform.MATRIX_SIZE];
+        transform.compute(100, 100, 100, 100, mvp, st);
+        // the top-left corner goes to the top-right one
+        assertPoint(mvp, -1, 1, 1, 1);
+
+        transform.mirror = true;
+        transform.compute(100, 100, 100, 100, mvp, st);
+        assertPoint(mvp, 1, 1, 1, 1);
+    }
+
+    /**
+     * Asserts the transformed point.
+     *
+     * @param matrix the matrix
+     * @param x the source x
+     * @param y the source y
+     * @param expectedX the expected x
+     * @param expectedY the expected y
+     */
+    private static void assertPoint(float[] matrix, float x, float y,
+            float expectedX, float expectedY) {
+        final float[] result = new float[4];
+        Matrix.multiplyMV(result, 0, matrix, 0, new float[] {x, y, 0, 1}, 0);
+        Assert.assertEquals(expectedX, result[0], DELTA);
+        Assert.assertEquals(expectedY, result[1], DELTA);
+    }
+}
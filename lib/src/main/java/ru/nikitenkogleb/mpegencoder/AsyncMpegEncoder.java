@@ -0,0 +1,300 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.Closeable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicClassMembers;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * The {@link MpegEncoder} on its own thread.
+ * <p>
+ * The EGL context of the encoder is current on the thread created it, so all the calls
+ * must come from that thread. This class owns such a thread and feeds it from
+ * a lock-free command queue, so frames can be submitted from any thread.
+ * Commands run in the order of submission and return futures.
+ * <p>
+ * The input buffer and bitmaps must not be changed until the future of their frame is done.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+public final class AsyncMpegEncoder implements Closeable {
+
+    /** The thread name. */
+    private static final String THREAD_NAME = "MpegEncoder";
+
+    /** The command queue. */
+    @NonNull
+    private final ConcurrentLinkedQueue<FutureTask<?>> mQueue = new ConcurrentLinkedQueue<>();
+
+    /** The encoder thread. */
+    @NonNull
+    private final Thread mThread;
+
+    /** The close command, set once the close was requested. */
+    @NonNull
+    private final AtomicReference<FutureTask<Void>> mClose = new AtomicReference<>();
+
+    /** The encoder thread has finished. */
+    private volatile boolean mTerminated = false;
+
+    /** The encoder, confined to the encoder thread. */
+    @Nullable
+    private MpegEncoder mEncoder = null;
+
+    /**
+     * Constructs a new {@link AsyncMpegEncoder}, waits for the encoder creation.
+     *
+     * @param builder the encoder parameters
+     * @param path the output file
+     * @param width the output width
+     * @param height the output height
+     */
+    AsyncMpegEncoder(@NonNull final MpegEncoder.Builder builder, @NonNull final String path,
+            final int width, final int height) {
+        final FutureTask<Void> create = new FutureTask<>(new Callable<Void>() {
+            @Override
+            public final Void call() throws Exception {
+                mEncoder = builder.to(path, width, height);
+                return null;
+            }
+        });
+        mQueue.offer(create);
+        mThread = new Thread(new Runnable() {
+            @Override
+            public final void run() {
+                loop();
+            }
+        }, THREAD_NAME);
+        mThread.start();
+        await(create);
+    }
+
+    /** The command loop of the encoder thread. */
+    private void loop() {
+        try {
+            while (true) {
+                final FutureTask<?> task = mQueue.poll();
+                if (task == null) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                task.run();
+                if (mEncoder == null || task == mClose.get()) {
+                    return;
+                }
+            }
+        } finally {
+            mTerminated = true;
+            cancelQueued();
+        }
+    }
+
+    /** Cancels the commands left after the encoder thread has finished. */
+    private void cancelQueued() {
+        FutureTask<?> task;
+        while ((task = mQueue.poll()) != null) {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * Queues the command to the encoder thread.
+     *
+     * @param task the command
+     * @return the command
+     */
+    @NonNull
+    private <T> FutureTask<T> post(@NonNull FutureTask<T> task) {
+        mQueue.offer(task);
+        if (mTerminated) {
+            cancelQueued();
+        } else {
+            LockSupport.unpark(mThread);
+        }
+        return task;
+    }
+
+    /**
+     * Queues the command to run with the encoder on the encoder thread.
+     *
+     * @param command the command
+     * @return the future of the command result
+     */
+    @NonNull
+    public final <T> Future<T> submit(@NonNull final Command<T> command) {
+        if (mClose.get() != null) {
+            throw new IllegalStateException("Already closed");
+        }
+        return post(new FutureTask<>(new Callable<T>() {
+            @Override
+            public final T call() throws Exception {
+                assert mEncoder != null;
+                return command.run(mEncoder);
+            }
+        }));
+    }
+
+    /**
+     * Queues {@link MpegEncoder#draw()}.
+     *
+     * @return the future of the draw result
+     */
+    @NonNull
+    public final Future<Boolean> draw() {
+        return submit(new Command<Boolean>() {
+            @Override
+            public final Boolean run(@NonNull MpegEncoder encoder) {
+                return encoder.draw();
+            }
+        });
+    }
+
+    /**
+     * Queues {@link MpegEncoder#draw(long)}.
+     *
+     * @param captureTime the capture time of the frame (in nanoseconds)
+     * @return the future of the draw result
+     */
+    @NonNull
+    public final Future<Boolean> draw(final long captureTime) {
+        return submit(new Command<Boolean>() {
+            @Override
+            public final Boolean run(@NonNull MpegEncoder encoder) {
+                return encoder.draw(captureTime);
+            }
+        });
+    }
+
+    /**
+     * Queues {@link MpegEncoder#draw(Rect)}.
+     *
+     * @param dirty the changed region of the input buffer
+     * @return the future of the draw result
+     */
+    @NonNull
+    public final Future<Boolean> draw(@NonNull Rect dirty) {
+        final Rect region = new Rect(dirty);
+        return submit(new Command<Boolean>() {
+            @Override
+            public final Boolean run(@NonNull MpegEncoder encoder) {
+                return encoder.draw(region);
+            }
+        });
+    }
+
+    /**
+     * Queues {@link MpegEncoder#draw(Bitmap)}.
+     *
+     * @param bitmap the frame
+     * @return the future of the draw result
+     */
+    @NonNull
+    public final Future<Boolean> draw(@NonNull final Bitmap bitmap) {
+        return submit(new Command<Boolean>() {
+            @Override
+            public final Boolean run(@NonNull MpegEncoder encoder) {
+                return encoder.draw(bitmap);
+            }
+        });
+    }
+
+    /**
+     * Queues {@link MpegEncoder#draw(Bitmap, long)}.
+     *
+     * @param bitmap the frame
+     * @param captureTime the capture time of the frame (in nanoseconds)
+     * @return the future of the draw result
+     */
+    @NonNull
+    public final Future<Boolean> draw(@NonNull final Bitmap bitmap, final long captureTime) {
+        return submit(new Command<Boolean>() {
+            @Override
+            public final Boolean run(@NonNull MpegEncoder encoder) {
+                return encoder.draw(bitmap, captureTime);
+            }
+        });
+    }
+
+    /**
+     * Queues the close of the encoder after all the queued commands.
+     * The following calls return the same future.
+     *
+     * @return the future of the close
+     */
+    @NonNull
+    public final Future<Void> closeAsync() {
+        final FutureTask<Void> close = new FutureTask<>(new Callable<Void>() {
+            @Override
+            public final Void call() throws Exception {
+                assert mEncoder != null;
+                mEncoder.close();
+                return null;
+            }
+        });
+        // The command is published before it's queued, so no caller waits for another
+        return mClose.compareAndSet(null, close) ? post(close) : mClose.get();
+    }
+
+    /** Closes the encoder after all the queued commands, waits for the close. */
+    @Override
+    public final void close() {
+        if (Thread.currentThread() == mThread) {
+            throw new IllegalStateException("Close from the encoder thread");
+        }
+        await(closeAsync());
+    }
+
+    /**
+     * Waits for the command.
+     *
+     * @param future the command result
+     */
+    private static void await(@NonNull Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(exception);
+        } catch (ExecutionException exception) {
+            final Throwable cause = exception.getCause();
+            throw cause instanceof RuntimeException ?
+                    (RuntimeException) cause : new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * The command run with the encoder on the encoder thread.
+     *
+     * @author Nikitenko Gleb
+     * @since 1.0, 19/10/2026
+     */
+    @Keep@KeepPublicClassMembers
+    @SuppressWarnings("WeakerAccess, unused")
+    public interface Command<T> {
+
+        /**
+         * @param encoder the encoder
+         * @return the command result
+         *
+         * @throws Exception by some fails
+         */
+        T run(@NonNull MpegEncoder encoder) throws Exception;
+    }
+}
@@ -0,0 +1,243 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * The pool of direct buffers under a memory budget.
+ * <p>
+ * Buffers are allocated in power-of-two size classes and reused by class.
+ * The pool accounts all buffers allocated by it, both in use and free, and never
+ * exceeds the budget: free buffers of other classes are dropped to make room,
+ * then the allocation fails. The ring of {@link MpegEncoder.Builder#writeBuffer(int)}
+ * and the sample copies of {@link Remuxer} are taken from the default pool, the input
+ * buffer of {@link MpegEncoder#from(BufferPool, int, int)} from the given one.
+ * The samples of {@link ReactiveEncoder} are heap copies owned by the subscriber,
+ * they are not accounted by any pool.
+ * <p>
+ * The direct memory of dropped buffers is returned to the system
+ * when they are garbage collected.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+public final class BufferPool {
+
+    /** The smallest size class (4 KiB). */
+    private static final int MIN_SHIFT = 12;
+    /** The largest size class (1 GiB). */
+    private static final int MAX_SHIFT = 30;
+
+    /** The default budget (64 MiB). */
+    private static final long DEFAULT_BUDGET = 64L << 20;
+
+    /** The default pool. */
+    private static final BufferPool DEFAULT = new BufferPool(DEFAULT_BUDGET);
+
+    /** The free buffers by size classes. */
+    @NonNull
+    private final ArrayList<ArrayDeque<ByteBuffer>> mFree =
+            new ArrayList<>(MAX_SHIFT - MIN_SHIFT + 1);
+
+    /** The buffers in use, by identity. */
+    @NonNull
+    private final Set<ByteBuffer> mIssued =
+            Collections.newSetFromMap(new IdentityHashMap<ByteBuffer, Boolean>());
+
+    /** The budget in bytes. */
+    private long mBudget;
+
+    /** The bytes of all buffers of the pool. */
+    private long mAllocated = 0;
+    /** The bytes of buffers in use. */
+    private long mInUse = 0;
+    /** The peak of allocated bytes. */
+    private long mPeak = 0;
+    /** The number of reused buffers. */
+    private long mHits = 0;
+    /** The number of allocated buffers. */
+    private long mMisses = 0;
+
+    /**
+     * Constructs a new {@link BufferPool}.
+     *
+     * @param budget the budget in bytes
+     */
+    public BufferPool(long budget) {
+        setBudget(budget);
+        for (int i = MIN_SHIFT; i <= MAX_SHIFT; i++) {
+            mFree.add(new ArrayDeque<ByteBuffer>());
+        }
+    }
+
+    /** @return the pool shared by the library, 64 MiB by default */
+    @NonNull
+    public static BufferPool getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @param size the size in bytes
+     * @return the size class, the shift of the class size
+     */
+    static int getSizeClass(int size) {
+        if (size <= 0 || size > 1 << MAX_SHIFT) {
+            throw new IllegalArgumentException("Invalid size: " + size);
+        }
+        return Math.max(MIN_SHIFT, 32 - Integer.numberOfLeadingZeros(size - 1));
+    }
+
+    /**
+     * Sets the budget. If it's below the allocated bytes,
+     * free buffers are dropped and released buffers are not kept.
+     *
+     * @param budget the budget in bytes
+     */
+    public final synchronized void setBudget(long budget) {
+        if (budget <= 0) {
+            throw new IllegalArgumentException("Invalid budget: " + budget);
+        }
+        mBudget = budget;
+        if (!mFree.isEmpty()) {
+            evict(0);
+        }
+    }
+
+    /**
+     * Takes the buffer from the pool.
+     *
+     * @param size the size in bytes
+     * @return the buffer of the size class, its limit is the size
+     *
+     * @throws IllegalStateException if the budget is exceeded
+     */
+    @NonNull
+    public final ByteBuffer acquire(int size) {
+        final ByteBuffer result = tryAcquire(size);
+        if (result == null) {
+            throw new IllegalStateException("Memory budget exceeded: " + size + " bytes, " +
+                    getInUse() + " of " + getBudget() + " in use");
+        }
+        return result;
+    }
+
+    /**
+     * Takes the buffer from the pool.
+     *
+     * @param size the size in bytes
+     * @return the buffer of the size class, its limit is the size, or null over the budget
+     */
+    @Nullable
+    public final synchronized ByteBuffer tryAcquire(int size) {
+        final int shift = getSizeClass(size);
+        final int capacity = 1 << shift;
+        ByteBuffer result = mFree.get(shift - MIN_SHIFT).poll();
+        if (result != null) {
+            mHits++;
+        } else {
+            if (!evict(capacity)) {
+                return null;
+            }
+            result = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+            mAllocated += capacity;
+            mPeak = Math.max(mPeak, mAllocated);
+            mMisses++;
+        }
+        mInUse += capacity;
+        mIssued.add(result);
+        result.clear();
+        result.limit(size);
+        return result;
+    }
+
+    /**
+     * Returns the buffer to the pool.
+     * The buffer must not be used after that.
+     *
+     * @param buffer the buffer taken from this pool, not a duplicate or a slice of it
+     *
+     * @throws IllegalArgumentException if the buffer isn't in use from this pool
+     */
+    public final synchronized void release(@NonNull ByteBuffer buffer) {
+        if (!mIssued.remove(buffer)) {
+            throw new IllegalArgumentException("Not a buffer of this pool");
+        }
+        final int capacity = buffer.capacity();
+        mInUse -= capacity;
+        if (mAllocated > mBudget) {
+            mAllocated -= capacity;
+        } else {
+            mFree.get(Integer.numberOfTrailingZeros(capacity) - MIN_SHIFT).push(buffer);
+        }
+    }
+
+    /** Drops all free buffers. */
+    public final synchronized void trim() {
+        for (ArrayDeque<ByteBuffer> free : mFree) {
+            for (ByteBuffer buffer : free) {
+                mAllocated -= buffer.capacity();
+            }
+            free.clear();
+        }
+    }
+
+    /**
+     * Drops free buffers, the largest first, until the new allocation fits the budget.
+     *
+     * @param bytes the new allocation in bytes
+     * @return true if the allocation fits the budget
+     */
+    private boolean evict(long bytes) {
+        for (int i = mFree.size() - 1; i >= 0 && mAllocated + bytes > mBudget; i--) {
+            final ArrayDeque<ByteBuffer> free = mFree.get(i);
+            while (!free.isEmpty() && mAllocated + bytes > mBudget) {
+                mAllocated -= free.pop().capacity();
+            }
+        }
+        return mAllocated + bytes <= mBudget;
+    }
+
+    /** @return the budget in bytes */
+    public final synchronized long getBudget() {
+        return mBudget;
+    }
+
+    /** @return the bytes of all buffers of the pool, in use and free */
+    public final synchronized long getAllocated() {
+        return mAllocated;
+    }
+
+    /** @return the bytes of buffers in use */
+    public final synchronized long getInUse() {
+        return mInUse;
+    }
+
+    /** @return the peak of allocated bytes */
+    public final synchronized long getPeak() {
+        return mPeak;
+    }
+
+    /** @return the number of buffers reused from the pool */
+    public final synchronized long getHits() {
+        return mHits;
+    }
+
+    /** @return the number of buffers allocated by the pool */
+    public final synchronized long getMisses() {
+        return mMisses;
+    }
+}
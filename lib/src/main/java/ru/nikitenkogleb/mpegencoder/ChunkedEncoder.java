@@ -0,0 +1,359 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicClassMembers;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * Encodes a long frame sequence in chunks on several encoder instances at once.
+ * <p>
+ * Every chunk is encoded by its own {@link MpegEncoder} on its own thread, so it starts
+ * with a key frame and doesn't refer to other chunks. The chunks are joined
+ * by {@link Remuxer#concat(String, String...)} without re-encoding.
+ * The number of concurrent encoders is limited by the max instances of the codec.
+ * <p>
+ * Every chunk is encoded from the same {@link MpegEncoder.Builder} with its own timeline,
+ * so the builder must not carry a state of the whole file, that is a
+ * {@link BitRateController} or explicit key frame times.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+public final class ChunkedEncoder {
+
+    /** The log-cat tag. */
+    private static final String TAG = "MpegEncoder";
+
+    /** Verbose mode logging. */
+    private static final boolean VERBOSE =
+            BuildConfig.DEBUG || Log.isLoggable(TAG, Log.VERBOSE);
+    /** Warning mode logging. */
+    private static final boolean WARNINGS =
+            BuildConfig.DEBUG || Log.isLoggable(TAG, Log.WARN);
+
+    /** The default chunk length (in frames). */
+    private static final int DEFAULT_CHUNK_FRAMES = 300;
+
+    /** The chunk file prefix. */
+    private static final String CHUNK_FILE = "mpegencoder.chunk.";
+
+    /** The encoder parameters. */
+    @NonNull
+    private final MpegEncoder.Builder mBuilder;
+
+    /** The frame source. */
+    @NonNull
+    private final Source mSource;
+
+    /** The number of frames. */
+    private final int mFrames;
+
+    /** The chunk length (in frames). */
+    private int mChunkFrames = DEFAULT_CHUNK_FRAMES;
+
+    /** The max number of concurrent encoders or 0 for the codec limit. */
+    private int mThreads = 0;
+
+    /** The directory of chunk files. */
+    @Nullable
+    private File mTempDir = null;
+
+    /**
+     * Constructs a new {@link ChunkedEncoder}.
+     *
+     * @param builder the encoder parameters
+     * @param source the frame source
+     * @param frames the number of frames
+     */
+    private ChunkedEncoder(@NonNull MpegEncoder.Builder builder,
+            @NonNull Source source, int frames) {
+        if (!builder.isBitmapInput()) {
+            throw new IllegalStateException("Chunks require the bitmap input in non real-time");
+        }
+        if (builder.hasBitRateController()) {
+            throw new IllegalStateException("Chunks can't share the bitrate controller");
+        }
+        if (builder.hasKeyFrames()) {
+            throw new IllegalStateException("Chunks can't share the key frame times");
+        }
+        if (frames <= 0) {
+            throw new IllegalArgumentException("No frames");
+        }
+        mBuilder = builder;
+        mSource = source;
+        mFrames = frames;
+    }
+
+    /**
+     * Create a {@link ChunkedEncoder}.
+     *
+     * @param builder the encoder parameters, created by {@link MpegEncoder#from(int, int)}
+     * @param source the frame source
+     * @param frames the number of frames
+     *
+     * @return a {@link ChunkedEncoder}
+     */
+    @NonNull
+    public static ChunkedEncoder from(@NonNull MpegEncoder.Builder builder,
+            @NonNull Source source, int frames) {
+        return new ChunkedEncoder(builder, source, frames);
+    }
+
+    /**
+     * The chunk length, rounded up to the key frame interval of the builder.
+     * By default, the chunk length is 300 frames.
+     */
+    @NonNull
+    public final ChunkedEncoder chunk(int frames) {
+        if (frames <= 0) {
+            throw new IllegalArgumentException("Invalid chunk: " + frames);
+        }
+        mChunkFrames = frames;
+        return this;
+    }
+
+    /** The max number of concurrent encoders, by default it's the max instances of codec. */
+    @NonNull
+    public final ChunkedEncoder threads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Invalid threads: " + threads);
+        }
+        mThreads = threads;
+        return this;
+    }
+
+    /** The directory of chunk files, by default it's the directory of the output. */
+    @NonNull
+    public final ChunkedEncoder temp(@NonNull File dir) {
+        mTempDir = dir;
+        return this;
+    }
+
+    /**
+     * Encodes all frames.
+     *
+     * @param path the output file
+     * @param width the output width
+     * @param height the output height
+     *
+     * @return the number of chunks
+     * @throws IOException if the output can't be written
+     */
+    public final int to(@NonNull String path, int width, int height) throws IOException {
+        final int interval = mBuilder.getKeyFrameInterval();
+        final int chunk = interval > 0 ?
+                (mChunkFrames + interval - 1) / interval * interval : mChunkFrames;
+        final int chunks = (mFrames + chunk - 1) / chunk;
+        final int threads = Math.min(chunks, getThreads(width, height));
+        logv("Encoding " + mFrames + " frames in " + chunks + " chunks on " + threads + " threads");
+
+        final File dir = mTempDir != null ? mTempDir :
+                new File(path).getAbsoluteFile().getParentFile();
+        final String[] files = new String[chunks];
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<Void>> futures = new ArrayList<>(chunks);
+            for (int i = 0; i < chunks; i++) {
+                files[i] = File.createTempFile(CHUNK_FILE, null, dir).getAbsolutePath();
+                futures.add(executor.submit(new Chunk(files[i], width, height,
+                        i * chunk, Math.min(mFrames, (i + 1) * chunk))));
+            }
+            for (Future<Void> future : futures) {
+                await(future);
+            }
+            Remuxer.concat(path, files);
+        } finally {
+            // The sibling chunks hold encoders and write their files until they stop
+            shutdown(executor);
+            for (String file : files) {
+                if (file != null && !new File(file).delete()) {
+                    logw("Unable to delete " + file);
+                }
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * @param width the output width
+     * @param height the output height
+     *
+     * @return the max number of concurrent encoders
+     */
+    private int getThreads(int width, int height) {
+        final EncoderInfo info = mBuilder.findEncoder(width, height);
+        final int instances = info != null ? info.getMaxInstances() : EncoderInfo.UNKNOWN;
+        if (instances == EncoderInfo.UNKNOWN) {
+            return mThreads > 0 ? mThreads : 1;
+        }
+        return mThreads > 0 ? Math.min(mThreads, instances) : instances;
+    }
+
+    /**
+     * Interrupts the chunks and waits until their encoders are closed.
+     *
+     * @param executor the executor of chunks
+     */
+    private static void shutdown(@NonNull ExecutorService executor) {
+        executor.shutdownNow();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException exception) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for the chunk.
+     *
+     * @param future the chunk result
+     * @throws IOException if the chunk can't be written
+     */
+    private static void await(@NonNull Future<Void> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(exception);
+        } catch (ExecutionException exception) {
+            final Throwable cause = exception.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new RuntimeException(cause);
+            }
+        }
+    }
+
+    /** Log verbose. */
+    private static void logv(@NonNull String msg) {
+        log(Log.VERBOSE, VERBOSE, msg);
+    }
+
+    /** Log warning. */
+    private static void logw(@NonNull String msg) {
+        log(Log.WARN, WARNINGS, msg);
+    }
+
+    /**
+     * Common log-helper.
+     *
+     * @param level the log-level
+     * @param enable log-enabled flag
+     * @param msg the message
+     */
+    private static void log(int level, boolean enable, @NonNull String msg) {
+        if (enable) {
+            Log.println(level, TAG, msg);
+        }
+    }
+
+    /**
+     * The encoding of one chunk.
+     *
+     * @author Nikitenko Gleb
+     * @since 1.0, 19/10/2026
+     */
+    private final class Chunk implements Callable<Void> {
+
+        /** The chunk file. */
+        @NonNull
+        private final String mPath;
+        /** The output width. */
+        private final int mWidth;
+        /** The output height. */
+        private final int mHeight;
+        /** The first frame. */
+        private final int mStart;
+        /** The end frame, exclusive. */
+        private final int mEnd;
+
+        /**
+         * Constructs a new {@link Chunk}.
+         *
+         * @param path the chunk file
+         * @param width the output width
+         * @param height the output height
+         * @param start the first frame
+         * @param end the end frame, exclusive
+         */
+        Chunk(@NonNull String path, int width, int height, int start, int end) {
+            mPath = path;
+            mWidth = width;
+            mHeight = height;
+            mStart = start;
+            mEnd = end;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public final Void call() throws Exception {
+            final Bitmap bitmap =
+                    Bitmap.createBitmap(mBuilder.width, mBuilder.height, Bitmap.Config.ARGB_8888);
+            final MpegEncoder encoder = mBuilder.to(mPath, mWidth, mHeight);
+            try {
+                for (int i = mStart; i < mEnd; i++) {
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                    mSource.onDrawFrame(i, bitmap);
+                    encoder.draw(bitmap);
+                }
+            } finally {
+                encoder.close();
+                bitmap.recycle();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The source of frames.
+     * <p>
+     * Called concurrently from the threads of chunks, but sequentially within a chunk.
+     *
+     * @author Nikitenko Gleb
+     * @since 1.0, 19/10/2026
+     */
+    @Keep@KeepPublicClassMembers
+    @SuppressWarnings("WeakerAccess, unused")
+    public interface Source {
+
+        /**
+         * Draws the frame.
+         *
+         * @param index the frame index in the sequence
+         * @param bitmap the bitmap of the chunk thread, of the input size
+         */
+        void onDrawFrame(int index, @NonNull Bitmap bitmap);
+    }
+}
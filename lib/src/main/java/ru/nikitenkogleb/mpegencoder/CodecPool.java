@@ -0,0 +1,193 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import android.media.MediaCodec;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.RequiresApi;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * The pool of stopped encoders, reused by the following {@link MpegEncoder}s
+ * instead of the codec allocation.
+ * <p>
+ * Idle encoders still occupy codec instances, so the pool must be trimmed or closed
+ * as soon as no more encoding is expected.
+ * <p>
+ * A stopped encoder is reset before it's pooled, so an encoder that has hit an error
+ * is never reused. {@link MediaCodec#reset()} is available from API21, below it
+ * encoders are released instead.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+final class CodecPool implements Closeable {
+
+    /** The log-cat tag. */
+    private static final String TAG = "MpegEncoder";
+
+    /** Verbose mode logging. */
+    private static final boolean VERBOSE =
+            BuildConfig.DEBUG || Log.isLoggable(TAG, Log.VERBOSE);
+    /** Warning mode logging. */
+    private static final boolean WARNINGS =
+            BuildConfig.DEBUG || Log.isLoggable(TAG, Log.WARN);
+
+    /** The idle encoders by codec names. */
+    @NonNull
+    private final HashMap<String, ArrayList<MediaCodec>> mIdle = new HashMap<>();
+
+    /** The number of reused encoders. */
+    private long mHits = 0;
+
+    /** The pool was closed. */
+    private boolean mClosed = false;
+
+    /**
+     * @param name the codec name
+     * @return the idle encoder or a new one
+     *
+     * @throws IOException if the codec can't be created
+     */
+    @NonNull
+    final MediaCodec acquire(@NonNull String name) throws IOException {
+        synchronized (mIdle) {
+            final ArrayList<MediaCodec> idle = mIdle.get(name);
+            if (idle != null && !idle.isEmpty()) {
+                mHits++;
+                return idle.remove(idle.size() - 1);
+            }
+        }
+        return MediaCodec.createByCodecName(name);
+    }
+
+    /** @return true if encoders can be reused on this device */
+    static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
+    }
+
+    /**
+     * Resets the stopped encoder and returns it to the pool.
+     * The encoder is released if it can't be reset or the pool is closed.
+     *
+     * @param codec the stopped encoder
+     */
+    final void recycle(@NonNull MediaCodec codec) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP || isClosed() ||
+                !reset(codec)) {
+            codec.release();
+            return;
+        }
+        synchronized (mIdle) {
+            if (!mClosed) {
+                final String name = codec.getName();
+                ArrayList<MediaCodec> idle = mIdle.get(name);
+                if (idle == null) {
+                    mIdle.put(name, idle = new ArrayList<>());
+                }
+                idle.add(codec);
+                return;
+            }
+        }
+        codec.release();
+    }
+
+    /**
+     * @param codec the stopped encoder
+     * @return true if the encoder is reset to the uninitialized state
+     */
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    private static boolean reset(@NonNull MediaCodec codec) {
+        try {
+            codec.reset();
+            return true;
+        } catch (IllegalStateException exception) {
+            logw("Unable to reset " + codec.getName() + ": " + exception);
+            return false;
+        }
+    }
+
+    /** @return true if the pool is closed */
+    private boolean isClosed() {
+        synchronized (mIdle) {
+            return mClosed;
+        }
+    }
+
+    /**
+     * @param name the codec name
+     * @return the number of idle encoders of the codec
+     */
+    final int getIdle(@NonNull String name) {
+        synchronized (mIdle) {
+            final ArrayList<MediaCodec> idle = mIdle.get(name);
+            return idle != null ? idle.size() : 0;
+        }
+    }
+
+    /** @return the number of encoders reused from the pool */
+    final long getHits() {
+        synchronized (mIdle) {
+            return mHits;
+        }
+    }
+
+    /** Releases the idle encoders. */
+    final void trim() {
+        final ArrayList<MediaCodec> codecs = new ArrayList<>();
+        synchronized (mIdle) {
+            for (ArrayList<MediaCodec> idle : mIdle.values()) {
+                codecs.addAll(idle);
+            }
+            mIdle.clear();
+        }
+        for (MediaCodec codec : codecs) {
+            codec.release();
+        }
+        if (!codecs.isEmpty()) {
+            logv("Released idle encoders: " + codecs.size());
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public final void close() {
+        synchronized (mIdle) {
+            mClosed = true;
+        }
+        trim();
+    }
+
+    /** Log verbose. */
+    private static void logv(@NonNull String msg) {
+        log(Log.VERBOSE, VERBOSE, msg);
+    }
+
+    /** Log warning. */
+    private static void logw(@NonNull String msg) {
+        log(Log.WARN, WARNINGS, msg);
+    }
+
+    /**
+     * Common log-helper.
+     *
+     * @param level the log-level
+     * @param enable log-enabled flag
+     * @param msg the message
+     */
+    private static void log(int level, boolean enable, @NonNull String msg) {
+        if (enable) {
+            Log.println(level, TAG, msg);
+        }
+    }
+}
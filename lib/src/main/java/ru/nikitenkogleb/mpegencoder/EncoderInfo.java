@@ -0,0 +1,296 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import android.media.MediaCodecInfo;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RequiresApi;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * The capabilities of a video encoder found by {@link EncoderProbe}.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+public final class EncoderInfo {
+
+    /** The unknown value. */
+    static final int UNKNOWN = 0;
+
+    /** The fields separator of serialized form. */
+    private static final char SEPARATOR = ';';
+    /** The profiles separator of serialized form. */
+    private static final char LIST_SEPARATOR = ',';
+    /** The number of serialized fields. */
+    private static final int FIELDS = 15;
+
+    /**
+     * Ranks encoders from the best to the worst.
+     * The performance points (API29) rank first, the max frame rate is the fallback
+     * for encoders of the same performance or with unknown one.
+     */
+    static final Comparator<EncoderInfo> RANKING = new Comparator<EncoderInfo>() {
+        @Override
+        public final int compare(@NonNull EncoderInfo first, @NonNull EncoderInfo second) {
+            int result = compare(second.hardware, first.hardware);
+            if (result == 0) result = compare(second.surface, first.surface);
+            if (result == 0) result = compare(second.performance, first.performance);
+            if (result == 0) result = compare(second.maxFrameRate, first.maxFrameRate);
+            if (result == 0) result = compare(second.maxInstances, first.maxInstances);
+            if (result == 0) result = compare(second.maxWidth * second.maxHeight,
+                    first.maxWidth * first.maxHeight);
+            return result;
+        }
+
+        /** Compares two booleans. */
+        private int compare(boolean first, boolean second) {
+            return first == second ? 0 : (first ? 1 : -1);
+        }
+
+        /** Compares two integers. */
+        private int compare(long first, long second) {
+            return first < second ? -1 : (first == second ? 0 : 1);
+        }
+    };
+
+    /** The codec name. */
+    @NonNull
+    final String name;
+    /** The mime type. */
+    @NonNull
+    final String mime;
+    /** The hardware-accelerated codec. */
+    final boolean hardware;
+    /** The surface input is supported. */
+    final boolean surface;
+    /** The max number of concurrent instances. */
+    final int maxInstances;
+    /** The max frame size. */
+    final int maxWidth, maxHeight;
+    /** The frame size alignment. */
+    final int widthAlignment, heightAlignment;
+    /** The max frame rate. */
+    final int maxFrameRate;
+    /** The bitrate range. */
+    final int minBitRate, maxBitRate;
+    /** The supported bitrate modes (bit-mask of 1 << mode). */
+    final int bitRateModes;
+    /** The max macroblock rate of the performance points (API29). */
+    final int performance;
+    /** The supported profiles. */
+    @NonNull
+    final int[] profiles;
+
+    /** The video capabilities of the codec (API21), not serialized, or null if unknown. */
+    @Nullable
+    private MediaCodecInfo.VideoCapabilities mVideo = null;
+
+    /** Constructs a new {@link EncoderInfo}. */
+    EncoderInfo(@NonNull String name, @NonNull String mime, boolean hardware, boolean surface,
+            int maxInstances, int maxWidth, int maxHeight, int widthAlignment,
+            int heightAlignment, int maxFrameRate, int minBitRate, int maxBitRate,
+            int bitRateModes, int performance, @NonNull int[] profiles) {
+        this.name = name;
+        this.mime = mime;
+        this.hardware = hardware;
+        this.surface = surface;
+        this.maxInstances = maxInstances;
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        this.widthAlignment = widthAlignment;
+        this.heightAlignment = heightAlignment;
+        this.maxFrameRate = maxFrameRate;
+        this.minBitRate = minBitRate;
+        this.maxBitRate = maxBitRate;
+        this.bitRateModes = bitRateModes;
+        this.performance = performance;
+        this.profiles = profiles;
+    }
+
+    /** @return the codec name */
+    @NonNull
+    public final String getName() {
+        return name;
+    }
+
+    /** @return the mime type */
+    @NonNull
+    public final String getMime() {
+        return mime;
+    }
+
+    /** @return true for hardware-accelerated codec */
+    public final boolean isHardware() {
+        return hardware;
+    }
+
+    /** @return true if the surface input is supported */
+    public final boolean isSurfaceSupported() {
+        return surface;
+    }
+
+    /** @return the max number of concurrent instances or 0 if unknown */
+    public final int getMaxInstances() {
+        return maxInstances;
+    }
+
+    /** @return the max frame rate or 0 if unknown */
+    public final int getMaxFrameRate() {
+        return maxFrameRate;
+    }
+
+    /** @return the max macroblocks per second of the performance points or 0 if unknown */
+    public final int getPerformance() {
+        return performance;
+    }
+
+    /**
+     * @param mode the bitrate mode
+     * @return true if the mode is supported
+     */
+    public final boolean isBitRateModeSupported(@MpegEncoder.BitRateMode int mode) {
+        return (bitRateModes & (1 << mode)) != 0;
+    }
+
+    /**
+     * @param profile the codec profile
+     * @return true if the profile is supported
+     */
+    public final boolean isProfileSupported(int profile) {
+        for (int value : profiles) {
+            if (value == profile) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param width the frame width
+     * @param height the frame height
+     *
+     * @return true if the frame size is supported (unknown limits are passed)
+     */
+    public final boolean isSizeSupported(int width, int height) {
+        final boolean result = (maxWidth == UNKNOWN || width <= maxWidth) &&
+                (maxHeight == UNKNOWN || height <= maxHeight) &&
+                (widthAlignment == UNKNOWN || width % widthAlignment == 0) &&
+                (heightAlignment == UNKNOWN || height % heightAlignment == 0);
+        return result && (mVideo == null ||
+                Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP ||
+                isSizeSupported(mVideo, width, height));
+    }
+
+    /**
+     * The max area and block limits are checked by the video capabilities only.
+     *
+     * @param video the video capabilities
+     * @param width the frame width
+     * @param height the frame height
+     *
+     * @return true if the frame size is supported
+     */
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    private static boolean isSizeSupported(@NonNull MediaCodecInfo.VideoCapabilities video,
+            int width, int height) {
+        return video.isSizeSupported(width, height);
+    }
+
+    /** @return true if the video capabilities are attached */
+    final boolean hasVideoCapabilities() {
+        return mVideo != null;
+    }
+
+    /** @param video the video capabilities of the codec */
+    final void setVideoCapabilities(@NonNull MediaCodecInfo.VideoCapabilities video) {
+        mVideo = video;
+    }
+
+    /** @return the serialized form */
+    @NonNull
+    final String serialize() {
+        final StringBuilder builder = new StringBuilder()
+                .append(name).append(SEPARATOR)
+                .append(mime).append(SEPARATOR)
+                .append(hardware).append(SEPARATOR)
+                .append(surface).append(SEPARATOR)
+                .append(maxInstances).append(SEPARATOR)
+                .append(maxWidth).append(SEPARATOR)
+                .append(maxHeight).append(SEPARATOR)
+                .append(widthAlignment).append(SEPARATOR)
+                .append(heightAlignment).append(SEPARATOR)
+                .append(maxFrameRate).append(SEPARATOR)
+                .append(minBitRate).append(SEPARATOR)
+                .append(maxBitRate).append(SEPARATOR)
+                .append(bitRateModes).append(SEPARATOR)
+                .append(performance).append(SEPARATOR);
+        for (int i = 0; i < profiles.length; i++) {
+            if (i != 0) builder.append(LIST_SEPARATOR);
+            builder.append(profiles[i]);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @param line the serialized form
+     * @return the parsed {@link EncoderInfo} or null if the line is malformed
+     */
+    @Nullable
+    static EncoderInfo parse(@NonNull String line) {
+        final String[] fields = line.split(String.valueOf(SEPARATOR), -1);
+        if (fields.length != FIELDS) {
+            return null;
+        }
+        try {
+            final String[] values = fields[FIELDS - 1].isEmpty() ?
+                    new String[0] : fields[FIELDS - 1].split(String.valueOf(LIST_SEPARATOR));
+            final int[] profiles = new int[values.length];
+            for (int i = 0; i < values.length; i++) {
+                profiles[i] = Integer.parseInt(values[i]);
+            }
+            return new EncoderInfo(fields[0], fields[1],
+                    Boolean.parseBoolean(fields[2]), Boolean.parseBoolean(fields[3]),
+                    Integer.parseInt(fields[4]), Integer.parseInt(fields[5]),
+                    Integer.parseInt(fields[6]), Integer.parseInt(fields[7]),
+                    Integer.parseInt(fields[8]), Integer.parseInt(fields[9]),
+                    Integer.parseInt(fields[10]), Integer.parseInt(fields[11]),
+                    Integer.parseInt(fields[12]), Integer.parseInt(fields[13]), profiles);
+        } catch (NumberFormatException exception) {
+            return null;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public final boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof EncoderInfo)) return false;
+        final EncoderInfo info = (EncoderInfo) obj;
+        return serialize().equals(info.serialize());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public final int hashCode() {
+        return 31 * name.hashCode() + mime.hashCode();
+    }
+
+    /** {@inheritDoc} */
+    @NonNull
+    @Override
+    public final String toString() {
+        return "EncoderInfo{" + name + ", " + mime + (hardware ? ", hw" : ", sw") +
+                ", " + maxWidth + "x" + maxHeight + "@" + maxFrameRate +
+                ", instances=" + maxInstances + ", performance=" + performance +
+                ", profiles=" + Arrays.toString(profiles) + '}';
+    }
+}
@@ -0,0 +1,478 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RequiresApi;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * Enumerates and ranks the video encoders of the device.
+ * <p>
+ * The result is kept in memory and, if a cache directory is given, on disk keyed by
+ * the build fingerprint, so subsequent sessions skip the codec enumeration.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+public final class EncoderProbe {
+
+    /** The log-cat tag. */
+    private static final String TAG = "MpegEncoder";
+
+    /** Verbose mode logging. */
+    private static final boolean VERBOSE =
+            BuildConfig.DEBUG || Log.isLoggable(TAG, Log.VERBOSE);
+    /** Warning mode logging. */
+    private static final boolean WARNINGS =
+            BuildConfig.DEBUG || Log.isLoggable(TAG, Log.WARN);
+
+    /** The cache file name. */
+    private static final String CACHE_FILE = "mpegencoder.encoders";
+
+    /** The cache format version. */
+    private static final int CACHE_VERSION = 2;
+
+    /** The cache charset. */
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    /** The prefixes of software codecs. */
+    private static final String[] SOFTWARE_PREFIXES =
+            {"OMX.google.", "c2.android.", "c2.google.", "OMX.ffmpeg."};
+
+    /** The performance points are API29. */
+    private static final int API_PERFORMANCE = 29;
+    /** The performance point class (API29). */
+    private static final String CLASS_PERFORMANCE_POINT =
+            "android.media.MediaCodecInfo$VideoCapabilities$PerformancePoint";
+    /** The supported performance points method (API29). */
+    private static final String METHOD_PERFORMANCE_POINTS = "getSupportedPerformancePoints";
+    /** The performance point covering method (API29). */
+    private static final String METHOD_COVERS = "covers";
+
+    /** The reference frame sizes of the performance ladder. */
+    private static final int[][] REFERENCE_SIZES =
+            {{720, 480}, {1280, 720}, {1920, 1080}, {3840, 2160}};
+    /** The reference frame rates of the performance ladder. */
+    private static final int[] REFERENCE_RATES = {24, 30, 60, 120, 240};
+    /** The macroblock size. */
+    private static final int MACROBLOCK = 16;
+
+    /** The lock of the in-memory cache. */
+    private static final Object LOCK = new Object();
+
+    /** The in-memory cache. */
+    @Nullable
+    private static List<EncoderInfo> sEncoders = null;
+
+    /** The in-memory cache is written to a cache directory. */
+    private static boolean sCached = false;
+
+    /** The codecs of the device by name (API21), enumerated once per process. */
+    @Nullable
+    private static Map<String, MediaCodecInfo> sCodecs = null;
+
+    /**
+     * The caller should be prevented from constructing objects of this class.
+     * Also, this prevents even the native class from calling this constructor.
+     **/
+    private EncoderProbe() {throw new AssertionError();}
+
+    /**
+     * @param cacheDir the cache directory or null for in-memory cache only
+     * @return all video encoders ranked from the best to the worst
+     */
+    @NonNull
+    public static List<EncoderInfo> getEncoders(@Nullable File cacheDir) {
+        synchronized (LOCK) {
+            if (sEncoders == null) {
+                final File file = cacheDir != null ? new File(cacheDir, CACHE_FILE) : null;
+                List<EncoderInfo> result = file != null ? read(file) : null;
+                if (result == null) {
+                    result = probe();
+                    if (file != null) {
+                        write(file, result);
+                    }
+                }
+                Collections.sort(result, EncoderInfo.RANKING);
+                sEncoders = Collections.unmodifiableList(result);
+                sCached = file != null;
+            } else if (!sCached && cacheDir != null) {
+                // Probed without a directory, write it when the first one is supplied
+                write(new File(cacheDir, CACHE_FILE), sEncoders);
+                sCached = true;
+            }
+            return sEncoders;
+        }
+    }
+
+    /**
+     * @param cacheDir the cache directory or null for in-memory cache only
+     * @param mime the mime type
+     * @param width the frame width
+     * @param height the frame height
+     *
+     * @return the best surface-input encoder supporting the frame size or null
+     */
+    @Nullable
+    public static EncoderInfo find(@Nullable File cacheDir, @NonNull String mime,
+            int width, int height) {
+        final List<EncoderInfo> result = findAll(cacheDir, mime, width, height);
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    /**
+     * @param cacheDir the cache directory or null for in-memory cache only
+     * @param mime the mime type
+     * @param width the frame width
+     * @param height the frame height
+     *
+     * @return the surface-input encoders supporting the frame size, from the best to the worst
+     */
+    @NonNull
+    public static List<EncoderInfo> findAll(@Nullable File cacheDir, @NonNull String mime,
+            int width, int height) {
+        final List<EncoderInfo> result = new ArrayList<>();
+        for (EncoderInfo info : getEncoders(cacheDir)) {
+            if (info.mime.equalsIgnoreCase(mime) && info.surface) {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                    attachVideoCapabilities(info);
+                }
+                if (info.isSizeSupported(width, height)) {
+                    result.add(info);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Attaches the video capabilities to the encoder read from the disk cache.
+     * The block count limits of the frame size aren't exposed by the public API,
+     * so they can't be cached and the codecs are enumerated once per process instead.
+     *
+     * @param info the encoder
+     */
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    private static void attachVideoCapabilities(@NonNull EncoderInfo info) {
+        synchronized (LOCK) {
+            if (info.hasVideoCapabilities()) {
+                return;
+            }
+            if (sCodecs == null) {
+                final MediaCodecInfo[] codecs = getCodecsLollipop();
+                sCodecs = new HashMap<>(codecs.length);
+                for (MediaCodecInfo codec : codecs) {
+                    sCodecs.put(codec.getName(), codec);
+                }
+            }
+            final MediaCodecInfo codec = sCodecs.get(info.name);
+            if (codec == null) {
+                return;
+            }
+            try {
+                info.setVideoCapabilities(
+                        codec.getCapabilitiesForType(info.mime).getVideoCapabilities());
+            } catch (RuntimeException exception) {
+                logw(exception);
+            }
+        }
+    }
+
+    /** @return enumerated video encoders */
+    @NonNull
+    private static List<EncoderInfo> probe() {
+        final long start = System.nanoTime();
+        final List<EncoderInfo> result = new ArrayList<>();
+        for (MediaCodecInfo codec : getCodecs()) {
+            if (!codec.isEncoder()) {
+                continue;
+            }
+            for (String type : codec.getSupportedTypes()) {
+                if (type.startsWith("video/")) {
+                    try {
+                        result.add(newInfo(codec, type));
+                    } catch (RuntimeException exception) {
+                        logw(exception);
+                    }
+                }
+            }
+        }
+        logv("Encoders probed in " + (System.nanoTime() - start) / 1000000 + "ms");
+        return result;
+    }
+
+    /** @return all codecs of the device */
+    @NonNull
+    @SuppressWarnings("deprecation")
+    private static List<MediaCodecInfo> getCodecs() {
+        final List<MediaCodecInfo> result = new ArrayList<>();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            Collections.addAll(result, getCodecsLollipop());
+        } else {
+            final int count = MediaCodecList.getCodecCount();
+            for (int i = 0; i < count; i++) {
+                result.add(MediaCodecList.getCodecInfoAt(i));
+            }
+        }
+        return result;
+    }
+
+    /** @return all codecs of the device */
+    @NonNull
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    private static MediaCodecInfo[] getCodecsLollipop() {
+        return new MediaCodecList(MediaCodecList.REGULAR_CODECS).getCodecInfos();
+    }
+
+    /**
+     * @param codec the codec
+     * @param mime the mime type
+     *
+     * @return the encoder capabilities
+     */
+    @NonNull
+    private static EncoderInfo newInfo(@NonNull MediaCodecInfo codec, @NonNull String mime) {
+        final MediaCodecInfo.CodecCapabilities caps = codec.getCapabilitiesForType(mime);
+
+        boolean surface = false;
+        for (int format : caps.colorFormats) {
+            surface |= format == MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface;
+        }
+
+        final int[] profiles = new int[caps.profileLevels.length];
+        for (int i = 0; i < profiles.length; i++) {
+            profiles[i] = caps.profileLevels[i].profile;
+        }
+
+        final int[] limits = new int[8];
+        int bitRateModes = 0, performance = EncoderInfo.UNKNOWN;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            getLimits(caps, limits);
+            bitRateModes = getBitRateModes(caps);
+        }
+        if (Build.VERSION.SDK_INT >= API_PERFORMANCE) {
+            performance = getPerformance(caps.getVideoCapabilities());
+        }
+
+        final EncoderInfo result = new EncoderInfo(codec.getName(), mime,
+                isHardware(codec.getName()), surface, limits[0], limits[1], limits[2],
+                limits[3], limits[4], limits[5], limits[6], limits[7], bitRateModes,
+                performance, profiles);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            result.setVideoCapabilities(caps.getVideoCapabilities());
+        }
+        return result;
+    }
+
+    /**
+     * @param caps the codec capabilities
+     * @param limits max instances, max width, max height, width alignment, height alignment,
+     *               max frame rate, min bitrate and max bitrate
+     */
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    private static void getLimits(@NonNull MediaCodecInfo.CodecCapabilities caps,
+            @NonNull int[] limits) {
+        final MediaCodecInfo.VideoCapabilities video = caps.getVideoCapabilities();
+        limits[0] = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ?
+                getMaxInstances(caps) : EncoderInfo.UNKNOWN;
+        limits[1] = video.getSupportedWidths().getUpper();
+        limits[2] = video.getSupportedHeights().getUpper();
+        limits[3] = video.getWidthAlignment();
+        limits[4] = video.getHeightAlignment();
+        limits[5] = video.getSupportedFrameRates().getUpper();
+        limits[6] = video.getBitrateRange().getLower();
+        limits[7] = video.getBitrateRange().getUpper();
+    }
+
+    /**
+     * Measures the performance points by a ladder of reference points.
+     * {@code VideoCapabilities.getSupportedPerformancePoints()} is API29,
+     * so it's called by reflection.
+     *
+     * @param video the video capabilities
+     * @return the max macroblocks per second of the covered reference points or 0 if unknown
+     */
+    @RequiresApi(API_PERFORMANCE)
+    private static int getPerformance(@NonNull MediaCodecInfo.VideoCapabilities video) {
+        try {
+            final List<?> points = (List<?>) video.getClass()
+                    .getMethod(METHOD_PERFORMANCE_POINTS).invoke(video);
+            if (points == null || points.isEmpty()) {
+                return EncoderInfo.UNKNOWN;
+            }
+            final Class<?> type = Class.forName(CLASS_PERFORMANCE_POINT);
+            final Constructor<?> constructor = type.getConstructor(int.class, int.class, int.class);
+            final Method covers = type.getMethod(METHOD_COVERS, type);
+            int result = EncoderInfo.UNKNOWN;
+            for (int[] size : REFERENCE_SIZES) {
+                for (int rate : REFERENCE_RATES) {
+                    final int blocks = ((size[0] + MACROBLOCK - 1) / MACROBLOCK) *
+                            ((size[1] + MACROBLOCK - 1) / MACROBLOCK) * rate;
+                    if (blocks <= result) {
+                        continue;
+                    }
+                    final Object reference = constructor.newInstance(size[0], size[1], rate);
+                    for (Object point : points) {
+                        if ((Boolean) covers.invoke(point, reference)) {
+                            result = blocks;
+                            break;
+                        }
+                    }
+                }
+            }
+            return result;
+        } catch (ReflectiveOperationException exception) {
+            logw("Performance points are unavailable: " + exception);
+            return EncoderInfo.UNKNOWN;
+        }
+    }
+
+    /**
+     * @param caps the codec capabilities
+     * @return the max number of concurrent instances
+     */
+    @RequiresApi(Build.VERSION_CODES.M)
+    private static int getMaxInstances(@NonNull MediaCodecInfo.CodecCapabilities caps) {
+        return caps.getMaxSupportedInstances();
+    }
+
+    /**
+     * @param caps the codec capabilities
+     * @return the supported bitrate modes (bit-mask of 1 << mode)
+     */
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    private static int getBitRateModes(@NonNull MediaCodecInfo.CodecCapabilities caps) {
+        final MediaCodecInfo.EncoderCapabilities encoder = caps.getEncoderCapabilities();
+        int result = 0;
+        for (int mode = MpegEncoder.BitRateMode.CQ; mode <= MpegEncoder.BitRateMode.CBR; mode++) {
+            if (encoder.isBitrateModeSupported(mode)) {
+                result |= 1 << mode;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param name the codec name
+     * @return true for hardware-accelerated codec
+     */
+    private static boolean isHardware(@NonNull String name) {
+        for (String prefix : SOFTWARE_PREFIXES) {
+            if (name.startsWith(prefix)) {
+                return false;
+            }
+        }
+        return !name.contains(".sw.");
+    }
+
+    /** @return the cache key of the device */
+    @NonNull
+    private static String getCacheKey() {
+        return CACHE_VERSION + ":" + Build.FINGERPRINT;
+    }
+
+    /**
+     * @param file the cache file
+     * @return cached encoders or null if the cache is missing or stale
+     */
+    @Nullable
+    private static List<EncoderInfo> read(@NonNull File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (final BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), CHARSET))) {
+            if (!getCacheKey().equals(reader.readLine())) {
+                return null;
+            }
+            final List<EncoderInfo> result = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final EncoderInfo info = EncoderInfo.parse(line);
+                if (info == null) {
+                    return null;
+                }
+                result.add(info);
+            }
+            return result;
+        } catch (IOException exception) {
+            logw(exception);
+            return null;
+        }
+    }
+
+    /**
+     * @param file the cache file
+     * @param encoders the encoders to cache
+     */
+    private static void write(@NonNull File file, @NonNull List<EncoderInfo> encoders) {
+        final File temp = new File(file.getPath() + ".tmp");
+        try (final Writer writer = new OutputStreamWriter(new FileOutputStream(temp), CHARSET)) {
+            writer.write(getCacheKey());
+            for (EncoderInfo info : encoders) {
+                writer.write('\n');
+                writer.write(info.serialize());
+            }
+        } catch (IOException exception) {
+            logw(exception);
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            logw("Unable to write " + file);
+        }
+    }
+
+    /** Log verbose. */
+    private static void logv(@NonNull String msg) {
+        log(Log.VERBOSE, VERBOSE, msg);
+    }
+
+    /** Log warning. */
+    private static void logw(@NonNull String msg) {
+        log(Log.WARN, WARNINGS, msg);
+    }
+
+    /** Log warning. */
+    private static void logw(@NonNull Throwable throwable) {
+        log(Log.WARN, WARNINGS, Log.getStackTraceString(throwable));
+    }
+
+    /**
+     * Common log-helper.
+     *
+     * @param level the log-level
+     * @param enable log-enabled flag
+     * @param msg the message
+     */
+    private static void log(int level, boolean enable, @NonNull String msg) {
+        if (enable) {
+            Log.println(level, TAG, msg);
+        }
+    }
+}
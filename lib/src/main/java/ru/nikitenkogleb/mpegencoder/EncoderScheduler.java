@@ -0,0 +1,542 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicClassMembers;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * Runs encode jobs no more at once than the codec allows.
+ * <p>
+ * Jobs are queued by priority and admitted while the instances of the same codec,
+ * held by running jobs and idle in the pool, are below its max instances,
+ * so the hardware codec is never exhausted. A job is also admitted to take
+ * an idle encoder nobody has claimed yet.
+ * Each job runs on its own thread with its own {@link MpegEncoder}.
+ * A job is admitted by the best encoder found for it and counted by the encoder
+ * it has actually started, as the encoder may fall back to the next ranked one.
+ * Stopped encoders are kept warm and reused by the following jobs of the same codec,
+ * the idle ones are released once the queue is empty.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+public final class EncoderScheduler implements Closeable {
+
+    /** The log-cat tag. */
+    private static final String TAG = "MpegEncoder";
+
+    /** Verbose mode logging. */
+    private static final boolean VERBOSE =
+            BuildConfig.DEBUG || Log.isLoggable(TAG, Log.VERBOSE);
+
+    /** The codec name of the fallback encoder. */
+    private static final String DEFAULT_CODEC = "";
+
+    /** The queue order: the highest priority first, then the earliest. */
+    private static final Comparator<Task> ORDER = new Comparator<Task>() {
+        @Override
+        public final int compare(@NonNull Task first, @NonNull Task second) {
+            if (first.mPriority != second.mPriority) {
+                return first.mPriority > second.mPriority ? -1 : 1;
+            }
+            return first.mSequence < second.mSequence ? -1 :
+                    first.mSequence > second.mSequence ? 1 : 0;
+        }
+    };
+
+    /** The max number of running jobs. */
+    private final int mMaxJobs;
+
+    /** The queued jobs. */
+    @NonNull
+    private final TreeSet<Task> mQueue = new TreeSet<>(ORDER);
+
+    /** The running jobs by codec names. */
+    @NonNull
+    private final HashMap<String, Integer> mRunning = new HashMap<>();
+
+    /** The idle encoders claimed by admitted jobs by codec names. */
+    @NonNull
+    private final HashMap<String, Integer> mClaimed = new HashMap<>();
+
+    /** The threads of jobs. */
+    @NonNull
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+
+    /** The warm encoders. */
+    @NonNull
+    private final CodecPool mPool = new CodecPool();
+
+    /** The creation time (in milliseconds). */
+    private final long mStartTime = SystemClock.elapsedRealtime();
+
+    /** The number of running jobs. */
+    private int mRunningJobs = 0;
+    /** The sequence of submitted jobs. */
+    private long mSequence = 0;
+
+    /** The number of completed jobs. */
+    private long mCompleted = 0;
+    /** The number of failed jobs. */
+    private long mFailed = 0;
+    /** The number of cancelled jobs. */
+    private long mCancelled = 0;
+    /** The total wait time of admitted jobs (in milliseconds). */
+    private long mWaitTime = 0;
+    /** The max wait time of admitted jobs (in milliseconds). */
+    private long mMaxWaitTime = 0;
+    /** The number of admitted jobs. */
+    private long mAdmitted = 0;
+
+    /** The scheduler was closed. */
+    private boolean mClosed = false;
+
+    /**
+     * Constructs a new {@link EncoderScheduler}.
+     *
+     * @param maxJobs the max number of running jobs of all codecs
+     */
+    public EncoderScheduler(int maxJobs) {
+        if (maxJobs <= 0) {
+            throw new IllegalArgumentException("Invalid max jobs: " + maxJobs);
+        }
+        mMaxJobs = maxJobs;
+    }
+
+    /**
+     * Queues the encode job.
+     * <p>
+     * Cancelling the future of a queued job removes it from the queue,
+     * a running job is interrupted and should check {@link Thread#isInterrupted()}.
+     *
+     * @param builder the encoder parameters
+     * @param path the output file
+     * @param width the output width
+     * @param height the output height
+     * @param priority the job priority, the higher the earlier
+     * @param job the job
+     *
+     * @return the future of the job
+     */
+    @NonNull
+    public final Future<Void> submit(@NonNull MpegEncoder.Builder builder,
+            @NonNull String path, int width, int height, int priority, @NonNull Job job) {
+        final EncoderInfo info = builder.findEncoder(width, height);
+        final Task task = new Task(new Encode(builder, path, width, height, job),
+                info != null ? info.getName() : DEFAULT_CODEC,
+                info != null && info.getMaxInstances() != EncoderInfo.UNKNOWN ?
+                        info.getMaxInstances() : mMaxJobs, priority);
+        synchronized (mQueue) {
+            if (mClosed) {
+                throw new IllegalStateException("Already closed");
+            }
+            task.mSequence = mSequence++;
+            mQueue.add(task);
+            dispatch();
+        }
+        return task;
+    }
+
+    /** Starts the queued jobs as far as admitted. */
+    private void dispatch() {
+        final Iterator<Task> iterator = mQueue.iterator();
+        while (mRunningJobs < mMaxJobs && iterator.hasNext()) {
+            final Task task = iterator.next();
+            final int running = get(mRunning, task.mCodec);
+            final int claimed = get(mClaimed, task.mCodec);
+            // The idle encoders claimed by admitted jobs are counted by the running jobs
+            final int idle = Math.max(mPool.getIdle(task.mCodec) - claimed, 0);
+            final int instances = running + idle;
+            // A job taking an idle encoder doesn't allocate an instance
+            if (idle == 0 && instances >= task.mLimit) {
+                continue;
+            }
+            iterator.remove();
+            mRunning.put(task.mCodec, running + 1);
+            mRunningJobs++;
+            if (idle != 0) {
+                mClaimed.put(task.mCodec, claimed + 1);
+                task.mWarm = true;
+            }
+
+            final long wait = SystemClock.elapsedRealtime() - task.mQueueTime;
+            mWaitTime += wait;
+            mMaxWaitTime = Math.max(mMaxWaitTime, wait);
+            mAdmitted++;
+            task.mStarted = true;
+            mExecutor.execute(task);
+        }
+    }
+
+    /**
+     * @param counts the counts by codec names
+     * @param codec the codec name
+     *
+     * @return the count of the codec
+     */
+    private static int get(@NonNull HashMap<String, Integer> counts, @NonNull String codec) {
+        final Integer result = counts.get(codec);
+        return result != null ? result : 0;
+    }
+
+    /**
+     * Drops the claim of the job on the idle encoder, once it has created its encoder,
+     * and moves the job to the codec of the started encoder.
+     *
+     * @param task the running job
+     * @param codec the codec name of the started encoder or null if it has failed
+     */
+    private void onAcquired(@NonNull Task task, @Nullable String codec) {
+        final boolean trim;
+        synchronized (mQueue) {
+            unclaim(task);
+            if (codec != null && !codec.equals(task.mCodec)) {
+                mRunning.put(task.mCodec, mRunning.get(task.mCodec) - 1);
+                mRunning.put(codec, get(mRunning, codec) + 1);
+                task.mCodec = codec;
+                if (!mClosed) {
+                    dispatch();
+                }
+            }
+            trim = isIdle();
+        }
+        if (trim) {
+            mPool.trim();
+        }
+    }
+
+    /**
+     * @param task the admitted job
+     */
+    private void unclaim(@NonNull Task task) {
+        if (task.mWarm) {
+            task.mWarm = false;
+            mClaimed.put(task.mCodec, mClaimed.get(task.mCodec) - 1);
+        }
+    }
+
+    /** @return true if no job is queued or waiting for an idle encoder */
+    private boolean isIdle() {
+        if (!mQueue.isEmpty()) {
+            return false;
+        }
+        for (Integer claimed : mClaimed.values()) {
+            if (claimed != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Completes the running job and starts the next ones.
+     * The idle encoders are released when there is nothing more to start.
+     *
+     * @param task the finished job
+     */
+    private void onFinished(@NonNull Task task) {
+        final boolean trim;
+        synchronized (mQueue) {
+            unclaim(task);
+            mRunning.put(task.mCodec, mRunning.get(task.mCodec) - 1);
+            mRunningJobs--;
+            if (task.isCancelled()) {
+                mCancelled++;
+            } else if (task.mFailed) {
+                mFailed++;
+            } else {
+                mCompleted++;
+            }
+            if (!mClosed) {
+                dispatch();
+            }
+            trim = isIdle();
+        }
+        if (trim) {
+            mPool.trim();
+        }
+    }
+
+    /**
+     * Removes the cancelled job from the queue.
+     *
+     * @param task the cancelled job
+     */
+    private void onCancelled(@NonNull Task task) {
+        synchronized (mQueue) {
+            if (!task.mStarted && mQueue.remove(task)) {
+                mCancelled++;
+            }
+        }
+    }
+
+    /**
+     * Cancels the queued jobs and interrupts the running ones,
+     * then releases the warm encoders. Running jobs release their encoders on finish.
+     */
+    @Override
+    public final void close() {
+        final ArrayList<Task> queued;
+        synchronized (mQueue) {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            queued = new ArrayList<>(mQueue);
+        }
+        for (Task task : queued) {
+            task.cancel(false);
+        }
+        mExecutor.shutdownNow();
+        mPool.close();
+    }
+
+    /** @return the number of queued jobs */
+    public final int getQueuedJobs() {
+        synchronized (mQueue) {
+            return mQueue.size();
+        }
+    }
+
+    /** @return the number of running jobs */
+    public final int getRunningJobs() {
+        synchronized (mQueue) {
+            return mRunningJobs;
+        }
+    }
+
+    /** @return the number of completed jobs */
+    public final long getCompletedJobs() {
+        synchronized (mQueue) {
+            return mCompleted;
+        }
+    }
+
+    /** @return the number of failed jobs */
+    public final long getFailedJobs() {
+        synchronized (mQueue) {
+            return mFailed;
+        }
+    }
+
+    /** @return the number of cancelled jobs */
+    public final long getCancelledJobs() {
+        synchronized (mQueue) {
+            return mCancelled;
+        }
+    }
+
+    /** @return the average time from submit to start of jobs (in milliseconds) */
+    public final long getAverageWaitTime() {
+        synchronized (mQueue) {
+            return mAdmitted != 0 ? mWaitTime / mAdmitted : 0;
+        }
+    }
+
+    /** @return the max time from submit to start of jobs (in milliseconds) */
+    public final long getMaxWaitTime() {
+        synchronized (mQueue) {
+            return mMaxWaitTime;
+        }
+    }
+
+    /** @return the completed jobs per minute since the creation */
+    public final float getThroughput() {
+        final long time = Math.max(SystemClock.elapsedRealtime() - mStartTime, 1);
+        return getCompletedJobs() * 60000f / time;
+    }
+
+    /** @return the number of jobs started on a warm encoder */
+    public final long getWarmStarts() {
+        return mPool.getHits();
+    }
+
+    /** Log verbose. */
+    private static void logv(@NonNull String msg) {
+        log(Log.VERBOSE, VERBOSE, msg);
+    }
+
+    /**
+     * Common log-helper.
+     *
+     * @param level the log-level
+     * @param enable log-enabled flag
+     * @param msg the message
+     */
+    private static void log(int level, boolean enable, @NonNull String msg) {
+        if (enable) {
+            Log.println(level, TAG, msg);
+        }
+    }
+
+    /**
+     * The encoding of one job.
+     *
+     * @author Nikitenko Gleb
+     * @since 1.0, 19/10/2026
+     */
+    private final class Encode implements Callable<Void> {
+
+        /** The encoder parameters. */
+        @NonNull
+        private final MpegEncoder.Builder mBuilder;
+        /** The output file. */
+        @NonNull
+        private final String mPath;
+        /** The output width. */
+        private final int mWidth;
+        /** The output height. */
+        private final int mHeight;
+        /** The job. */
+        @NonNull
+        private final Job mJob;
+
+        /** The queued job of this encoding. */
+        Task mTask;
+
+        /**
+         * Constructs a new {@link Encode}.
+         *
+         * @param builder the encoder parameters
+         * @param path the output file
+         * @param width the output width
+         * @param height the output height
+         * @param job the job
+         */
+        Encode(@NonNull MpegEncoder.Builder builder, @NonNull String path,
+                int width, int height, @NonNull Job job) {
+            mBuilder = builder;
+            mPath = path;
+            mWidth = width;
+            mHeight = height;
+            mJob = job;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public final Void call() throws Exception {
+            MpegEncoder encoder = null;
+            try {
+                encoder = mBuilder.to(mPath, mWidth, mHeight, mPool);
+            } finally {
+                onAcquired(mTask, encoder != null ? encoder.getCodecName() : null);
+            }
+            try {
+                mJob.onEncode(encoder);
+            } finally {
+                encoder.close();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The queued job.
+     *
+     * @author Nikitenko Gleb
+     * @since 1.0, 19/10/2026
+     */
+    private final class Task extends FutureTask<Void> {
+
+        /** The codec name, of the started encoder once it's created. */
+        @NonNull
+        String mCodec;
+        /** The max running jobs of the codec. */
+        final int mLimit;
+        /** The priority. */
+        final int mPriority;
+        /** The submit time (in milliseconds). */
+        final long mQueueTime = SystemClock.elapsedRealtime();
+
+        /** The submit order. */
+        long mSequence;
+        /** The job was started. */
+        boolean mStarted = false;
+        /** The job has claimed an idle encoder it hasn't acquired yet. */
+        boolean mWarm = false;
+        /** The job has failed. */
+        volatile boolean mFailed = false;
+
+        /**
+         * Constructs a new {@link Task}.
+         *
+         * @param encode the encoding
+         * @param codec the codec name
+         * @param limit the max running jobs of the codec
+         * @param priority the priority
+         */
+        Task(@NonNull Encode encode, @NonNull String codec, int limit, int priority) {
+            super(encode);
+            encode.mTask = this;
+            mCodec = codec;
+            mLimit = limit;
+            mPriority = priority;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public final void run() {
+            try {
+                super.run();
+            } finally {
+                onFinished(this);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected final void setException(Throwable throwable) {
+            mFailed = true;
+            logv("Job failed: " + throwable);
+            super.setException(throwable);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected final void done() {
+            if (isCancelled()) {
+                onCancelled(this);
+            }
+        }
+    }
+
+    /**
+     * The encode job.
+     *
+     * @author Nikitenko Gleb
+     * @since 1.0, 19/10/2026
+     */
+    @Keep@KeepPublicClassMembers
+    @SuppressWarnings("WeakerAccess, unused")
+    public interface Job {
+
+        /**
+         * Encodes the frames, called on the thread of the job.
+         * The encoder is closed by the scheduler.
+         *
+         * @param encoder the encoder
+         * @throws Exception by some fails
+         */
+        void onEncode(@NonNull MpegEncoder encoder) throws Exception;
+    }
+}
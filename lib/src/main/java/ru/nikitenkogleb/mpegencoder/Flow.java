@@ -0,0 +1,76 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import android.support.annotation.NonNull;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicClassMembers;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * The interfaces of the reactive-streams specification, with no dependency on it.
+ * <p>
+ * They match {@code org.reactivestreams} and {@code java.util.concurrent.Flow},
+ * so they are easily adapted to any reactive library.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+public final class Flow {
+
+    /**
+     * The caller should be prevented from constructing objects of this class.
+     * Also, this prevents even the native class from calling this constructor.
+     **/
+    private Flow() {throw new AssertionError();}
+
+    /**
+     * The provider of a potentially unbounded number of elements,
+     * published according to the demand of subscribers.
+     *
+     * @param <T> the type of elements
+     */
+    @Keep@KeepPublicClassMembers
+    @SuppressWarnings("WeakerAccess, unused")
+    public interface Publisher<T> {
+
+        /** @param subscriber the subscriber requesting elements */
+        void subscribe(@NonNull Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * The receiver of elements of a {@link Publisher}.
+     *
+     * @param <T> the type of elements
+     */
+    @Keep@KeepPublicClassMembers
+    @SuppressWarnings("WeakerAccess, unused")
+    public interface Subscriber<T> {
+
+        /** @param subscription the subscription to request elements */
+        void onSubscribe(@NonNull Subscription subscription);
+
+        /** @param element the next element */
+        void onNext(@NonNull T element);
+
+        /** @param throwable the failure of the stream */
+        void onError(@NonNull Throwable throwable);
+
+        /** Called after the last element. */
+        void onComplete();
+    }
+
+    /** The demand of a {@link Subscriber}. */
+    @Keep@KeepPublicClassMembers
+    @SuppressWarnings("WeakerAccess, unused")
+    public interface Subscription {
+
+        /** @param count the number of elements to request in addition */
+        void request(long count);
+
+        /** Stops the elements. */
+        void cancel();
+    }
+}
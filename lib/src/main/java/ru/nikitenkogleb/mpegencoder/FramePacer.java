@@ -0,0 +1,245 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import android.support.annotation.Nullable;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * Computes presentation times of the incoming frames.
+ * <p>
+ * In the synthetic mode (no clock) every frame gets the next slot of the frame-rate grid.
+ * In the real-time mode the timestamps are taken from the {@link MpegEncoder.Clock},
+ * frames arriving faster than the frame-rate are decimated on the frame-rate grid and
+ * frames arriving later than the max latency are dropped.
+ * In the time-lapse mode frames are accepted once per slot of the capture interval grid
+ * and get the next slot of the frame-rate grid.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+final class FramePacer {
+
+    /** The frame should be skipped. */
+    static final long SKIP = -1;
+
+    /** Nanoseconds in one second. */
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    /** The jitter tolerance (part of frame interval). */
+    private static final int JITTER_DIVIDER = 8;
+
+    /** The time source, null for synthetic timestamps. */
+    @Nullable
+    private final MpegEncoder.Clock mClock;
+
+    /** The frame rate. */
+    private final int mFrameRate;
+
+    /** The minimal interval between accepted frames (in nanoseconds). */
+    private final long mInterval;
+
+    /** The max allowed latency of a frame (in nanoseconds). */
+    private final long mMaxLatency;
+
+    /** The capture interval of the time-lapse mode (in nanoseconds) or 0. */
+    private final long mCaptureInterval;
+
+    /** The capture time of the last accepted frame of the time-lapse mode. */
+    private long mLastCapture = SKIP;
+
+    /** The deadline of the next capture slot of the time-lapse mode. */
+    private long mNextCapture = 0;
+
+    /** The clock capture time of the last frame or {@link #SKIP}. */
+    private long mCaptureTime = SKIP;
+
+    /** The capture time of the first accepted frame. */
+    private long mBaseTime = SKIP;
+
+    /** The presentation time of the last accepted frame. */
+    private long mLastTime = SKIP;
+
+    /** The deadline of the next slot of the frame-rate grid. */
+    private long mNextSlot = 0;
+
+    /** Accepted frames. */
+    private long mFrames = 0;
+    /** Frames decimated by the frame-rate. */
+    private long mDecimated = 0;
+    /** Frames dropped by the latency. */
+    private long mDropped = 0;
+
+    /**
+     * Constructs a new {@link FramePacer}.
+     *
+     * @param clock the time source, null for synthetic timestamps
+     * @param fps the frame rate
+     * @param maxLatency the max allowed latency of a frame (in nanoseconds)
+     */
+    FramePacer(@Nullable MpegEncoder.Clock clock, int fps, long maxLatency) {
+        this(clock, fps, maxLatency, 0);
+    }
+
+    /**
+     * Constructs a new {@link FramePacer}.
+     *
+     * @param clock the time source, null for synthetic timestamps
+     * @param fps the frame rate
+     * @param maxLatency the max allowed latency of a frame (in nanoseconds)
+     * @param captureInterval the capture interval of the time-lapse mode (in nanoseconds) or 0
+     */
+    FramePacer(@Nullable MpegEncoder.Clock clock, int fps, long maxLatency,
+            long captureInterval) {
+        if (fps <= 0) {
+            throw new IllegalArgumentException("Invalid frame rate: " + fps);
+        }
+        if (captureInterval < 0) {
+            throw new IllegalArgumentException("Invalid capture interval: " + captureInterval);
+        }
+        mClock = clock;
+        mFrameRate = fps;
+        mInterval = NANOS_PER_SECOND / fps;
+        mMaxLatency = maxLatency;
+        mCaptureInterval = captureInterval;
+    }
+
+    /** @return true if timestamps are taken from the clock */
+    final boolean isRealTime() {
+        return mClock != null;
+    }
+
+    /** @return true if frames are accepted once per capture interval */
+    final boolean isTimeLapse() {
+        return mCaptureInterval != 0;
+    }
+
+    /**
+     * Accepts a frame captured right now.
+     * The time-lapse mode with no clock takes the capture time from {@link System#nanoTime()}.
+     *
+     * @return presentation time in nanoseconds or {@link #SKIP}
+     */
+    final long next() {
+        if (mClock == null && mCaptureInterval != 0) {
+            return next(System.nanoTime());
+        } else if (mClock == null) {
+            mCaptureTime = SKIP;
+            final long result = mFrames * NANOS_PER_SECOND / mFrameRate;
+            mLastTime = result; mFrames++;
+            return result;
+        } else {
+            return next(mClock.nanoTime());
+        }
+    }
+
+    /**
+     * Accepts a frame with the given capture time.
+     *
+     * @param captureTime the capture time (in nanoseconds, the time-base of the clock)
+     *
+     * @return presentation time in nanoseconds or {@link #SKIP}
+     */
+    final long next(long captureTime) {
+        mCaptureTime = mClock != null ? captureTime : SKIP;
+        if (mClock != null && mClock.nanoTime() - captureTime > mMaxLatency) {
+            mDropped++;
+            return SKIP;
+        }
+
+        if (mCaptureInterval != 0) {
+            return nextTimeLapse(captureTime);
+        }
+
+        if (mBaseTime == SKIP) {
+            mBaseTime = captureTime;
+        }
+
+        final long result = captureTime - mBaseTime;
+        if (mLastTime != SKIP) {
+            if (result <= mLastTime) {
+                mDropped++;
+                return SKIP;
+            }
+            if (mClock != null && result < mNextSlot - mInterval / JITTER_DIVIDER) {
+                mDecimated++;
+                return SKIP;
+            }
+        }
+
+        mNextSlot = nextSlot(mNextSlot, result, mInterval);
+        mLastTime = result; mFrames++;
+        return result;
+    }
+
+    /**
+     * Accepts a frame of the time-lapse mode.
+     *
+     * @param captureTime the capture time (in nanoseconds)
+     * @return presentation time in nanoseconds or {@link #SKIP}
+     */
+    private long nextTimeLapse(long captureTime) {
+        if (mLastCapture != SKIP) {
+            final long elapsed = captureTime - mLastCapture;
+            if (elapsed <= 0) {
+                mDropped++;
+                return SKIP;
+            }
+            if (captureTime < mNextCapture - mCaptureInterval / JITTER_DIVIDER) {
+                mDecimated++;
+                return SKIP;
+            }
+            mNextCapture = nextSlot(mNextCapture, captureTime, mCaptureInterval);
+        } else {
+            mNextCapture = captureTime + mCaptureInterval;
+        }
+        mLastCapture = captureTime;
+        final long result = mFrames * NANOS_PER_SECOND / mFrameRate;
+        mLastTime = result; mFrames++;
+        return result;
+    }
+
+    /**
+     * Advances the slot deadline of the grid past the accepted frame.
+     * The deadline moves by whole intervals, so the accepted frames keep the grid rate
+     * regardless of the input cadence.
+     *
+     * @param deadline the deadline of the current slot
+     * @param time the time of the accepted frame
+     * @param interval the interval of the grid
+     *
+     * @return the deadline of the next slot
+     */
+    private static long nextSlot(long deadline, long time, long interval) {
+        return time < deadline ? deadline + interval :
+                deadline + ((time - deadline) / interval + 1) * interval;
+    }
+
+    /** @return the capture time of the last frame in the time-base of the clock or {@link #SKIP} */
+    final long getCaptureTime() {
+        return mCaptureTime;
+    }
+
+    /** @return the capture time of the first accepted frame or {@link #SKIP} */
+    final long getBaseTime() {
+        return mBaseTime;
+    }
+
+    /** @return the number of accepted frames */
+    final long getFrames() {
+        return mFrames;
+    }
+
+    /** @return the number of frames decimated by the frame-rate */
+    final long getDecimated() {
+        return mDecimated;
+    }
+
+    /** @return the number of frames dropped by the latency */
+    final long getDropped() {
+        return mDropped;
+    }
+}
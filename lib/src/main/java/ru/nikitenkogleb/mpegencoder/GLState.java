@@ -0,0 +1,482 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.opengl.GLES11Ext;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.opengl.GLUtils;
+import android.support.annotation.NonNull;
+
+import java.io.Closeable;
+import java.nio.Buffer;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * The GL state tracker of a single context.
+ * <p>
+ * Keeps the quad in a vertex buffer object and skips redundant program, texture,
+ * blending and uniform calls. Every GL call of a frame, including the error checks,
+ * is issued through a counting wrapper, a skipped operation counts the calls
+ * it has issued when it was run last time.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+final class GLState implements Closeable {
+
+    /** The unknown state. */
+    private static final int UNKNOWN = -1;
+
+    /** The max number of programs with cached uniforms. */
+    private static final int MAX_PROGRAMS = 4;
+
+    /** The size of cached uniforms (vertex and texture matrices). */
+    private static final int UNIFORMS_SIZE = Transform.MATRIX_SIZE * 2;
+
+    /** The tracked operations. */
+    private static final int
+            OP_SHADER = 0, OP_TEXTURE = 1, OP_EXTERNAL_TEXTURE = 2,
+            OP_BLENDING_OFF = 3, OP_BLENDING_ON = 4, OP_TRANSFORM = 5, OPS = 6;
+
+    /** The vertex buffer of the quad. */
+    private final int mVertices;
+
+    /** The current program. */
+    private int mProgram = UNKNOWN;
+    /** The bound 2D texture. */
+    private int mTexture = UNKNOWN;
+    /** The bound external texture. */
+    private int mExternalTexture = UNKNOWN;
+    /** The blending state. */
+    private int mBlending = UNKNOWN;
+
+    /** The programs with cached uniforms. */
+    @NonNull
+    private final int[] mPrograms = new int[MAX_PROGRAMS];
+    /** The cached uniforms of programs. */
+    @NonNull
+    private final float[][] mUniforms = new float[MAX_PROGRAMS][UNIFORMS_SIZE];
+    /** The number of programs with cached uniforms. */
+    private int mProgramsCount = 0;
+
+    /** The GL calls issued by the last run of each operation. */
+    @NonNull
+    private final int[] mOpCalls = new int[OPS];
+
+    /** The GL calls of the current frame. */
+    private int mCalls = 0;
+    /** The skipped GL calls of the current frame. */
+    private int mSkipped = 0;
+    /** The GL calls of the last frame. */
+    private int mLastCalls = 0;
+    /** The skipped GL calls of the last frame. */
+    private int mLastSkipped = 0;
+
+    /** Constructs a new {@link GLState} for the current context. */
+    GLState() {
+        mVertices = GLTools.newVertexBuffer();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public final void close() {
+        GLTools.closeVertexBuffer(mVertices);
+    }
+
+    /**
+     * Makes the shader current and binds the vertex buffer to its attributes.
+     *
+     * @param attrs the shader attributes
+     */
+    final void useShader(@NonNull int[] attrs) {
+        if (mProgram == attrs[0]) {
+            skip(OP_SHADER);
+            return;
+        }
+        final int calls = mCalls;
+        glUseProgram(attrs[0]);
+        glBindBuffer(GLES20.GL_ARRAY_BUFFER, mVertices);
+        checkError();
+
+        glVertexAttribPointer(attrs[3], 3, GLTools.TRIANGLE_VERTICES_DATA_POS_OFFSET);
+        glVertexAttribPointer(attrs[4], 2, GLTools.TRIANGLE_VERTICES_DATA_UV_OFFSET);
+        checkError();
+
+        glEnableVertexAttribArray(attrs[3]);
+        glEnableVertexAttribArray(attrs[4]);
+        checkError();
+        mProgram = attrs[0];
+        mOpCalls[OP_SHADER] = mCalls - calls;
+    }
+
+    /**
+     * Binds the texture to the active texture unit.
+     *
+     * @param texture the texture
+     * @param external true for an external texture
+     */
+    final void bindTexture(int texture, boolean external) {
+        final int op = external ? OP_EXTERNAL_TEXTURE : OP_TEXTURE;
+        if ((external ? mExternalTexture : mTexture) == texture) {
+            skip(op);
+            return;
+        }
+        final int calls = mCalls;
+        if (external) {
+            glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, texture);
+            mExternalTexture = texture;
+        } else {
+            glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+            mTexture = texture;
+        }
+        checkError();
+        mOpCalls[op] = mCalls - calls;
+    }
+
+    /**
+     * Enables or disables the blending of premultiplied colors.
+     *
+     * @param enable true to enable
+     */
+    final void setBlending(boolean enable) {
+        final int value = enable ? 1 : 0;
+        final int op = enable ? OP_BLENDING_ON : OP_BLENDING_OFF;
+        if (mBlending == value) {
+            skip(op);
+            return;
+        }
+        final int calls = mCalls;
+        if (enable) {
+            glEnable(GLES20.GL_BLEND);
+            glBlendFunc(GLES20.GL_ONE, GLES20.GL_ONE_MINUS_SRC_ALPHA);
+        } else {
+            glDisable(GLES20.GL_BLEND);
+        }
+        checkError();
+        mBlending = value;
+        mOpCalls[op] = mCalls - calls;
+    }
+
+    /**
+     * Sets the transform matrices of the shader, makes it current.
+     *
+     * @param attrs the shader attributes
+     * @param mvp the vertex matrix
+     * @param st the texture matrix
+     */
+    final void setTransform(@NonNull int[] attrs, @NonNull float[] mvp, @NonNull float[] st) {
+        useShader(attrs);
+        final float[] uniforms = getUniforms(attrs[0]);
+        if (uniforms != null && equals(uniforms, 0, mvp) &&
+                equals(uniforms, Transform.MATRIX_SIZE, st)) {
+            skip(OP_TRANSFORM);
+            return;
+        }
+        final int calls = mCalls;
+        glUniformMatrix4fv(attrs[5], mvp);
+        glUniformMatrix4fv(attrs[6], st);
+        checkError();
+        if (uniforms != null) {
+            System.arraycopy(mvp, 0, uniforms, 0, Transform.MATRIX_SIZE);
+            System.arraycopy(st, 0, uniforms, Transform.MATRIX_SIZE, Transform.MATRIX_SIZE);
+        }
+        mOpCalls[OP_TRANSFORM] = mCalls - calls;
+    }
+
+    /**
+     * @param program the program
+     * @return the cached uniforms of the program or null if the cache is full
+     */
+    private float[] getUniforms(int program) {
+        for (int i = 0; i < mProgramsCount; i++) {
+            if (mPrograms[i] == program) {
+                return mUniforms[i];
+            }
+        }
+        if (mProgramsCount == MAX_PROGRAMS) {
+            return null;
+        }
+        mPrograms[mProgramsCount] = program;
+        final float[] result = mUniforms[mProgramsCount++];
+        result[0] = Float.NaN;
+        return result;
+    }
+
+    /**
+     * @param cache the cached values
+     * @param offset the offset in the cache
+     * @param matrix the matrix
+     *
+     * @return true if the matrix is equal to the cached one
+     */
+    private static boolean equals(@NonNull float[] cache, int offset, @NonNull float[] matrix) {
+        for (int i = 0; i < Transform.MATRIX_SIZE; i++) {
+            if (cache[offset + i] != matrix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Clears the current surface to black. */
+    final void clear() {
+        glClearColor(0f, 0f, 0f, 1f);
+        glClear(GLES20.GL_COLOR_BUFFER_BIT);
+        checkError();
+    }
+
+    /**
+     * Allocates the bound texture by the frame and draws the textured quad.
+     *
+     * @param pixels the frame pixels (RGB 565)
+     * @param width the frame width
+     * @param height the frame height
+     */
+    final void drawFrame(@NonNull Buffer pixels, int width, int height) {
+        pixels.rewind();
+        glTexImage2D(width, height, pixels);
+        checkError();
+        drawQuad();
+    }
+
+    /**
+     * Uploads the region of the frame to the bound texture, allocated by
+     * {@link #drawFrame(Buffer, int, int)}.
+     * <p>
+     * With the row length unpacking (OpenGL ES 3) only the region is uploaded,
+     * otherwise the full-width rows band covering the region.
+     *
+     * @param pixels the frame pixels (RGB 565)
+     * @param width the frame width
+     * @param region the region to upload
+     * @param rowLength true if GL_UNPACK_ROW_LENGTH is supported
+     */
+    final void uploadRegion(@NonNull Buffer pixels, int width, @NonNull Rect region,
+            boolean rowLength) {
+        final int left = rowLength ? region.left : 0;
+        final int right = rowLength ? region.right : width;
+        pixels.position((region.top * width + left) * GLTools.RGB565_SIZE_BYTES);
+        glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, GLTools.RGB565_SIZE_BYTES);
+        if (rowLength) {
+            glPixelStorei(GLES30.GL_UNPACK_ROW_LENGTH, width);
+        }
+        glTexSubImage2D(left, region.top, right - left, region.height(), pixels);
+        if (rowLength) {
+            glPixelStorei(GLES30.GL_UNPACK_ROW_LENGTH, 0);
+        }
+        pixels.rewind();
+        checkError();
+    }
+
+    /**
+     * Uploads the bitmap to the bound texture.
+     *
+     * @param bitmap the bitmap
+     * @param replace true to replace the content of the same size without reallocation
+     */
+    final void uploadBitmap(@NonNull Bitmap bitmap, boolean replace) {
+        if (replace) {
+            texSubImage2D(bitmap);
+        } else {
+            texImage2D(bitmap);
+        }
+        checkError();
+    }
+
+    /** Draws the textured quad. */
+    final void drawQuad() {
+        glDrawArrays();
+        checkError();
+    }
+
+    /**
+     * Counts EGL calls made outside of this tracker.
+     *
+     * @param calls the number of calls
+     */
+    final void count(int calls) {
+        mCalls += calls;
+    }
+
+    /**
+     * Restores the default GL state after a foreign rendering.
+     * The program, textures and vertex attributes are left to be set by the next frame.
+     *
+     * @param width the surface width
+     * @param height the surface height
+     */
+    final void reset(int width, int height) {
+        glBindFramebuffer(0);
+        glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        glBindBuffer(GLES20.GL_ELEMENT_ARRAY_BUFFER, 0);
+        glDisable(GLES20.GL_BLEND);
+        glDisable(GLES20.GL_DEPTH_TEST);
+        glDisable(GLES20.GL_STENCIL_TEST);
+        glDisable(GLES20.GL_SCISSOR_TEST);
+        glDisable(GLES20.GL_CULL_FACE);
+        glColorMask();
+        glViewport(width, height);
+        glActiveTexture(GLES20.GL_TEXTURE0);
+        checkError();
+        invalidate();
+    }
+
+    /**
+     * Forgets the tracked bindings after a foreign rendering.
+     * Uniforms are kept, since they belong to the programs.
+     */
+    final void invalidate() {
+        mProgram = UNKNOWN;
+        mTexture = UNKNOWN;
+        mExternalTexture = UNKNOWN;
+        mBlending = UNKNOWN;
+    }
+
+    /**
+     * Counts the GL calls the operation has issued when it was run last time as skipped.
+     *
+     * @param op the operation
+     */
+    private void skip(int op) {
+        mSkipped += mOpCalls[op];
+    }
+
+    /* The counting wrappers of the GL calls. */
+
+    /** Checks and counts the GL error. */
+    private void checkError() {
+        mCalls++;
+        GLTools.checkError();
+    }
+
+    private void glUseProgram(int program) {
+        GLES20.glUseProgram(program);
+        mCalls++;
+    }
+
+    private void glBindBuffer(int target, int buffer) {
+        GLES20.glBindBuffer(target, buffer);
+        mCalls++;
+    }
+
+    private void glVertexAttribPointer(int index, int size, int offset) {
+        GLES20.glVertexAttribPointer(index, size, GLES20.GL_FLOAT, false,
+                GLTools.TRIANGLE_VERTICES_DATA_STRIDE_BYTES, offset * GLTools.FLOAT_SIZE_BYTES);
+        mCalls++;
+    }
+
+    private void glEnableVertexAttribArray(int index) {
+        GLES20.glEnableVertexAttribArray(index);
+        mCalls++;
+    }
+
+    private void glBindTexture(int target, int texture) {
+        GLES20.glBindTexture(target, texture);
+        mCalls++;
+    }
+
+    private void glEnable(int cap) {
+        GLES20.glEnable(cap);
+        mCalls++;
+    }
+
+    private void glDisable(int cap) {
+        GLES20.glDisable(cap);
+        mCalls++;
+    }
+
+    private void glBlendFunc(int src, int dst) {
+        GLES20.glBlendFunc(src, dst);
+        mCalls++;
+    }
+
+    private void glUniformMatrix4fv(int location, @NonNull float[] matrix) {
+        GLES20.glUniformMatrix4fv(location, 1, false, matrix, 0);
+        mCalls++;
+    }
+
+    private void glClearColor(float red, float green, float blue, float alpha) {
+        GLES20.glClearColor(red, green, blue, alpha);
+        mCalls++;
+    }
+
+    private void glClear(int mask) {
+        GLES20.glClear(mask);
+        mCalls++;
+    }
+
+    private void glTexImage2D(int width, int height, @NonNull Buffer pixels) {
+        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGB, width, height, 0,
+                GLES20.GL_RGB, GLES20.GL_UNSIGNED_SHORT_5_6_5, pixels);
+        mCalls++;
+    }
+
+    private void glTexSubImage2D(int x, int y, int width, int height, @NonNull Buffer pixels) {
+        GLES20.glTexSubImage2D(GLES20.GL_TEXTURE_2D, 0, x, y, width, height,
+                GLES20.GL_RGB, GLES20.GL_UNSIGNED_SHORT_5_6_5, pixels);
+        mCalls++;
+    }
+
+    private void texImage2D(@NonNull Bitmap bitmap) {
+        GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
+        mCalls++;
+    }
+
+    private void texSubImage2D(@NonNull Bitmap bitmap) {
+        GLUtils.texSubImage2D(GLES20.GL_TEXTURE_2D, 0, 0, 0, bitmap);
+        mCalls++;
+    }
+
+    private void glDrawArrays() {
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+        mCalls++;
+    }
+
+    private void glPixelStorei(int name, int value) {
+        GLES20.glPixelStorei(name, value);
+        mCalls++;
+    }
+
+    private void glBindFramebuffer(int framebuffer) {
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, framebuffer);
+        mCalls++;
+    }
+
+    private void glColorMask() {
+        GLES20.glColorMask(true, true, true, true);
+        mCalls++;
+    }
+
+    private void glViewport(int width, int height) {
+        GLES20.glViewport(0, 0, width, height);
+        mCalls++;
+    }
+
+    private void glActiveTexture(int texture) {
+        GLES20.glActiveTexture(texture);
+        mCalls++;
+    }
+
+    /** Completes the current frame counters. */
+    final void endFrame() {
+        mLastCalls = mCalls;
+        mLastSkipped = mSkipped;
+        mCalls = mSkipped = 0;
+    }
+
+    /** @return the number of GL calls of the last frame */
+    final int getCalls() {
+        return mLastCalls;
+    }
+
+    /** @return the number of GL calls skipped by the tracker in the last frame */
+    final int getSkipped() {
+        return mLastSkipped;
+    }
+}
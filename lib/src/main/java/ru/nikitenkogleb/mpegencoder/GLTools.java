@@ -6,16 +6,18 @@ import android.opengl.EGLContext;
 import android.opengl.EGLDisplay;
 import android.opengl.EGLExt;
 import android.opengl.EGLSurface;
+import android.opengl.GLES11Ext;
 import android.opengl.GLES20;
 import android.opengl.GLUtils;
 import android.opengl.Matrix;
 import android.os.Build;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.annotation.RequiresApi;
 import android.util.Log;
 import android.view.Surface;
 
-import java.nio.Buffer;
+import java.io.File;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
@@ -48,7 +50,16 @@ final class GLTools {
     private static final int RECORDABLE_ANDROID = 0x3142;
 
     /** Float size in bytes. */
-    private static final int FLOAT_SIZE_BYTES = 4;
+    static final int FLOAT_SIZE_BYTES = 4;
+
+    /** RGB 565 pixel size in bytes. */
+    static final int RGB565_SIZE_BYTES = 2;
+
+    /** The GL version prefix of OpenGL ES 3. */
+    private static final String GLES3 = "OpenGL ES 3";
+
+    /** The size of shader attributes array. */
+    static final int SHADER_ATTRS = 7;
 
     /** Shader str-constants. */
     private static final String
@@ -58,11 +69,11 @@ final class GLTools {
 
 
     /** Triangle vertices stride bytes. */
-    private static final int TRIANGLE_VERTICES_DATA_STRIDE_BYTES = 5 * FLOAT_SIZE_BYTES;
+    static final int TRIANGLE_VERTICES_DATA_STRIDE_BYTES = 5 * FLOAT_SIZE_BYTES;
     /** Triangle vertices data pos. */
-    private static final int TRIANGLE_VERTICES_DATA_POS_OFFSET = 0;
+    static final int TRIANGLE_VERTICES_DATA_POS_OFFSET = 0;
     /** Triangle vertices data uv offset. */
-    private static final int TRIANGLE_VERTICES_DATA_UV_OFFSET = 3;
+    static final int TRIANGLE_VERTICES_DATA_UV_OFFSET = 3;
 
     /** Triangle vertices. */
     private static final FloatBuffer TRIANGLE_VERTICES = createVertices();
@@ -81,16 +92,27 @@ final class GLTools {
 
     /** The fragment shader. */
     private static final String FSHADER =
-            //"#extension GL_OES_EGL_image_external : require\n" +
             "precision mediump float;\n" +
                     "varying vec2 " + F_COORDINATE + ";\n" +
-                    //"uniform samplerExternalOES " + F_TEXTURE + ";\n" +
                     "uniform sampler2D " + F_TEXTURE + ";\n" +
                     "void main() {\n" +
                     "  vec2 flipped = vec2(" + F_COORDINATE + ".x, 1.0 - " + F_COORDINATE + ".y);" +
                     "  gl_FragColor = texture2D(" + F_TEXTURE + ", flipped);\n" +
                     "}\n";
 
+    /**
+     * The fragment shader of external textures.
+     * The orientation is set by the texture matrix of {@link android.graphics.SurfaceTexture}.
+     */
+    private static final String FSHADER_EXTERNAL =
+            "#extension GL_OES_EGL_image_external : require\n" +
+            "precision mediump float;\n" +
+                    "varying vec2 " + F_COORDINATE + ";\n" +
+                    "uniform samplerExternalOES " + F_TEXTURE + ";\n" +
+                    "void main() {\n" +
+                    "  gl_FragColor = texture2D(" + F_TEXTURE + ", " + F_COORDINATE + ");\n" +
+                    "}\n";
+
     /**
      * The caller should be prevented from constructing objects of this class.
      * Also, this prevents even the native class from calling this constructor.
@@ -429,6 +451,20 @@ final class GLTools {
         }
     }
 
+    /**
+     * @param display an EGL display connection instance
+     * @param surface an EGL rendering surface
+     * @param size the width and the height of the surface
+     */
+    public static void getSurfaceSize(@NonNull EGLDisplay display, @NonNull EGLSurface surface,
+            @NonNull int[] size) {
+        if (!EGL14.eglQuerySurface(display, surface, EGL14.EGL_WIDTH, size, 0) ||
+                !EGL14.eglQuerySurface(display, surface, EGL14.EGL_HEIGHT, size, 1)) {
+            logError();
+            throw new RuntimeException("Unable to query " + getSurfaceString(surface));
+        }
+    }
+
     /**
      * Make an EGL rendering context as current.
      * @param display an EGL display connection instance
@@ -527,8 +563,58 @@ final class GLTools {
         return result;
     }
 
+    /**
+     * Create an external GLES texture, the target of {@link android.graphics.SurfaceTexture}.
+     *
+     * @param level the texture unit
+     * @return new gl-texture
+     */
+    public static int newExternalTexture(int level) {
+        final int[] textures = new int[1];
+        GLES20.glGenTextures(1, textures, 0);
+        checkError();
+
+        GLES20.glActiveTexture(level);
+        GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, textures[0]);
+        checkError();
+
+        GLES20.glTexParameterf(GLES11Ext.GL_TEXTURE_EXTERNAL_OES,
+                GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameterf(GLES11Ext.GL_TEXTURE_EXTERNAL_OES,
+                GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES,
+                GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES,
+                GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+        checkError();
+
+        final int result = textures[0];
+        logDebug("External texture " + result + " created");
+
+        return result;
+    }
+
+    /**
+     * Release an external texture.
+     * @param texture existing texture
+     */
+    public static void closeExternalTexture(int texture, int level) {
+        GLES20.glActiveTexture(level);
+        checkError();
+
+        try {
+            GLES20.glBindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, 0);
+            checkError();
+        } finally {
+            GLES20.glDeleteTextures(1, new int[] {texture}, 0);
+            checkError();
+        }
+
+        logDebug("External texture " + texture + " destroyed");
+    }
+
     /** Log GL-Error. */
-    private static void checkError() {
+    static void checkError() {
         final int error = GLES20.glGetError();
         if (error != GLES20.GL_NO_ERROR) {
             throw new RuntimeException(GLUtils.getEGLErrorString(error));
@@ -558,8 +644,23 @@ final class GLTools {
 
     /** Create a shader */
     public static void newShader(@NonNull int[] attrs) {
-        if (attrs.length != 5) {
-            throw new IllegalArgumentException("Must be 5 int-array");
+        newShader(attrs, false, null);
+    }
+
+    /**
+     * Create a shader.
+     * <p>
+     * With the cache directory the linked program binary is cached on disk,
+     * so the next sessions skip the shader compilation.
+     *
+     * @param attrs the shader attributes
+     * @param external true to sample an external texture
+     * @param cacheDir the cache directory or null to compile from the sources
+     */
+    public static void newShader(@NonNull int[] attrs, boolean external,
+            @Nullable File cacheDir) {
+        if (attrs.length != SHADER_ATTRS) {
+            throw new IllegalArgumentException("Must be " + SHADER_ATTRS + " int-array");
         }
 
         /*
@@ -568,49 +669,116 @@ final class GLTools {
          * 2 - Fragment Shader
          * 3 - Position Handle
          * 4 - Texture Handle
+         * 5 - MVP Matrix Handle
+         * 6 - ST Matrix Handle
          **/
 
-        attrs[0] = GLES20.glCreateProgram();
-        checkError();
+        final String fragment = external ? FSHADER_EXTERNAL : FSHADER;
+        final boolean cache = cacheDir != null && ProgramCache.isSupported();
+        final String key = cache ? ProgramCache.getKey(VSHADER, fragment) : null;
 
-        GLES20.glAttachShader(attrs[0], (attrs[1] = loadShader(GLES20.GL_VERTEX_SHADER, VSHADER)));
-        GLES20.glAttachShader(attrs[0], (attrs[2] = loadShader(GLES20.GL_FRAGMENT_SHADER, FSHADER)));
-        GLES20.glLinkProgram(attrs[0]); GLES20.glUseProgram(attrs[0]);
-        checkError();
+        attrs[0] = key != null ? ProgramCache.load(cacheDir, key) : 0;
+        if (attrs[0] != 0) {
+            attrs[1] = attrs[2] = 0;
+        } else {
+            attrs[0] = GLES20.glCreateProgram();
+            checkError();
+
+            attrs[1] = attrs[2] = 0;
+            try {
+                GLES20.glAttachShader(attrs[0],
+                        (attrs[1] = loadShader(GLES20.GL_VERTEX_SHADER, VSHADER)));
+                GLES20.glAttachShader(attrs[0],
+                        (attrs[2] = loadShader(GLES20.GL_FRAGMENT_SHADER, fragment)));
+                if (key != null) {
+                    ProgramCache.retrievable(attrs[0]);
+                }
+                GLES20.glLinkProgram(attrs[0]);
+                checkError();
+                checkLinkStatus(attrs);
+            } catch (RuntimeException exception) {
+                // The zero names are silently ignored
+                GLES20.glDeleteShader(attrs[1]);
+                GLES20.glDeleteShader(attrs[2]);
+                GLES20.glDeleteProgram(attrs[0]);
+                attrs[0] = attrs[1] = attrs[2] = 0;
+                throw exception;
+            }
+
+            if (key != null) {
+                ProgramCache.save(cacheDir, key, attrs[0]);
+            }
+        }
 
         attrs[3] = GLES20.glGetAttribLocation(attrs[0], V_POSITION);
         attrs[4] = GLES20.glGetAttribLocation(attrs[0], V_COORDINATE);
-        final int uMVPMatrixHandle = GLES20.glGetUniformLocation(attrs[0], V_MVP_MATRIX);
-        final int uSTMatrixHandle = GLES20.glGetUniformLocation(attrs[0], V_ST_MATRIX);
+        attrs[5] = GLES20.glGetUniformLocation(attrs[0], V_MVP_MATRIX);
+        attrs[6] = GLES20.glGetUniformLocation(attrs[0], V_ST_MATRIX);
         checkError();
 
-        TRIANGLE_VERTICES.position(TRIANGLE_VERTICES_DATA_POS_OFFSET);
-        GLES20.glVertexAttribPointer(attrs[3], 3, GLES20.GL_FLOAT, false,
-                TRIANGLE_VERTICES_DATA_STRIDE_BYTES, TRIANGLE_VERTICES);
+        GLES20.glUseProgram(attrs[0]);
         checkError();
 
-        TRIANGLE_VERTICES.position(TRIANGLE_VERTICES_DATA_UV_OFFSET);
-        GLES20.glVertexAttribPointer(attrs[4], 4, GLES20.GL_FLOAT, false,
-                TRIANGLE_VERTICES_DATA_STRIDE_BYTES, TRIANGLE_VERTICES);
+        float[] MVPMatrix = new float[16]; Matrix.setIdentityM(MVPMatrix, 0);
+        float[] STMatrix = new float[16]; Matrix.setIdentityM(STMatrix, 0);
+        setTransform(attrs, MVPMatrix, STMatrix);
+
+        logDebug("Shader created");
+    }
+
+    /**
+     * Create a vertex buffer object of the quad.
+     * @return new vertex buffer
+     */
+    public static int newVertexBuffer() {
+        final int[] buffers = new int[1];
+        GLES20.glGenBuffers(1, buffers, 0);
         checkError();
 
-        GLES20.glEnableVertexAttribArray(attrs[3]);
-        GLES20.glEnableVertexAttribArray(attrs[4]);
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, buffers[0]);
+        TRIANGLE_VERTICES.position(0);
+        GLES20.glBufferData(GLES20.GL_ARRAY_BUFFER,
+                TRIANGLE_VERTICES.capacity() * FLOAT_SIZE_BYTES, TRIANGLE_VERTICES,
+                GLES20.GL_STATIC_DRAW);
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
         checkError();
 
-        float[] MVPMatrix = new float[16]; Matrix.setIdentityM(MVPMatrix, 0);
-        GLES20.glUniformMatrix4fv(uMVPMatrixHandle, 1, false, MVPMatrix, 0);
-        float[] STMatrix = new float[16]; Matrix.setIdentityM(STMatrix, 0);
-        GLES20.glUniformMatrix4fv(uSTMatrixHandle, 1, false, STMatrix, 0);
+        final int result = buffers[0];
+        logDebug("Vertex buffer " + result + " created");
+
+        return result;
+    }
+
+    /**
+     * Release a vertex buffer.
+     * @param buffer existing vertex buffer
+     */
+    public static void closeVertexBuffer(int buffer) {
+        GLES20.glBindBuffer(GLES20.GL_ARRAY_BUFFER, 0);
+        GLES20.glDeleteBuffers(1, new int[] {buffer}, 0);
         checkError();
 
-        logDebug("Shader created");
+        logDebug("Vertex buffer " + buffer + " destroyed");
+    }
+
+    /**
+     * Sets the transform matrices of the shader.
+     *
+     * @param attrs the shader attributes
+     * @param mvp the vertex matrix
+     * @param st the texture matrix
+     */
+    public static void setTransform(@NonNull int[] attrs, @NonNull float[] mvp,
+            @NonNull float[] st) {
+        GLES20.glUniformMatrix4fv(attrs[5], 1, false, mvp, 0);
+        GLES20.glUniformMatrix4fv(attrs[6], 1, false, st, 0);
+        checkError();
     }
 
     /** Close the shader. */
     public static void closeShader(@NonNull int[] attrs) {
-        if (attrs.length != 5) {
-            throw new IllegalArgumentException("Must be 5 int-array");
+        if (attrs.length != SHADER_ATTRS) {
+            throw new IllegalArgumentException("Must be " + SHADER_ATTRS + " int-array");
         }
 
         /*
@@ -619,6 +787,8 @@ final class GLTools {
          * 2 - Fragment Shader
          * 3 - Position Handle
          * 4 - Texture Handle
+         * 5 - MVP Matrix Handle
+         * 6 - ST Matrix Handle
          **/
         GLES20.glDisableVertexAttribArray(attrs[3]);
         GLES20.glDisableVertexAttribArray(attrs[4]);
@@ -627,12 +797,16 @@ final class GLTools {
         GLES20.glUseProgram(0);
         checkError();
 
-        GLES20.glDetachShader(attrs[0], attrs[1]);
-        GLES20.glDeleteShader(attrs[1]);
-        checkError();
+        if (attrs[1] != 0) {
+            GLES20.glDetachShader(attrs[0], attrs[1]);
+            GLES20.glDeleteShader(attrs[1]);
+            checkError();
+        }
 
-        GLES20.glDetachShader(attrs[0], attrs[2]);
-        GLES20.glDeleteShader(attrs[2]);
+        if (attrs[2] != 0) {
+            GLES20.glDetachShader(attrs[0], attrs[2]);
+            GLES20.glDeleteShader(attrs[2]);
+        }
         GLES20.glDeleteProgram(attrs[0]);
         checkError();
 
@@ -640,23 +814,10 @@ final class GLTools {
         logDebug("Shader destroyed");
     }
 
-    /**
-     * Called to draw the current frame.
-     * <p>
-     * This method is responsible for drawing the current frame.
-     */
-    public static void drawFrame(@NonNull Buffer pixels, int width, int height, int border) {
-        pixels.rewind();
-        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGB,
-                width, height, border, GLES20.GL_RGB,
-                GLES20.GL_UNSIGNED_SHORT_5_6_5, pixels);
-        checkError();
-
-        //GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT | GLES20.GL_DEPTH_BUFFER_BIT);
-        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
-        checkError();
-
-        //logDebug("Frame was drew");
+    /** @return true if the current context is OpenGL ES 3 */
+    public static boolean isES3() {
+        final String version = GLES20.glGetString(GLES20.GL_VERSION);
+        return version != null && version.startsWith(GLES3);
     }
 
     /**
@@ -668,7 +829,29 @@ final class GLTools {
     private static int loadShader(int type, @NonNull String source) {
         final int result = GLES20.glCreateShader(type);
         GLES20.glShaderSource(result, source);
-        GLES20.glCompileShader(result); return result;
+        GLES20.glCompileShader(result);
+
+        final int[] status = new int[1];
+        GLES20.glGetShaderiv(result, GLES20.GL_COMPILE_STATUS, status, 0);
+        if (status[0] != GLES20.GL_TRUE) {
+            final String log = GLES20.glGetShaderInfoLog(result);
+            GLES20.glDeleteShader(result);
+            throw new RuntimeException("Unable to compile shader: " + log);
+        }
+        return result;
+    }
+
+    /**
+     * Checks the link status of the shader program.
+     * @param attrs the shader attributes
+     */
+    private static void checkLinkStatus(@NonNull int[] attrs) {
+        final int[] status = new int[1];
+        GLES20.glGetProgramiv(attrs[0], GLES20.GL_LINK_STATUS, status, 0);
+        if (status[0] != GLES20.GL_TRUE) {
+            throw new RuntimeException("Unable to link program: " +
+                    GLES20.glGetProgramInfoLog(attrs[0]));
+        }
     }
 
     /**
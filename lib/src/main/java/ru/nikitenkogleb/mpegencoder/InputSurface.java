@@ -1,16 +1,23 @@
 package ru.nikitenkogleb.mpegencoder;
 
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.graphics.SurfaceTexture;
 import android.opengl.EGLConfig;
 import android.opengl.EGLContext;
 import android.opengl.EGLDisplay;
 import android.opengl.EGLSurface;
 import android.opengl.GLES20;
+import android.opengl.Matrix;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.util.Log;
 import android.view.Surface;
 
 import java.io.Closeable;
+import java.io.File;
 import java.nio.ByteBuffer;
+import java.util.List;
 
 import proguard.annotation.Keep;
 import proguard.annotation.KeepPublicProtectedClassMembers;
@@ -38,9 +45,12 @@ final class InputSurface implements Closeable {
     /** Default texture level. */
     private static final int TEXTURE_LEVEL = GLES20.GL_TEXTURE0;
 
+    /** The identity matrix. */
+    private static final float[] IDENTITY = newIdentity();
+
     /** The EGL Surface. */
     @NonNull
-    private final int[] mShader = new int[5];
+    private final int[] mShader = new int[GLTools.SHADER_ATTRS];
 
     /** The horizontal size of input frames. */
     private final int mWidth;
@@ -51,8 +61,8 @@ final class InputSurface implements Closeable {
     /** The GL-Texture. */
     private final int mTexture;
 
-    /** The frame buffer. */
-    @NonNull
+    /** The frame buffer or null for bitmap input. */
+    @Nullable
     private final ByteBuffer mByteBuffer;
 
     /** The EGL Display. */
@@ -70,6 +80,75 @@ final class InputSurface implements Closeable {
     /** AutoSwap mode flag. */
     private final boolean mAutoSwap;
 
+    /** Clear before drawing. */
+    private final boolean mClear;
+
+    /** The vertex matrix of frames. */
+    @NonNull
+    private final float[] mMvpMatrix = new float[Transform.MATRIX_SIZE];
+    /** The texture matrix of frames. */
+    @NonNull
+    private final float[] mStMatrix = new float[Transform.MATRIX_SIZE];
+
+    /** The overlays. */
+    @NonNull
+    private final Overlay[] mOverlays;
+    /** The GL-Textures of overlays. */
+    @NonNull
+    private final int[] mOverlayTextures;
+    /** The uploaded content versions of overlays. */
+    @NonNull
+    private final int[] mOverlayVersions;
+    /** The uploaded content sizes of overlays (width and height). */
+    @NonNull
+    private final int[] mOverlaySizes;
+    /** The vertex matrices of overlays. */
+    @NonNull
+    private final float[][] mOverlayMatrices;
+
+    /** The shader of overlays, separate for the external input. */
+    @NonNull
+    private final int[] mOverlayShader;
+
+    /** The texture matrix of the current frame. */
+    @NonNull
+    private final float[] mFrameMatrix = new float[Transform.MATRIX_SIZE];
+
+    /** The external input or null. */
+    @Nullable
+    private final SurfaceTexture mSurfaceTexture;
+    /** The producer surface of the external input or null. */
+    @Nullable
+    private final Surface mExternalSurface;
+    /** The texture matrix of the external input. */
+    @NonNull
+    private final float[] mExternalMatrix = new float[Transform.MATRIX_SIZE];
+
+    /** The lock of the frame available flag. */
+    @NonNull
+    private final Object mFrameLock = new Object();
+    /** The new external frame is available. */
+    private boolean mFrameAvailable;
+
+    /** The GL state tracker. */
+    @NonNull
+    private final GLState mState;
+
+    /** The size of the EGL Surface. */
+    @NonNull
+    private final int[] mSurfaceSize = new int[2];
+
+    /** The config of the bitmap the texture storage is allocated for, or null. */
+    @Nullable
+    private Bitmap.Config mBitmapConfig;
+    /** The texture storage is allocated for the frame buffer. */
+    private boolean mBufferAllocated;
+
+    /** GL_UNPACK_ROW_LENGTH is supported. */
+    private final boolean mRowLength;
+    /** The dirty region of the current frame. */
+    @NonNull
+    private final Rect mDirty = new Rect();
 
     /** The object was released. */
     private boolean mReleased;
@@ -79,6 +158,7 @@ final class InputSurface implements Closeable {
         checkState();
 
         mAutoSwap = builder.autoSwap;
+        mClear = builder.clear;
         mWidth = builder.width;
         mHeight = builder.height;
         mByteBuffer = builder.byteBuffer;
@@ -88,12 +168,65 @@ final class InputSurface implements Closeable {
         final EGLConfig eglConfig = GLTools.newConfig(mEglDisplay, false);
         mEglContext = GLTools.newContext(mEglDisplay, eglConfig);
         mEglSurface = GLTools.newSurface(mEglDisplay, eglConfig, builder.surface);
+        GLTools.getSurfaceSize(mEglDisplay, mEglSurface, mSurfaceSize);
 
         if (mAutoSwap)
             GLTools.makeCurrent(mEglDisplay, mEglSurface, mEglContext);
 
-        GLTools.newShader(mShader);
-        mTexture = GLTools.newTexture(TEXTURE_LEVEL);
+        mState = new GLState();
+        mRowLength = GLTools.isES3();
+
+        final boolean external = builder.external;
+        GLTools.newShader(mShader, external, builder.cacheDir);
+        if (builder.mvpMatrix != null && builder.stMatrix != null) {
+            System.arraycopy(builder.mvpMatrix, 0, mMvpMatrix, 0, Transform.MATRIX_SIZE);
+            System.arraycopy(builder.stMatrix, 0, mStMatrix, 0, Transform.MATRIX_SIZE);
+        } else {
+            Matrix.setIdentityM(mMvpMatrix, 0);
+            Matrix.setIdentityM(mStMatrix, 0);
+        }
+        System.arraycopy(mStMatrix, 0, mFrameMatrix, 0, Transform.MATRIX_SIZE);
+
+        final int overlays = builder.overlays != null ? builder.overlays.size() : 0;
+        mOverlays = new Overlay[overlays];
+        mOverlayTextures = new int[overlays];
+        mOverlayVersions = new int[overlays];
+        mOverlaySizes = new int[overlays * 2];
+        mOverlayMatrices = new float[overlays][Transform.MATRIX_SIZE];
+        for (int i = 0; i < overlays; i++) {
+            mOverlays[i] = builder.overlays.get(i);
+            mOverlays[i].compute(builder.outWidth, builder.outHeight, mOverlayMatrices[i]);
+            mOverlayTextures[i] = GLTools.newTexture(TEXTURE_LEVEL);
+            mOverlayVersions[i] = -1;
+        }
+
+        if (external && overlays != 0) {
+            mOverlayShader = new int[GLTools.SHADER_ATTRS];
+            GLTools.newShader(mOverlayShader, false, builder.cacheDir);
+        } else {
+            mOverlayShader = mShader;
+        }
+
+        if (external) {
+            mTexture = GLTools.newExternalTexture(TEXTURE_LEVEL);
+            mSurfaceTexture = new SurfaceTexture(mTexture);
+            mSurfaceTexture.setDefaultBufferSize(mWidth, mHeight);
+            mSurfaceTexture.setOnFrameAvailableListener(
+                    new SurfaceTexture.OnFrameAvailableListener() {
+                        @Override
+                        public final void onFrameAvailable(SurfaceTexture surfaceTexture) {
+                            synchronized (mFrameLock) {
+                                mFrameAvailable = true;
+                                mFrameLock.notifyAll();
+                            }
+                        }
+                    });
+            mExternalSurface = new Surface(mSurfaceTexture);
+        } else {
+            mTexture = GLTools.newTexture(TEXTURE_LEVEL);
+            mSurfaceTexture = null;
+            mExternalSurface = null;
+        }
 
         logv("Input surface created");
     }
@@ -103,7 +236,20 @@ final class InputSurface implements Closeable {
     public final void close() {
         checkState();
 
-        GLTools.closeTexture(mTexture, TEXTURE_LEVEL);
+        if (mSurfaceTexture != null && mExternalSurface != null) {
+            mExternalSurface.release();
+            mSurfaceTexture.release();
+            GLTools.closeExternalTexture(mTexture, TEXTURE_LEVEL);
+        } else {
+            GLTools.closeTexture(mTexture, TEXTURE_LEVEL);
+        }
+        for (int texture : mOverlayTextures) {
+            GLTools.closeTexture(texture, TEXTURE_LEVEL);
+        }
+        mState.close();
+        if (mOverlayShader != mShader) {
+            GLTools.closeShader(mOverlayShader);
+        }
         GLTools.closeShader(mShader);
 
         GLTools.closeSurface(mEglDisplay, mEglSurface);
@@ -120,18 +266,218 @@ final class InputSurface implements Closeable {
      * This method is responsible for drawing the current frame.
      */
     public final void draw(long nSec) {
+        if (mByteBuffer != null) {
+            draw((Rect) null, nSec);
+            return;
+        }
+        if (mSurfaceTexture == null) {
+            throw new IllegalStateException("No frame buffer");
+        }
         //if (mAutoSwap)
         //    GLTools.makeCurrent(mEglDisplay, mEglSurface, mEglContext);
-        GLTools.drawFrame(mByteBuffer, mWidth, mHeight, 0);
+        prepareFrame();
+        mState.drawQuad();
+        submit(nSec);
+    }
+
+    /**
+     * Called to draw the current frame changed only in the dirty region.
+     * <p>
+     * The texture storage is allocated by the first frame, which is uploaded entirely,
+     * the following frames upload only the changed region into it.
+     *
+     * @param dirty the changed region in frame pixels or null for the whole frame
+     * @param nSec the presentation time (in nanoseconds)
+     */
+    public final void draw(@Nullable Rect dirty, long nSec) {
+        if (mByteBuffer == null) {
+            throw new IllegalStateException("No frame buffer");
+        }
+        prepareFrame();
+        if (!mBufferAllocated) {
+            mState.drawFrame(mByteBuffer, mWidth, mHeight);
+            mBufferAllocated = true;
+            mBitmapConfig = null;
+        } else {
+            if (dirty == null) {
+                mDirty.set(0, 0, mWidth, mHeight);
+            } else {
+                mDirty.set(dirty);
+            }
+            if (mDirty.intersect(0, 0, mWidth, mHeight)) {
+                mState.uploadRegion(mByteBuffer, mWidth, mDirty, mRowLength);
+            }
+            mState.drawQuad();
+        }
+        submit(nSec);
+    }
+
+    /**
+     * Waits for the next frame of the external input and latches it to the texture.
+     * <p>
+     * The frame callback is delivered on the looper of the thread created this surface,
+     * or on the main looper, so that looper must not be blocked by this call.
+     *
+     * @param timeoutMs the timeout (in milliseconds)
+     * @return false if no frame has come in time
+     */
+    public final boolean awaitFrame(long timeoutMs) {
+        if (mSurfaceTexture == null) {
+            throw new IllegalStateException("No external input");
+        }
+        final long deadline = System.nanoTime() + timeoutMs * 1000000L;
+        synchronized (mFrameLock) {
+            while (!mFrameAvailable) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    mFrameLock.wait(remaining / 1000000L + 1);
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            mFrameAvailable = false;
+        }
+
+        mSurfaceTexture.updateTexImage();
+        mSurfaceTexture.getTransformMatrix(mExternalMatrix);
+        Matrix.multiplyMM(mFrameMatrix, 0, mExternalMatrix, 0, mStMatrix, 0);
+        return true;
+    }
+
+    /** @return the timestamp of the latched external frame (in nanoseconds) */
+    public final long getFrameTimestamp() {
+        if (mSurfaceTexture == null) {
+            throw new IllegalStateException("No external input");
+        }
+        return mSurfaceTexture.getTimestamp();
+    }
+
+    /** @return the producer surface of the external input */
+    @NonNull
+    public final Surface getExternalSurface() {
+        if (mExternalSurface == null) {
+            throw new IllegalStateException("No external input");
+        }
+        return mExternalSurface;
+    }
+
+    /** @return the external input */
+    @NonNull
+    public final SurfaceTexture getSurfaceTexture() {
+        if (mSurfaceTexture == null) {
+            throw new IllegalStateException("No external input");
+        }
+        return mSurfaceTexture;
+    }
+
+    /**
+     * Called to draw the bitmap as the current frame.
+     * <p>
+     * The bitmap is uploaded straight to the texture, without the frame buffer copy.
+     * The texture storage is allocated by the first frame and reused after,
+     * while the bitmap config is the same.
+     *
+     * @param bitmap the frame of the input size
+     * @param nSec the presentation time (in nanoseconds)
+     */
+    public final void draw(@NonNull Bitmap bitmap, long nSec) {
+        if (mSurfaceTexture != null) {
+            throw new IllegalStateException("External input");
+        }
+        if (bitmap.getWidth() != mWidth || bitmap.getHeight() != mHeight) {
+            throw new IllegalArgumentException("Bitmap must be " + mWidth + "x" + mHeight);
+        }
+        prepareFrame();
+        mState.uploadBitmap(bitmap, mBitmapConfig == bitmap.getConfig());
+        mBitmapConfig = bitmap.getConfig();
+        mBufferAllocated = false;
+        mState.drawQuad();
+        submit(nSec);
+    }
+
+    /**
+     * Called to draw the current frame by the renderer.
+     * <p>
+     * The renderer draws with the EGL context current on the encoder surface
+     * and the default GL state, the GL state of this surface is restored after.
+     *
+     * @param renderer the renderer
+     * @param nSec the presentation time (in nanoseconds)
+     */
+    public final void draw(@NonNull MpegEncoder.Renderer renderer, long nSec) {
+        mState.reset(mSurfaceSize[0], mSurfaceSize[1]);
+        renderer.onDrawFrame(nSec);
+        mState.reset(mSurfaceSize[0], mSurfaceSize[1]);
+        submit(nSec);
+    }
+
+    /** Clears the surface if needed and sets the GL state of the frame. */
+    private void prepareFrame() {
+        if (mClear) {
+            mState.clear();
+        }
+        mState.setBlending(false);
+        mState.setTransform(mShader, mMvpMatrix, mFrameMatrix);
+        mState.bindTexture(mTexture, mSurfaceTexture != null);
+    }
+
+    /** @return the number of GL calls of the last frame */
+    public final int getGLCalls() {
+        return mState.getCalls();
+    }
+
+    /** @return the number of redundant GL calls skipped in the last frame */
+    public final int getSkippedGLCalls() {
+        return mState.getSkipped();
+    }
+
+    /**
+     * Blends the overlays and submits the current frame.
+     *
+     * @param nSec the presentation time (in nanoseconds)
+     */
+    private void submit(long nSec) {
+        if (mOverlays.length != 0)
+            drawOverlays();
         GLTools.setPresentationTime(mEglDisplay, mEglSurface, nSec);
+        mState.count(1);
 
         // Submit it to the encoder.  The eglSwapBuffers call will block if the input
         // is full, which would be bad if it stayed full until we dequeued an output
         // buffer (which we can't do, since we're stuck here).  So long as we fully drain
         // the encoder before supplying additional input, the system guarantees that we
         // can supply another frame without blocking.
-        if (mAutoSwap)
+        if (mAutoSwap) {
             GLTools.swapBuffers(mEglDisplay, mEglSurface);
+            mState.count(1);
+        }
+        mState.endFrame();
+    }
+
+    /**
+     * Blends the overlays over the current frame.
+     * <p>
+     * Overlay textures are uploaded only when their content has changed.
+     */
+    private void drawOverlays() {
+        mState.setBlending(true);
+        for (int i = 0; i < mOverlays.length; i++) {
+            mState.bindTexture(mOverlayTextures[i], false);
+            final Bitmap bitmap = mOverlays[i].poll(mOverlayVersions, i);
+            if (bitmap != null) {
+                final boolean replace = mOverlaySizes[i * 2] == bitmap.getWidth() &&
+                        mOverlaySizes[i * 2 + 1] == bitmap.getHeight();
+                mState.uploadBitmap(bitmap, replace);
+                mOverlaySizes[i * 2] = bitmap.getWidth();
+                mOverlaySizes[i * 2 + 1] = bitmap.getHeight();
+            }
+            mState.setTransform(mOverlayShader, mOverlayMatrices[i], IDENTITY);
+            mState.drawQuad();
+        }
     }
 
     /** {@inheritDoc} */
@@ -149,6 +495,14 @@ final class InputSurface implements Closeable {
         }
     }
 
+    /** @return the identity matrix */
+    @NonNull
+    private static float[] newIdentity() {
+        final float[] result = new float[Transform.MATRIX_SIZE];
+        Matrix.setIdentityM(result, 0);
+        return result;
+    }
+
     /** Check current state. */
     private void checkState() {
         if (mReleased) {
@@ -188,14 +542,14 @@ final class InputSurface implements Closeable {
      * Create a {@link Builder} suitable for building a {@link InputSurface}.
      *
      * @param surface the source surface
-     * @param frameBuffer the frame buffer
+     * @param frameBuffer the frame buffer or null for bitmap input
      * @param width horizontal size of input frames
      * @param height vertical size of input frames
      *
      * @return a {@link Builder}
      */
     @NonNull
-    public static Builder create(@NonNull Surface surface, @NonNull ByteBuffer frameBuffer,
+    public static Builder create(@NonNull Surface surface, @Nullable ByteBuffer frameBuffer,
             int width, int height) {
         return new Builder(surface, frameBuffer, width, height);
     }
@@ -223,8 +577,8 @@ final class InputSurface implements Closeable {
         @NonNull
         private final Surface surface;
 
-        /** The frame buffer. */
-        @NonNull
+        /** The frame buffer or null for bitmap input. */
+        @Nullable
         private final ByteBuffer byteBuffer;
 
         /** The horizontal size of input frames. */
@@ -235,6 +589,26 @@ final class InputSurface implements Closeable {
         /** AutoSwap mode flag. */
         private boolean autoSwap = false;
 
+        /** The vertex matrix. */
+        private float[] mvpMatrix = null;
+        /** The texture matrix. */
+        private float[] stMatrix = null;
+        /** Clear before drawing. */
+        private boolean clear = false;
+
+        /** The external input. */
+        private boolean external = false;
+
+        /** The program cache directory. */
+        private File cacheDir = null;
+
+        /** The overlays. */
+        private List<Overlay> overlays = null;
+        /** The horizontal size of the surface. */
+        private int outWidth = 0;
+        /** The vertical size of the surface. */
+        private int outHeight = 0;
+
         /**
          * Constructs a new {@link Builder}.
          *
@@ -242,7 +616,7 @@ final class InputSurface implements Closeable {
          * @param width horizontal size of input frames
          * @param height vertical size of input frames
          */
-        public Builder(@NonNull Surface surface, @NonNull ByteBuffer frameBuffer,
+        public Builder(@NonNull Surface surface, @Nullable ByteBuffer frameBuffer,
                 int width, int height) {
             this.surface = surface;
             this.width = width;
@@ -256,6 +630,58 @@ final class InputSurface implements Closeable {
             autoSwap = true;
             return this;
         }
+        /**
+         * Sets the transform matrices of the shader.
+         *
+         * @param mvp the vertex matrix
+         * @param st the texture matrix
+         * @param clear clear before drawing, if the frame doesn't cover the whole surface
+         */
+        @NonNull
+        public final Builder transform(@NonNull float[] mvp, @NonNull float[] st,
+                boolean clear) {
+            this.mvpMatrix = mvp;
+            this.stMatrix = st;
+            this.clear = clear;
+            return this;
+        }
+
+        /**
+         * Sets the overlays blended over every frame.
+         *
+         * @param overlays the overlays, from the bottom to the top
+         * @param width horizontal size of the surface
+         * @param height vertical size of the surface
+         */
+        @NonNull
+        public final Builder overlays(@NonNull List<Overlay> overlays, int width, int height) {
+            this.overlays = overlays;
+            this.outWidth = width;
+            this.outHeight = height;
+            return this;
+        }
+
+        /**
+         * Enables the external input: frames are rendered to {@link #getExternalSurface()}
+         * by a producer, such as camera or video decoder, and sampled as external texture.
+         */
+        @NonNull
+        public final Builder external() {
+            external = true;
+            return this;
+        }
+
+        /**
+         * Enables the cache of linked shader programs.
+         *
+         * @param dir the cache directory
+         */
+        @NonNull
+        public final Builder cache(@NonNull File dir) {
+            cacheDir = dir;
+            return this;
+        }
+
         /** Create a {@link InputSurface} from this {@link Builder}. */
         @NonNull
         public final InputSurface build()  {
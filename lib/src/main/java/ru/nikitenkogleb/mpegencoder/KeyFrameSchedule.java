@@ -0,0 +1,70 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * The sorted set of presentation times requiring key frames.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+final class KeyFrameSchedule {
+
+    /** The initial capacity. */
+    private static final int CAPACITY = 8;
+
+    /** The scheduled times (in nanoseconds). */
+    private long[] mTimes = new long[CAPACITY];
+
+    /** The number of scheduled times. */
+    private int mSize = 0;
+
+    /**
+     * Schedules a key frame.
+     *
+     * @param time the presentation time (in nanoseconds)
+     */
+    final void add(long time) {
+        if (mSize == mTimes.length) {
+            final long[] times = new long[mSize * 2];
+            System.arraycopy(mTimes, 0, times, 0, mSize);
+            mTimes = times;
+        }
+        int index = mSize;
+        while (index > 0 && mTimes[index - 1] > time) {
+            mTimes[index] = mTimes[index - 1];
+            index--;
+        }
+        mTimes[index] = time;
+        mSize++;
+    }
+
+    /**
+     * Removes all times reached by the given frame.
+     *
+     * @param time the presentation time of a frame (in nanoseconds)
+     *
+     * @return true if the frame should be a key frame
+     */
+    final boolean poll(long time) {
+        int count = 0;
+        while (count < mSize && mTimes[count] <= time) {
+            count++;
+        }
+        if (count == 0) {
+            return false;
+        }
+        mSize -= count;
+        System.arraycopy(mTimes, count, mTimes, 0, mSize);
+        return true;
+    }
+
+    /** @return the number of pending key frames */
+    final int size() {
+        return mSize;
+    }
+}
@@ -0,0 +1,137 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import android.support.annotation.NonNull;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * Measures the glass-to-bitstream latency of frames.
+ * <p>
+ * The capture time of each submitted frame is kept by its presentation time
+ * until the encoded sample of the frame comes out of the encoder. The sample is matched
+ * to the latest frame not after it, since the surface may stamp the frame a bit later.
+ * The pending frames are kept in a fixed ring, so nothing is allocated per frame.
+ * Frames never coming out (e.g. dropped by the codec) are overwritten.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+final class LatencyMeter {
+
+    /** The unknown time. */
+    static final long UNKNOWN = -1;
+
+    /** The max number of pending frames. */
+    private static final int SLOTS = 64;
+
+    /** The time source. */
+    @NonNull
+    private final MpegEncoder.Clock mClock;
+
+    /** The presentation times of pending frames (in microseconds). */
+    @NonNull
+    private final long[] mTimes = new long[SLOTS];
+    /** The capture times of pending frames (in nanoseconds). */
+    @NonNull
+    private final long[] mCaptures = new long[SLOTS];
+
+    /** The next slot. */
+    private int mHead = 0;
+
+    /** The number of measured frames. */
+    private long mCount = 0;
+    /** The total latency (in nanoseconds). */
+    private long mTotal = 0;
+    /** The latency of the last frame (in nanoseconds). */
+    private long mLast = 0;
+    /** The max latency (in nanoseconds). */
+    private long mMax = 0;
+
+    /**
+     * Constructs a new {@link LatencyMeter}.
+     *
+     * @param clock the time source of capture times
+     */
+    LatencyMeter(@NonNull MpegEncoder.Clock clock) {
+        mClock = clock;
+        for (int i = 0; i < SLOTS; i++) {
+            mTimes[i] = UNKNOWN;
+        }
+    }
+
+    /**
+     * Registers the submitted frame.
+     *
+     * @param presentationTime the presentation time (in nanoseconds)
+     * @param captureTime the capture time (in nanoseconds) or {@link #UNKNOWN} for now
+     */
+    final void onFrame(long presentationTime, long captureTime) {
+        mTimes[mHead] = presentationTime / 1000;
+        mCaptures[mHead] = captureTime != UNKNOWN ? captureTime : mClock.nanoTime();
+        mHead = (mHead + 1) % SLOTS;
+    }
+
+    /**
+     * Measures the frame of the encoded sample.
+     *
+     * @param presentationTime the presentation time of the sample (in microseconds)
+     * @return the latency (in nanoseconds) or {@link #UNKNOWN} if the frame isn't registered
+     */
+    final long onSample(long presentationTime) {
+        int found = -1;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            final long time = mTimes[slot];
+            if (time != UNKNOWN && time <= presentationTime &&
+                    (found == -1 || time > mTimes[found])) {
+                found = slot;
+            }
+        }
+        if (found == -1) {
+            return UNKNOWN;
+        }
+        mTimes[found] = UNKNOWN;
+        mLast = Math.max(0, mClock.nanoTime() - mCaptures[found]);
+        mMax = Math.max(mMax, mLast);
+        mTotal += mLast;
+        mCount++;
+        return mLast;
+    }
+
+    /**
+     * @param presentationTime the presentation time of the frame (in nanoseconds)
+     * @return true if the frame is registered and its sample hasn't come out yet
+     */
+    final boolean isPending(long presentationTime) {
+        final long time = presentationTime / 1000;
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if (mTimes[slot] == time) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** @return the number of measured frames */
+    final long getCount() {
+        return mCount;
+    }
+
+    /** @return the latency of the last frame (in nanoseconds) */
+    final long getLast() {
+        return mLast;
+    }
+
+    /** @return the average latency (in nanoseconds) */
+    final long getAverage() {
+        return mCount != 0 ? mTotal / mCount : 0;
+    }
+
+    /** @return the max latency (in nanoseconds) */
+    final long getMax() {
+        return mMax;
+    }
+}
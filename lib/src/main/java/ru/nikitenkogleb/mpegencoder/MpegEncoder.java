@@ -1,20 +1,33 @@
 package ru.nikitenkogleb.mpegencoder;
 
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
 import android.graphics.PointF;
+import android.graphics.Rect;
+import android.graphics.SurfaceTexture;
 import android.media.MediaCodec;
 import android.media.MediaCodecInfo;
 import android.media.MediaFormat;
 import android.media.MediaMuxer;
+import android.os.Build;
+import android.os.Bundle;
 import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RequiresApi;
+import android.support.annotation.StringDef;
 import android.util.Log;
+import android.util.Range;
 import android.view.Surface;
 
 import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 import proguard.annotation.Keep;
 import proguard.annotation.KeepPublicClassMembers;
@@ -41,18 +54,51 @@ public final class MpegEncoder implements Closeable {
     private static final boolean WARNINGS =
             BuildConfig.DEBUG || Log.isLoggable(TAG, Log.WARN);
 
-    /** H.264 Advanced Video Coding. */
-    private static final String MIME_TYPE = "video/avc";
+    /** The bitrate factor of HEVC and VP9 relative to AVC at equal quality. */
+    private static final float EFFICIENT_CODEC_FACTOR = 0.66f;
 
     /** The encoder data waiting timeout. */
     private static final int TIMEOUT_ENCODER_WAIT = 1000;
 
+    /** The part of the frame interval to wait for the sample of the low-latency frame. */
+    private static final int FRAME_WAIT_DIVIDER = 2;
+
     /** No output buffer. */
     private static final int INFO_NO_OUTPUT_AVAILABLE_YET = -4;
 
     /** The calc bitrate factor. */
     private static final float FACTOR = 0.07f;
 
+    /** The not specified parameter. */
+    private static final int NOT_SET = -1;
+
+    /** The quality key of constant-quality mode ({@code MediaFormat.KEY_QUALITY}, API28). */
+    private static final String KEY_QUALITY = "quality";
+    /** The min QP key ({@code MediaFormat.KEY_VIDEO_QP_MIN}, API31). */
+    private static final String KEY_VIDEO_QP_MIN = "video-qp-min";
+    /** The max QP key ({@code MediaFormat.KEY_VIDEO_QP_MAX}, API31). */
+    private static final String KEY_VIDEO_QP_MAX = "video-qp-max";
+    /** The quality range method ({@code EncoderCapabilities.getQualityRange()}, API28). */
+    private static final String METHOD_QUALITY_RANGE = "getQualityRange";
+    /** The first API level with {@link #KEY_QUALITY}. */
+    private static final int API_QUALITY = 28;
+    /** The first API level with QP bounds. */
+    private static final int API_QP = 31;
+
+    /** The low-latency key ({@code MediaFormat.KEY_LOW_LATENCY}, API30). */
+    private static final String KEY_LOW_LATENCY = "low-latency";
+    /** The max B-frames key ({@code MediaFormat.KEY_MAX_B_FRAMES}, API29). */
+    private static final String KEY_MAX_B_FRAMES = "max-bframes";
+    /** The first API level with {@link #KEY_MAX_B_FRAMES}. */
+    private static final int API_MAX_B_FRAMES = 29;
+    /** The first API level with {@link #KEY_LOW_LATENCY}. */
+    private static final int API_LOW_LATENCY = 30;
+    /** The real-time priority of the codec. */
+    private static final int PRIORITY_REAL_TIME = 0;
+
+    /** The default max latency of real-time frames (in milliseconds). */
+    private static final int DEFAULT_MAX_LATENCY = 250;
+
     /** The media codec instance. */
     @NonNull
     private final MediaCodec mEncoder;
@@ -61,8 +107,16 @@ public final class MpegEncoder implements Closeable {
     @NonNull
     private final Surface mSurface;
 
-    /** The input surface. */
-    @NonNull
+    /** The input buffer or null for other inputs. */
+    @Nullable
+    private final ByteBuffer mInputBuffer;
+
+    /** The pool of the input buffer or null if it's owned by the caller. */
+    @Nullable
+    private final BufferPool mInputPool;
+
+    /** The input surface or null for the canvas input. */
+    @Nullable
     private final InputSurface mInputSurface;
 
     /** The media muxer. */
@@ -77,48 +131,210 @@ public final class MpegEncoder implements Closeable {
     @NonNull
     private final ByteBuffer[] mOutputBuffers;
 
-    /** The frame rate of the video. */
-    private final int mFrameRate;
+    /** The frame timestamps. */
+    @NonNull
+    private final FramePacer mPacer;
+
+    /** The mime type of the encoder. */
+    @NonNull
+    private final String mMime;
+
+    /** The bitrate controller. */
+    @Nullable
+    private final BitRateController mController;
+
+    /** The renderer or null. */
+    @Nullable
+    private final Renderer mRenderer;
+
+    /** The output listener or null. */
+    @Nullable
+    private final Output mOutput;
+
+    /** The ring capacity of the muxer writer thread or 0 to write on the drain thread. */
+    private final int mWriteBuffer;
+
+    /** The muxer writer thread or null. */
+    @Nullable
+    private MuxerWriter mWriter = null;
 
-    /** The frame index. */
-    private int mFrameIndex = 0;
+    /** The output timeout of the drain (in microseconds). */
+    private final int mDrainTimeout;
+
+    /** The wait for the sample of the submitted frame (in microseconds) or 0. */
+    private final long mFrameWait;
+
+    /** The glass-to-bitstream latency. */
+    @NonNull
+    private final LatencyMeter mLatency;
+
+    /** The capture time of the locked canvas frame. */
+    private long mCanvasCapture = FramePacer.SKIP;
+
+    /** The current bitrate. */
+    private int mBitRate;
+
+    /** The bitrate range supported by the encoder. */
+    private final int mMinBitRate, mMaxBitRate;
+
+    /** The number of encoded bytes. */
+    private long mEncodedBytes = 0;
+
+    /** The scheduled key frames. */
+    @NonNull
+    private final KeyFrameSchedule mKeyFrames = new KeyFrameSchedule();
+
+    /** The key frame was requested. */
+    private boolean mKeyFrameRequested = false;
+
+    /** The number of encoded key frames. */
+    private long mKeyFrameCount = 0;
 
     /** Video Track Id. */
     private int mTrackId = -1;
 
+    /** The pool of stopped encoders or null. */
+    @Nullable
+    private final CodecPool mPool;
+
     /** The object was released. */
     private boolean mReleased;
 
-    /** Constructs a new {@link MpegEncoder} */
-    private MpegEncoder(@NonNull Builder builder, @NonNull MediaFormat format,
-            @NonNull String path) throws IOException {
+    /**
+     * Constructs a new {@link MpegEncoder}.
+     * The codec is released or recycled to the pool if the construction fails.
+     */
+    private MpegEncoder(@NonNull Builder builder, @NonNull String path, int width, int height,
+            @Nullable CodecPool pool) throws IOException {
         checkState();
 
-        mFrameRate = format.getInteger(MediaFormat.KEY_FRAME_RATE);
+        if (builder.mCanvas && (!builder.mTransform.isIdentity() ||
+                !builder.mOverlays.isEmpty())) {
+            throw new IllegalStateException("The canvas input has no transform and overlays");
+        }
+        if (builder.mCanvas && builder.mCaptureInterval != 0) {
+            throw new IllegalStateException("The canvas input has no time-lapse");
+        }
+        // The finalizer has nothing to release until the construction completes
+        mReleased = true;
+
+        mInputPool = builder.mInputPool;
+        mInputBuffer = mInputPool != null ?
+                mInputPool.acquire(builder.width * builder.height * GLTools.RGB565_SIZE_BYTES) :
+                builder.inputBuffer;
+
+        final MediaFormat format = builder.newFormat(width, height);
+        final Surface[] surface = new Surface[1];
+        mPool = pool;
+        try {
+            mEncoder = createEncoder(format, builder, pool, surface);
+        } catch (IOException | RuntimeException exception) {
+            releaseInputBuffer();
+            throw exception;
+        }
+        mSurface = surface[0];
+        mMime = format.getString(MediaFormat.KEY_MIME);
+
+        InputSurface input = null;
+        MediaMuxer muxer = null;
+        try {
+            input = builder.mCanvas ? null :
+                    newInputSurface(builder, format, mSurface, mInputBuffer);
+            final int outputFormat = getOutputFormat(mMime);
+            muxer = new MediaMuxer(path, outputFormat);
+            if (outputFormat == MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4) {
+                if (builder.mLocation != null) {
+                    muxer.setLocation(builder.mLocation.x, builder.mLocation.y);
+                }
+                if (builder.mOrientation != 0) {
+                    muxer.setOrientationHint(builder.mOrientation);
+                }
+            }
+        } catch (IOException | RuntimeException exception) {
+            if (muxer != null) {
+                muxer.release();
+            }
+            if (input != null) {
+                input.close();
+            }
+            try {
+                mEncoder.stop();
+            } finally {
+                release(mEncoder, mSurface, pool);
+                releaseInputBuffer();
+            }
+            throw exception;
+        }
+        mInputSurface = input;
+        mMuxer = muxer;
+        mOutputBuffers = getOutputBuffers(mEncoder);
+
+        final Clock clock = builder.mCanvas ? Clock.SYSTEM : builder.mClock;
+        mPacer = new FramePacer(clock,
+                format.getInteger(MediaFormat.KEY_FRAME_RATE), builder.mMaxLatency * 1000000L,
+                builder.mCaptureInterval * 1000000L);
+        mLatency = new LatencyMeter(clock != null ? clock : Clock.SYSTEM);
+        mDrainTimeout = builder.mLowLatency ? 0 : TIMEOUT_ENCODER_WAIT;
+        mFrameWait = builder.mLowLatency ?
+                1000000L / format.getInteger(MediaFormat.KEY_FRAME_RATE) / FRAME_WAIT_DIVIDER : 0;
 
-        mEncoder = MediaCodec.createEncoderByType(format.getString(MediaFormat.KEY_MIME));
-        mEncoder.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+        mBitRate = format.getInteger(MediaFormat.KEY_BIT_RATE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            final Range<Integer> range = getBitRateRange(mEncoder, mMime);
+            mMinBitRate = range.getLower();
+            mMaxBitRate = range.getUpper();
+        } else {
+            mMinBitRate = 1;
+            mMaxBitRate = Integer.MAX_VALUE;
+        }
+        mController = builder.mController;
+        mRenderer = builder.mRenderer;
+        mOutput = builder.mOutput;
+        mWriteBuffer = builder.mWriteBuffer;
+        mReleased = false;
+        for (long time : builder.mKeyFrames) {
+            scheduleKeyFrame(time);
+        }
+    }
 
-        mSurface = mEncoder.createInputSurface();
-        mInputSurface =
+    /**
+     * @param builder the encoder builder
+     * @param format the output format
+     * @param surface the encoder surface
+     * @param input the input buffer or null
+     *
+     * @return the GL input surface
+     */
+    @NonNull
+    private static InputSurface newInputSurface(@NonNull Builder builder,
+            @NonNull MediaFormat format, @NonNull Surface surface, @Nullable ByteBuffer input) {
+        final InputSurface.Builder result =
                 InputSurface.create (
-                        mSurface,
-                        builder.inputBuffer,
+                        surface,
+                        input,
                         builder.width,
                         builder.height
                 )
-                        .autoSwap()
-                        .build();
-
-        mMuxer = new MediaMuxer(path, MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
-        if (builder.mLocation != null) {
-            mMuxer.setLocation(builder.mLocation.x, builder.mLocation.y);
+                        .autoSwap();
+        if (builder.mExternal) {
+            result.external();
         }
-        if (builder.mOrientation != 0) {
-            mMuxer.setOrientationHint(builder.mOrientation);
+        if (builder.mCacheDir != null) {
+            result.cache(builder.mCacheDir);
         }
-
-        mOutputBuffers = start();
+        if (!builder.mTransform.isIdentity()) {
+            final float[] mvp = new float[Transform.MATRIX_SIZE];
+            final float[] st = new float[Transform.MATRIX_SIZE];
+            final boolean clear = builder.mTransform.compute(builder.width, builder.height,
+                    format.getInteger(MediaFormat.KEY_WIDTH),
+                    format.getInteger(MediaFormat.KEY_HEIGHT), mvp, st);
+            result.transform(mvp, st, clear);
+        }
+        if (!builder.mOverlays.isEmpty()) {
+            result.overlays(builder.mOverlays, format.getInteger(MediaFormat.KEY_WIDTH),
+                    format.getInteger(MediaFormat.KEY_HEIGHT));
+        }
+        return result.build();
     }
 
     /** {@inheritDoc} */
@@ -126,22 +342,34 @@ public final class MpegEncoder implements Closeable {
     public final void close() {
         checkState();
         stop();
+        if (mOutput != null) {
+            mOutput.onEnd();
+        }
+        if (mWriter != null) {
+            mWriter.close();
+            mWriter = null;
+        }
         if (mTrackId != -1) {
             mTrackId = -1;
             mMuxer.stop();
         }
         mMuxer.release();
-        mInputSurface.close();
-        mSurface.release();
-        mEncoder.release();
+        if (mInputSurface != null) {
+            mInputSurface.close();
+        }
+        release(mEncoder, mSurface, mPool);
+        releaseInputBuffer();
         mReleased = true;
     }
 
-    /** Start encoding. */
+    /**
+     * @param codec the started encoder
+     * @return the output buffers
+     */
+    @NonNull
     @SuppressWarnings("deprecation")
-    private ByteBuffer[] start() {
-        mEncoder.start();
-        return mEncoder.getOutputBuffers();
+    private static ByteBuffer[] getOutputBuffers(@NonNull MediaCodec codec) {
+        return codec.getOutputBuffers();
     }
 
     /** Stop encoding. */
@@ -155,11 +383,385 @@ public final class MpegEncoder implements Closeable {
      * Called to draw the current frame.
      * <p>
      * This method is responsible for drawing the current frame.
+     * In the real-time mode the frame is stamped by the clock.
+     * With the {@link Renderer} the frame is drawn by its callback.
+     *
+     * @return false if the frame was decimated or dropped
+     */
+    public final boolean draw() {
+        drainEncoder(false);
+        return drawFrame(mPacer.next(), null, null);
+    }
+
+    /**
+     * Called to draw the current frame captured at the given time.
+     * <p>
+     * In the real-time mode the capture time must be in the time-base of the clock,
+     * frames older than the max latency are dropped.
+     *
+     * @param captureTime the capture time of the frame (in nanoseconds)
+     *
+     * @return false if the frame was decimated or dropped
+     */
+    public final boolean draw(long captureTime) {
+        drainEncoder(false);
+        return drawFrame(mPacer.next(captureTime), null, null);
+    }
+
+    /**
+     * Called to draw the current frame changed only in the dirty region.
+     * <p>
+     * Only the dirty region of the input buffer is uploaded to the GPU,
+     * the rest of the frame is kept from the previous one. The whole first frame
+     * is uploaded anyway. Multiple changed regions can be joined by {@link Rect#union(Rect)}.
+     *
+     * @param dirty the changed region in input pixels
+     *
+     * @return false if the frame was decimated or dropped
+     */
+    public final boolean draw(@NonNull Rect dirty) {
+        drainEncoder(false);
+        return drawFrame(mPacer.next(), null, dirty);
+    }
+
+    /**
+     * Called to draw the current frame changed only in the dirty region,
+     * captured at the given time.
+     *
+     * @param dirty the changed region in input pixels
+     * @param captureTime the capture time of the frame (in nanoseconds)
+     *
+     * @return false if the frame was decimated or dropped
+     */
+    public final boolean draw(@NonNull Rect dirty, long captureTime) {
+        drainEncoder(false);
+        return drawFrame(mPacer.next(captureTime), null, dirty);
+    }
+
+    /**
+     * Called to draw the bitmap as the current frame.
+     * <p>
+     * The bitmap is uploaded straight to the GPU, skipping the input buffer copy.
+     * It must have the size of the input and may be reused right after the call.
+     *
+     * @param bitmap the frame
+     *
+     * @return false if the frame was decimated or dropped
+     */
+    public final boolean draw(@NonNull Bitmap bitmap) {
+        drainEncoder(false);
+        return drawFrame(mPacer.next(), bitmap, null);
+    }
+
+    /**
+     * Called to draw the bitmap as the current frame captured at the given time.
+     *
+     * @param bitmap the frame
+     * @param captureTime the capture time of the frame (in nanoseconds)
+     *
+     * @return false if the frame was decimated or dropped
+     */
+    public final boolean draw(@NonNull Bitmap bitmap, long captureTime) {
+        drainEncoder(false);
+        return drawFrame(mPacer.next(captureTime), bitmap, null);
+    }
+
+    /**
+     * Submits the current frame to the encoder.
+     *
+     * @param presentationTime the presentation time (in nanoseconds)
+     * @param bitmap the frame or null to draw the input buffer
+     * @param dirty the changed region of the input buffer or null for the whole frame
+     *
+     * @return false if the frame was skipped
+     */
+    private boolean drawFrame(long presentationTime, @Nullable Bitmap bitmap,
+            @Nullable Rect dirty) {
+        final InputSurface surface = getGLSurface();
+        if (presentationTime == FramePacer.SKIP) {
+            return false;
+        }
+        mLatency.onFrame(presentationTime, mPacer.getCaptureTime());
+        requestSyncFrame(presentationTime);
+        if (bitmap != null) {
+            surface.draw(bitmap, presentationTime);
+        } else if (mRenderer != null) {
+            surface.draw(mRenderer, presentationTime);
+        } else if (dirty != null) {
+            surface.draw(dirty, presentationTime);
+        } else {
+            surface.draw(presentationTime);
+        }
+        awaitSample(presentationTime);
+        return true;
+    }
+
+    /**
+     * Drains the sample of the submitted frame in the low-latency mode,
+     * so it's written right away instead of at the next frame.
+     * The wait is bounded by a part of the frame interval.
+     *
+     * @param presentationTime the presentation time of the frame (in nanoseconds)
+     */
+    private void awaitSample(long presentationTime) {
+        if (mFrameWait == 0) {
+            return;
+        }
+        final long deadline = Clock.SYSTEM.nanoTime() / 1000 + mFrameWait;
+        drainEncoder(false);
+        long left;
+        while (mLatency.isPending(presentationTime) &&
+                (left = deadline - Clock.SYSTEM.nanoTime() / 1000) > 0) {
+            drainEncoder(false, (int) Math.min(left, TIMEOUT_ENCODER_WAIT));
+        }
+    }
+
+    /**
+     * Requests the sync frame if it's scheduled or requested.
+     *
+     * @param presentationTime the presentation time of the next frame (in nanoseconds)
      */
-    public final void draw() {
+    private void requestSyncFrame(long presentationTime) {
+        if (mKeyFrames.poll(presentationTime)) {
+            mKeyFrameRequested = true;
+        }
+        if (mKeyFrameRequested) {
+            mKeyFrameRequested = false;
+            final Bundle params = new Bundle();
+            params.putInt(MediaCodec.PARAMETER_KEY_REQUEST_SYNC_FRAME, 0);
+            mEncoder.setParameters(params);
+        }
+    }
+
+    /** @return the GL input surface */
+    @NonNull
+    private InputSurface getGLSurface() {
+        if (mInputSurface == null) {
+            throw new IllegalStateException("The canvas input");
+        }
+        return mInputSurface;
+    }
+
+    /**
+     * Locks the hardware-accelerated canvas to draw the next frame of the canvas input.
+     * <p>
+     * The frame is timestamped by the system monotonic clock when it's posted,
+     * so the canvas input is always real-time. The encoded timestamps are rebased
+     * to the first frame, like the timestamps of the other inputs.
+     *
+     * @return the canvas or null if the frame was decimated
+     */
+    @Nullable
+    @RequiresApi(Build.VERSION_CODES.M)
+    public final Canvas lockCanvas() {
+        checkState();
+        checkCanvas();
         drainEncoder(false);
-        final long presentationTime = mFrameIndex++ * 1000000000L / mFrameRate;
-        mInputSurface.draw(presentationTime);
+        final long presentationTime = mPacer.next();
+        if (presentationTime == FramePacer.SKIP) {
+            return null;
+        }
+        mCanvasCapture = mPacer.getCaptureTime();
+        requestSyncFrame(presentationTime);
+        return mSurface.lockHardwareCanvas();
+    }
+
+    /**
+     * Posts the frame drawn to the canvas to the encoder.
+     *
+     * @param canvas the canvas locked by {@link #lockCanvas()}
+     */
+    public final void unlockCanvasAndPost(@NonNull Canvas canvas) {
+        checkState();
+        checkCanvas();
+        // The surface stamps the frame a bit later, the sample is matched to the latest frame
+        final long presentationTime = Clock.SYSTEM.nanoTime() - mPacer.getBaseTime();
+        mLatency.onFrame(presentationTime, mCanvasCapture);
+        mSurface.unlockCanvasAndPost(canvas);
+        awaitSample(presentationTime);
+    }
+
+    /** Checks the canvas input. */
+    private void checkCanvas() {
+        if (mInputSurface != null) {
+            throw new IllegalStateException("Not the canvas input");
+        }
+    }
+
+    /**
+     * Waits for the next frame rendered to {@link #getInputSurface()} and latches it,
+     * so that the following {@link #draw()} encodes it.
+     * <p>
+     * The frame callback is delivered on the looper of the thread created the encoder,
+     * or on the main looper, so that looper must not be blocked by this call.
+     *
+     * @param timeoutMs the timeout (in milliseconds)
+     * @return false if no frame has come in time
+     */
+    public final boolean awaitFrame(long timeoutMs) {
+        checkState();
+        return getGLSurface().awaitFrame(timeoutMs);
+    }
+
+    /**
+     * The timestamp of the latched frame is set by the producer,
+     * for example it's the capture time of camera frames in the monotonic time-base,
+     * suitable for {@link #draw(long)} in the real-time mode.
+     *
+     * @return the timestamp of the latched frame (in nanoseconds)
+     */
+    public final long getFrameTimestamp() {
+        return getGLSurface().getFrameTimestamp();
+    }
+
+    /**
+     * @return the input buffer to fill the frames of the {@link #draw()} in, or null for
+     * other inputs. The pooled buffer must not be used after {@link #close()}.
+     */
+    @Nullable
+    public final ByteBuffer getInputBuffer() {
+        return mInputBuffer;
+    }
+
+    /** Returns the pooled input buffer to its pool. */
+    private void releaseInputBuffer() {
+        if (mInputPool != null && mInputBuffer != null) {
+            mInputPool.release(mInputBuffer);
+        }
+    }
+
+    /** @return the surface to render frames of the external input to */
+    @NonNull
+    public final Surface getInputSurface() {
+        return getGLSurface().getExternalSurface();
+    }
+
+    /** @return the surface texture of the external input */
+    @NonNull
+    public final SurfaceTexture getSurfaceTexture() {
+        return getGLSurface().getSurfaceTexture();
+    }
+
+    /**
+     * The GL calls of the input surface are counted to measure the per-frame overhead,
+     * the calls of the {@link Renderer} are not counted.
+     *
+     * @return the number of GL calls of the last frame or 0 for the canvas input
+     */
+    public final int getGLCalls() {
+        return mInputSurface != null ? mInputSurface.getGLCalls() : 0;
+    }
+
+    /** @return the number of redundant GL calls skipped in the last frame */
+    public final int getSkippedGLCalls() {
+        return mInputSurface != null ? mInputSurface.getSkippedGLCalls() : 0;
+    }
+
+    /** @return the number of frames submitted to the encoder */
+    public final long getFrameCount() {
+        return mPacer.getFrames();
+    }
+
+    /** @return the number of frames decimated because of the frame-rate */
+    public final long getDecimatedFrames() {
+        return mPacer.getDecimated();
+    }
+
+    /** @return the number of frames dropped because of the latency */
+    public final long getDroppedFrames() {
+        return mPacer.getDropped();
+    }
+
+    /** Requests the next drawn frame to be a key frame. */
+    public final void requestKeyFrame() {
+        checkState();
+        mKeyFrameRequested = true;
+    }
+
+    /**
+     * Schedules a key frame.
+     * <p>
+     * The first frame with presentation time reaching the given time becomes a key frame.
+     *
+     * @param timeMs the presentation time in milliseconds
+     */
+    public final void scheduleKeyFrame(long timeMs) {
+        checkState();
+        mKeyFrames.add(timeMs * 1000000L);
+    }
+
+    /** @return the mime type of the encoder */
+    @NonNull
+    @Codec
+    public final String getMime() {
+        return mMime;
+    }
+
+    /** @return the name of the encoder */
+    @NonNull
+    public final String getCodecName() {
+        return mEncoder.getName();
+    }
+
+    /** @return the number of encoded key frames */
+    public final long getKeyFrameCount() {
+        return mKeyFrameCount;
+    }
+
+    /**
+     * The glass-to-bitstream latency is the time from the capture of the frame
+     * to its encoded sample. The capture time is taken from the real-time clock
+     * or the frame is captured when it's drawn.
+     *
+     * @return the latency of the last encoded frame (in microseconds)
+     */
+    public final long getFrameLatency() {
+        return mLatency.getLast() / 1000;
+    }
+
+    /** @return the average glass-to-bitstream latency of frames (in microseconds) */
+    public final long getAverageFrameLatency() {
+        return mLatency.getAverage() / 1000;
+    }
+
+    /** @return the max glass-to-bitstream latency of frames (in microseconds) */
+    public final long getMaxFrameLatency() {
+        return mLatency.getMax() / 1000;
+    }
+
+    /** @return the number of encoded bytes */
+    public final long getEncodedBytes() {
+        return mEncodedBytes;
+    }
+
+    /** @return the current bitrate */
+    public final int getBitRate() {
+        return mBitRate;
+    }
+
+    /**
+     * Passes the encoded sample to the bitrate controller.
+     *
+     * @param presentationTime the presentation time of the sample (in microseconds)
+     * @param size the size of the sample in bytes
+     */
+    private void adaptBitRate(long presentationTime, int size) {
+        mEncodedBytes += size;
+        if (mController == null) {
+            return;
+        }
+        int bitRate = mController.onSample(presentationTime, size, mBitRate);
+        if (bitRate <= 0) {
+            return;
+        }
+        bitRate = Math.max(mMinBitRate, Math.min(mMaxBitRate, bitRate));
+        if (bitRate != mBitRate) {
+            final Bundle params = new Bundle();
+            params.putInt(MediaCodec.PARAMETER_KEY_VIDEO_BITRATE, bitRate);
+            mEncoder.setParameters(params);
+            //logv("Bitrate changed: " + mBitRate + " -> " + bitRate);
+            mBitRate = bitRate;
+        }
     }
 
     /**
@@ -169,8 +771,18 @@ public final class MpegEncoder implements Closeable {
      * is set, we send EOS to the encoder, and then iterate until we see EOS on the output.
      * Calling this with endOfStream set should be done once, right before stopping the muxer.
      */
-    @SuppressWarnings("deprecation")
     private void drainEncoder(boolean eos) {
+        drainEncoder(eos, mDrainTimeout);
+    }
+
+    /**
+     * Extracts all pending data from the encoder.
+     *
+     * @param eos the end of stream
+     * @param timeout the output timeout (in microseconds)
+     */
+    @SuppressWarnings("deprecation")
+    private void drainEncoder(boolean eos, int timeout) {
         checkState();
 
         //logv("Drain encoder: " + eos);
@@ -180,7 +792,8 @@ public final class MpegEncoder implements Closeable {
         }
 
         int encoderStatus;
-        while ((encoderStatus = getEncoderStatus(eos)) != MediaCodec.INFO_TRY_AGAIN_LATER) {
+        while ((encoderStatus = getEncoderStatus(eos, timeout)) !=
+                MediaCodec.INFO_TRY_AGAIN_LATER) {
             switch (encoderStatus) {
                 case MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED:
                     throw new RuntimeException("Output buffers changed twice");
@@ -192,7 +805,17 @@ public final class MpegEncoder implements Closeable {
                     final MediaFormat format = mEncoder.getOutputFormat();
                     //logv("Encoder output format changed: " + format);
                     mTrackId = mMuxer.addTrack(format);
+                    if (mOutput != null) {
+                        mOutput.onFormat(format);
+                    }
                     mMuxer.start();
+                    if (mWriteBuffer > 0) {
+                        mWriter = MuxerWriter.tryCreate(mMuxer, mTrackId, mWriteBuffer);
+                        if (mWriter == null) {
+                            logw("The write buffer exceeds the memory budget, " +
+                                    "samples are written directly");
+                        }
+                    }
                     break;
                 default:
                     if (encoderStatus >= 0) {
@@ -208,6 +831,10 @@ public final class MpegEncoder implements Closeable {
                             //logv("ignoring BUFFER_FLAG_CODEC_CONFIG");
                             mBufferInfo.size = 0;
                         }
+                        if (mBufferInfo.size != 0 && mInputSurface == null) {
+                            // The canvas frames are stamped by the system clock
+                            mBufferInfo.presentationTimeUs -= mPacer.getBaseTime() / 1000;
+                        }
                         if (mBufferInfo.size != 0) {
                             if (mTrackId == -1) {
                                 throw new RuntimeException("Muxer hasn't started");
@@ -215,8 +842,21 @@ public final class MpegEncoder implements Closeable {
                             // Adjust the ByteBuffer values to match BufferInfo (not needed?)
                             encodedData.position(mBufferInfo.offset);
                             encodedData.limit(mBufferInfo.offset + mBufferInfo.size);
-                            mMuxer.writeSampleData(mTrackId, encodedData, mBufferInfo);
+                            if (mWriter != null) {
+                                mWriter.write(encodedData, mBufferInfo);
+                            } else {
+                                mMuxer.writeSampleData(mTrackId, encodedData, mBufferInfo);
+                            }
+                            if (mOutput != null) {
+                                encodedData.position(mBufferInfo.offset);
+                                mOutput.onSample(encodedData, mBufferInfo);
+                            }
                             //logv("Sent " + mBufferInfo.size + " bytes to muxer");
+                            mLatency.onSample(mBufferInfo.presentationTimeUs);
+                            adaptBitRate(mBufferInfo.presentationTimeUs, mBufferInfo.size);
+                            if ((mBufferInfo.flags & MediaCodec.BUFFER_FLAG_SYNC_FRAME) != 0) {
+                                mKeyFrameCount++;
+                            }
                         }
                         mEncoder.releaseOutputBuffer(encoderStatus, false);
                     } else {
@@ -231,12 +871,13 @@ public final class MpegEncoder implements Closeable {
     }
 
     /** @return true when wile should be handled */
-    private int getEncoderStatus(boolean endOfStream) {
+    private int getEncoderStatus(boolean endOfStream, int timeout) {
         if ((mBufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
             //logv(endOfStream ? "End of stream reached" : "reached end of stream unexpectedly");
             return MediaCodec.INFO_TRY_AGAIN_LATER;
         } else {
-            final int status = mEncoder.dequeueOutputBuffer(mBufferInfo, TIMEOUT_ENCODER_WAIT);
+            final int status = mEncoder.dequeueOutputBuffer(mBufferInfo,
+                    endOfStream ? TIMEOUT_ENCODER_WAIT : timeout);
             if (status == MediaCodec.INFO_TRY_AGAIN_LATER) {
                 if (endOfStream) {
                     //logv("No output available, spinning to await EOS");
@@ -278,15 +919,322 @@ public final class MpegEncoder implements Closeable {
         return Math.round(area * rate * motion * FACTOR);
     }
 
-    /** Check current state. */
-    private void checkState() {
-        if (mReleased) {
-            throw new IllegalStateException();
+    /**
+     * Creates, configures and starts the best encoder of the most preferred codec
+     * found by {@link EncoderProbe}. If it can't be created, configured or started
+     * (the instances may be exhausted), the next ranked encoder is tried.
+     *
+     * @param format the media format, the codec parameters are set to it
+     * @param builder the encoder parameters
+     * @param pool the pool of stopped encoders or null
+     * @param surface the input surface of the encoder is returned in the first element
+     *
+     * @return the started encoder
+     */
+    @NonNull
+    private static MediaCodec createEncoder(@NonNull MediaFormat format, @NonNull Builder builder,
+            @Nullable CodecPool pool, @NonNull Surface[] surface) throws IOException {
+        final int width = format.getInteger(MediaFormat.KEY_WIDTH);
+        final int height = format.getInteger(MediaFormat.KEY_HEIGHT);
+        for (EncoderInfo info : builder.findEncoders(width, height)) {
+            final MediaFormat attempt = builder.newFormat(width, height);
+            try {
+                final MediaCodec result = startEncoder(attempt, info.getMime(), builder,
+                        pool != null ? pool.acquire(info.getName()) :
+                                MediaCodec.createByCodecName(info.getName()), surface);
+                copyFormat(attempt, format);
+                return result;
+            } catch (IOException | IllegalArgumentException | IllegalStateException exception) {
+                // The instances may be exhausted, fall back to the next ranked encoder
+                logw("Unable to start " + info.getName() + ": " + exception);
+            }
         }
+        logw("No suitable encoder found for " + format);
+        final MediaFormat attempt = builder.newFormat(width, height);
+        final MediaCodec result = startEncoder(attempt, Codec.AVC, builder,
+                MediaCodec.createEncoderByType(Codec.AVC), surface);
+        copyFormat(attempt, format);
+        return result;
     }
 
-    /** Log verbose. */
-    private static void logv(@NonNull String msg) {
+    /**
+     * Configures and starts the encoder, it's released if that fails.
+     *
+     * @param format the media format, the codec parameters are set to it
+     * @param mime the mime type of the codec
+     * @param builder the encoder parameters
+     * @param codec the encoder
+     * @param surface the input surface of the encoder is returned in the first element
+     *
+     * @return the started encoder
+     */
+    @NonNull
+    private static MediaCodec startEncoder(@NonNull MediaFormat format, @NonNull String mime,
+            @NonNull Builder builder, @NonNull MediaCodec codec, @NonNull Surface[] surface) {
+        Surface input = null;
+        try {
+            setCodec(format, mime, builder);
+            setRateControl(codec, format, builder);
+            if (builder.mLowLatency) {
+                setLowLatency(codec, format);
+            }
+            codec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            input = codec.createInputSurface();
+            codec.start();
+        } catch (RuntimeException exception) {
+            if (input != null) {
+                input.release();
+            }
+            codec.release();
+            throw exception;
+        }
+        surface[0] = input;
+        return codec;
+    }
+
+    /**
+     * Copies the keys set for the started encoder.
+     *
+     * @param source the format of the started encoder
+     * @param target the format to update
+     */
+    private static void copyFormat(@NonNull MediaFormat source, @NonNull MediaFormat target) {
+        target.setString(MediaFormat.KEY_MIME, source.getString(MediaFormat.KEY_MIME));
+        target.setInteger(MediaFormat.KEY_BIT_RATE,
+                source.getInteger(MediaFormat.KEY_BIT_RATE));
+    }
+
+    /**
+     * Releases the stopped encoder or recycles it to the pool.
+     *
+     * @param codec the stopped encoder
+     * @param surface the input surface of the encoder
+     * @param pool the pool of stopped encoders or null
+     */
+    private static void release(@NonNull MediaCodec codec, @NonNull Surface surface,
+            @Nullable CodecPool pool) {
+        surface.release();
+        if (pool != null) {
+            pool.recycle(codec);
+        } else {
+            codec.release();
+        }
+    }
+
+    /**
+     * Sets the codec and its bitrate to the media format.
+     *
+     * @param format the media format
+     * @param mime the mime type of the codec
+     * @param builder the encoder parameters
+     */
+    private static void setCodec(@NonNull MediaFormat format, @NonNull String mime,
+            @NonNull Builder builder) {
+        format.setString(MediaFormat.KEY_MIME, mime);
+        if (builder.mBitRate != NOT_SET) {
+            format.setInteger(MediaFormat.KEY_BIT_RATE, builder.mBitRate);
+        } else {
+            int bitRate = calcBitRate(format.getInteger(MediaFormat.KEY_WIDTH) *
+                    format.getInteger(MediaFormat.KEY_HEIGHT), builder.mFPS, builder.mMotion);
+            if (mime.equals(Codec.HEVC) || mime.equals(Codec.VP9)) {
+                bitRate = Math.round(bitRate * EFFICIENT_CODEC_FACTOR);
+            }
+            format.setInteger(MediaFormat.KEY_BIT_RATE, bitRate);
+        }
+    }
+
+    /**
+     * @param mime the mime type of the codec
+     * @return the output format of {@link MediaMuxer} or {@link #NOT_SET} if unsupported
+     */
+    static int getOutputFormat(@NonNull String mime) {
+        return getOutputFormat(mime, Build.VERSION.SDK_INT);
+    }
+
+    /**
+     * The muxer accepts VP8 from API21, VP9 and HEVC from API24.
+     *
+     * @param mime the mime type of the codec
+     * @param sdk the API level
+     *
+     * @return the output format of {@link MediaMuxer} or {@link #NOT_SET} if unsupported
+     */
+    static int getOutputFormat(@NonNull String mime, int sdk) {
+        if ((mime.equals(Codec.VP9) || mime.equals(Codec.HEVC)) &&
+                sdk < Build.VERSION_CODES.N) {
+            return NOT_SET;
+        }
+        if (mime.equals(Codec.VP8) || mime.equals(Codec.VP9)) {
+            return sdk >= Build.VERSION_CODES.LOLLIPOP ?
+                    MediaMuxer.OutputFormat.MUXER_OUTPUT_WEBM : NOT_SET;
+        } else {
+            return MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4;
+        }
+    }
+
+    /**
+     * Applies the rate-control parameters supported by the codec.
+     *
+     * @param codec the encoder
+     * @param format the media format
+     * @param builder the encoder parameters
+     */
+    private static void setRateControl(@NonNull MediaCodec codec, @NonNull MediaFormat format,
+            @NonNull Builder builder) {
+        int bitRateMode = builder.mBitRateMode;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            bitRateMode = checkRateControl(codec, format, bitRateMode);
+        } else if (bitRateMode != NOT_SET) {
+            logw("Bitrate mode isn't supported below API21");
+            bitRateMode = NOT_SET;
+        }
+        if (bitRateMode != NOT_SET) {
+            format.setInteger(MediaFormat.KEY_BITRATE_MODE, bitRateMode);
+        }
+
+        if (builder.mQuality != NOT_SET) {
+            if (bitRateMode != BitRateMode.CQ) {
+                logw("Quality is ignored without constant-quality mode");
+            } else if (Build.VERSION.SDK_INT < API_QUALITY) {
+                logw("Quality isn't supported below API28");
+            } else {
+                format.setInteger(KEY_QUALITY, checkQuality(codec, format, builder.mQuality));
+            }
+        }
+
+        if (builder.mMinQp != NOT_SET || builder.mMaxQp != NOT_SET) {
+            if (Build.VERSION.SDK_INT >= API_QP) {
+                if (builder.mMinQp != NOT_SET) {
+                    format.setInteger(KEY_VIDEO_QP_MIN, builder.mMinQp);
+                }
+                if (builder.mMaxQp != NOT_SET) {
+                    format.setInteger(KEY_VIDEO_QP_MAX, builder.mMaxQp);
+                }
+            } else {
+                logw("QP bounds aren't supported below API31");
+            }
+        }
+    }
+
+    /**
+     * Applies the low-latency parameters supported by the codec.
+     *
+     * @param codec the encoder
+     * @param format the media format
+     */
+    private static void setLowLatency(@NonNull MediaCodec codec, @NonNull MediaFormat format) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            logw("Low-latency parameters aren't supported below API23");
+            return;
+        }
+        format.setInteger(MediaFormat.KEY_PRIORITY, PRIORITY_REAL_TIME);
+        format.setInteger(MediaFormat.KEY_OPERATING_RATE,
+                format.getInteger(MediaFormat.KEY_FRAME_RATE));
+        if (Build.VERSION.SDK_INT >= API_MAX_B_FRAMES) {
+            format.setInteger(KEY_MAX_B_FRAMES, 0);
+        }
+        if (Build.VERSION.SDK_INT >= API_LOW_LATENCY) {
+            format.setInteger(KEY_LOW_LATENCY, 1);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N_MR1 &&
+                codec.getCodecInfo().getCapabilitiesForType(format.getString(
+                        MediaFormat.KEY_MIME)).isFeatureSupported(
+                        MediaCodecInfo.CodecCapabilities.FEATURE_IntraRefresh)) {
+            // The intra refresh of one second instead of key frames, smooth bitrate
+            format.setInteger(MediaFormat.KEY_INTRA_REFRESH_PERIOD,
+                    format.getInteger(MediaFormat.KEY_FRAME_RATE));
+            format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, -1);
+        }
+    }
+
+    /**
+     * Validates the rate-control parameters against the encoder capabilities.
+     *
+     * @param codec the encoder
+     * @param format the media format, the bitrate is clamped to the supported range
+     * @param bitRateMode the requested bitrate mode
+     *
+     * @return the supported bitrate mode or {@link #NOT_SET}
+     */
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    private static int checkRateControl(@NonNull MediaCodec codec, @NonNull MediaFormat format,
+            int bitRateMode) {
+        final MediaCodecInfo.CodecCapabilities capabilities = codec.getCodecInfo()
+                .getCapabilitiesForType(format.getString(MediaFormat.KEY_MIME));
+
+        final Range<Integer> range =
+                getBitRateRange(codec, format.getString(MediaFormat.KEY_MIME));
+        final int bitRate = format.getInteger(MediaFormat.KEY_BIT_RATE);
+        final int supported = range.clamp(bitRate);
+        if (supported != bitRate) {
+            logw("Bitrate " + bitRate + " is out of " + range);
+            format.setInteger(MediaFormat.KEY_BIT_RATE, supported);
+        }
+
+        if (bitRateMode != NOT_SET &&
+                !capabilities.getEncoderCapabilities().isBitrateModeSupported(bitRateMode)) {
+            logw("Bitrate mode " + bitRateMode + " isn't supported by " + codec.getName());
+            return NOT_SET;
+        }
+        return bitRateMode;
+    }
+
+    /**
+     * @param codec the encoder
+     * @param mime the mime type of the codec
+     *
+     * @return the bitrate range supported by the encoder
+     */
+    @NonNull
+    @RequiresApi(Build.VERSION_CODES.LOLLIPOP)
+    private static Range<Integer> getBitRateRange(@NonNull MediaCodec codec,
+            @NonNull String mime) {
+        return codec.getCodecInfo().getCapabilitiesForType(mime)
+                .getVideoCapabilities().getBitrateRange();
+    }
+
+    /**
+     * Validates the quality against the encoder capabilities.
+     * {@code EncoderCapabilities.getQualityRange()} is API28, so it's called by reflection.
+     *
+     * @param codec the encoder
+     * @param format the media format
+     * @param quality the requested quality
+     *
+     * @return the quality clamped to the supported range
+     */
+    @RequiresApi(API_QUALITY)
+    private static int checkQuality(@NonNull MediaCodec codec, @NonNull MediaFormat format,
+            int quality) {
+        final MediaCodecInfo.EncoderCapabilities capabilities = codec.getCodecInfo()
+                .getCapabilitiesForType(format.getString(MediaFormat.KEY_MIME))
+                .getEncoderCapabilities();
+        final Range<?> range;
+        try {
+            range = (Range<?>) capabilities.getClass()
+                    .getMethod(METHOD_QUALITY_RANGE).invoke(capabilities);
+        } catch (ReflectiveOperationException exception) {
+            logw("Quality range is unavailable: " + exception);
+            return quality;
+        }
+        final int lower = (Integer) range.getLower();
+        final int upper = (Integer) range.getUpper();
+        final int supported = Math.max(lower, Math.min(upper, quality));
+        if (supported != quality) {
+            logw("Quality " + quality + " is out of " + range);
+        }
+        return supported;
+    }
+
+    /** Check current state. */
+    private void checkState() {
+        if (mReleased) {
+            throw new IllegalStateException();
+        }
+    }
+
+    /** Log verbose. */
+    private static void logv(@NonNull String msg) {
         log(Log.VERBOSE, VERBOSE, msg);
     }
 
@@ -324,7 +1272,37 @@ public final class MpegEncoder implements Closeable {
      */
     @NonNull
     public static Builder from(@NonNull ByteBuffer buffer, int width, int height) {
-        return new Builder(buffer, width, height);
+        return new Builder(buffer, null, width, height);
+    }
+
+    /**
+     * Create a {@link Builder} suitable for building a {@link MpegEncoder}
+     * with the RGB565 input buffer taken from the pool for each encoder.
+     * The buffer is given by {@link #getInputBuffer()} and returned to the pool on close.
+     *
+     * @param pool the pool of the input buffer, such as {@link BufferPool#getDefault()}
+     * @param width The width of the content (in pixels)
+     * @param height The height of the content (in pixels)
+     *
+     * @return a {@link Builder}
+     */
+    @NonNull
+    public static Builder from(@NonNull BufferPool pool, int width, int height) {
+        return new Builder(null, pool, width, height);
+    }
+
+    /**
+     * Create a {@link Builder} suitable for building a {@link MpegEncoder}
+     * fed by {@link #draw(Bitmap)} or the external input, without the input buffer.
+     *
+     * @param width The width of the content (in pixels)
+     * @param height The height of the content (in pixels)
+     *
+     * @return a {@link Builder}
+     */
+    @NonNull
+    public static Builder from(int width, int height) {
+        return new Builder(null, null, width, height);
     }
 
     /**
@@ -347,9 +1325,12 @@ public final class MpegEncoder implements Closeable {
     @SuppressWarnings("WeakerAccess, unused")
     public static final class Builder {
 
-        /** The input buffer. */
-        @NonNull
+        /** The input buffer or null for bitmap input. */
+        @Nullable
         final ByteBuffer inputBuffer;
+        /** The pool of the input buffer or null. */
+        @Nullable
+        final BufferPool mInputPool;
         /** The horizontal size of input frames. */
         final int width;
         /** The vertical size of input frames. */
@@ -368,17 +1349,62 @@ public final class MpegEncoder implements Closeable {
         /** The orientation. */
         private int mOrientation = 0;
 
+        /** The real-time clock. */
+        private Clock mClock = null;
+        /** The max latency of real-time frames (in milliseconds). */
+        private int mMaxLatency = DEFAULT_MAX_LATENCY;
+        /** The capture interval of the time-lapse (in milliseconds) or 0. */
+        private long mCaptureInterval = 0;
+
+        /** The explicit bitrate. */
+        private int mBitRate = NOT_SET;
+        /** The bitrate mode. */
+        private int mBitRateMode = NOT_SET;
+        /** The quality of constant-quality mode. */
+        private int mQuality = NOT_SET;
+        /** The min quantization parameter. */
+        private int mMinQp = NOT_SET;
+        /** The max quantization parameter. */
+        private int mMaxQp = NOT_SET;
+        /** The bitrate controller. */
+        private BitRateController mController = null;
+        /** The scheduled key frames (in milliseconds). */
+        private long[] mKeyFrames = new long[0];
+        /** The cache directory. */
+        private File mCacheDir = null;
+        /** The codec preferences. */
+        private String[] mCodecs = {Codec.AVC};
+        /** The geometry transform. */
+        private final Transform mTransform = new Transform();
+        /** The overlays. */
+        private final ArrayList<Overlay> mOverlays = new ArrayList<>();
+        /** The external input. */
+        private boolean mExternal = false;
+        /** The renderer. */
+        private Renderer mRenderer = null;
+        /** The canvas input. */
+        private boolean mCanvas = false;
+        /** The output listener. */
+        private Output mOutput = null;
+        /** The ring capacity of the muxer writer thread. */
+        private int mWriteBuffer = 0;
+        /** The low-latency profile. */
+        private boolean mLowLatency = false;
+
         /**
          * Constructs a new {@link Builder}.
          *
          * @param input the input buffer
+         * @param pool the pool of the input buffer
          * @param width The width of the content (in pixels)
          * @param height The height of the content (in pixels)
          */
-        private Builder(@NonNull ByteBuffer input, int width, int height) {
+        private Builder(@Nullable ByteBuffer input, @Nullable BufferPool pool,
+                int width, int height) {
             this.width = width;
             this.height = height;
             this.inputBuffer = input;
+            this.mInputPool = pool;
         }
 
         /**
@@ -424,13 +1450,188 @@ public final class MpegEncoder implements Closeable {
             return this;
         }
 
-        /** The i-frame interval in seconds. */
+        /**
+         * The i-frame interval in seconds.
+         * Zero requests key frames only, a negative value requests the first key frame only,
+         * so that key frames are placed by {@link #keyFrames(long...)} and
+         * {@link MpegEncoder#requestKeyFrame()}.
+         */
         @NonNull
         public final Builder iFrame(int sec) {
             mIFrame = sec;
             return this;
         }
 
+        /**
+         * Schedules key frames at the given presentation times,
+         * for segment boundaries, chapter marks or seek points.
+         *
+         * @param timesMs the presentation times in milliseconds
+         * @return this builder, to allow for chaining.
+         */
+        @NonNull
+        public final Builder keyFrames(@NonNull long... timesMs) {
+            mKeyFrames = timesMs.clone();
+            return this;
+        }
+
+        /**
+         * Sets the directory to cache the device-specific data between sessions,
+         * such as the {@link EncoderProbe} results and the linked shader programs.
+         *
+         * @param dir the cache directory
+         * @return this builder, to allow for chaining.
+         */
+        @NonNull
+        public final Builder cache(@NonNull File dir) {
+            mCacheDir = dir;
+            return this;
+        }
+
+        /**
+         * Sets the codecs in order of preference.
+         * <p>
+         * The first codec supported by the device with the frame size is used,
+         * falling back to {@link Codec#AVC}. The output container matches the codec:
+         * MPEG-4 for AVC and HEVC, WebM for VP8 and VP9 (API21).
+         * Location and orientation are stored for MPEG-4 only.
+         *
+         * @param mimes the mime types of codecs
+         * @return this builder, to allow for chaining.
+         */
+        @NonNull
+        public final Builder codecs(@NonNull @Codec String... mimes) {
+            mCodecs = mimes.clone();
+            return this;
+        }
+
+        /**
+         * Crops input frames on the GPU.
+         *
+         * @param rect the crop rectangle in input pixels
+         * @return this builder, to allow for chaining.
+         */
+        @NonNull
+        public final Builder crop(@NonNull Rect rect) {
+            mTransform.crop = new Rect(rect);
+            return this;
+        }
+
+        /**
+         * Rotates input frames on the GPU.
+         * Unlike {@link #orientation(int)} the frames are actually rotated.
+         *
+         * @param degrees the clockwise angle: 0, 90, 180 or 270 degrees
+         * @return this builder, to allow for chaining.
+         */
+        @NonNull
+        public final Builder rotate(int degrees) {
+            if (degrees % 90 != 0) {
+                throw new IllegalArgumentException("Unsupported rotation: " + degrees);
+            }
+            mTransform.rotation = (degrees % 360 + 360) % 360;
+            return this;
+        }
+
+        /**
+         * Mirrors input frames horizontally on the GPU.
+         *
+         * @param mirror true to mirror
+         * @return this builder, to allow for chaining.
+         */
+        @NonNull
+        public final Builder mirror(boolean mirror) {
+            mTransform.mirror = mirror;
+            return this;
+        }
+
+        /**
+         * Sets how cropped and rotated frames are scaled to the output size.
+         *
+         * @param scaleType the scale type
+         * @return this builder, to allow for chaining.
+         */
+        @NonNull
+        public final Builder scale(@ScaleType int scaleType) {
+            mTransform.scaleType = scaleType;
+            return this;
+        }
+
+        /**
+         * Adds the overlay blended over every frame on the GPU, such as a watermark.
+         * Overlays are drawn in the order of adding.
+         *
+         * @param overlay the overlay
+         * @return this builder, to allow for chaining.
+         */
+        @NonNull
+        public final Builder overlay(@NonNull Overlay overlay) {
+            mOverlays.add(overlay);
+            return this;
+        }
+
+        /**
+         * Enables the external input: a camera, media projection or video decoder
+         * renders frames to {@link #getInputSurface()}, which are sampled on the GPU
+         * with no CPU copy. Each frame is latched by {@link #awaitFrame(long)}
+         * and then encoded by {@link #draw()} or {@link #draw(long)}.
+         * <p>
+         * Requires the builder created by {@link #from(int, int)}.
+         *
+         * @return this builder, to allow for chaining.
+         */
+        @NonNull
+        public final Builder external() {
+            if (hasInputBuffer() || mRenderer != null || mCanvas) {
+                throw new IllegalStateException("The external input has no other input");
+            }
+            mExternal = true;
+            return this;
+        }
+
+        /**
+         * Sets the renderer drawing every frame with a custom GL code
+         * straight to the encoder surface, instead of the input buffer upload.
+         * <p>
+         * Requires the builder created by {@link #from(int, int)}.
+         *
+         * @param renderer the renderer
+         * @return this builder, to allow for chaining.
+         */
+        @NonNull
+        public final Builder renderer(@NonNull Renderer renderer) {
+            if (hasInputBuffer() || mExternal || mCanvas) {
+                throw new IllegalStateException("The renderer has no other input");
+            }
+            mRenderer = renderer;
+            return this;
+        }
+
+        /**
+         * Enables the canvas input: every frame is drawn with the hardware-accelerated
+         * {@link Canvas} of the encoder surface, bypassing the GL input entirely.
+         * Frames are drawn between {@link #lockCanvas()} and
+         * {@link #unlockCanvasAndPost(Canvas)}, {@link #draw()} is not used.
+         * <p>
+         * The frames are timestamped by the system clock when posted, so the canvas input
+         * is real-time, the GPU transform and overlays are not supported.
+         * Requires the builder created by {@link #from(int, int)}.
+         *
+         * @return this builder, to allow for chaining.
+         */
+        @NonNull
+        @RequiresApi(Build.VERSION_CODES.M)
+        public final Builder canvas() {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+                throw new IllegalStateException("The canvas input requires API 23");
+            }
+            if (hasInputBuffer() || mRenderer != null || mExternal) {
+                throw new IllegalStateException("The canvas input has no other input");
+            }
+            mCanvas = true;
+            return this;
+        }
+
         /** The motion-mode of video. */
         @NonNull
         public final Builder motion(@Motion int motion) {
@@ -438,26 +1639,451 @@ public final class MpegEncoder implements Closeable {
             return this;
         }
 
+        /**
+         * Enables the real-time mode with the system monotonic clock.
+         *
+         * @return this builder, to allow for chaining.
+         */
+        @NonNull
+        public final Builder realTime() {
+            return realTime(Clock.SYSTEM);
+        }
+
+        /**
+         * Enables the real-time mode.
+         * <p>
+         * Frames are stamped by the clock, frames arriving faster than the frame-rate
+         * are decimated and frames arriving later than {@link #maxLatency(int)} are dropped.
+         *
+         * @param clock the monotonic time source
+         * @return this builder, to allow for chaining.
+         */
+        @NonNull
+        public final Builder realTime(@NonNull Clock clock) {
+            mClock = clock;
+            return this;
+        }
+
+        /** The max latency of real-time frames in milliseconds. */
+        @NonNull
+        public final Builder maxLatency(int ms) {
+            mMaxLatency = ms;
+            return this;
+        }
+
+        /**
+         * Encodes a time-lapse: one frame per capture interval is accepted
+         * and played back at the frame-rate, e.g. one frame each 2 seconds at 30 fps.
+         * <p>
+         * The encoder computes the timestamps. Frames submitted faster than the interval
+         * are skipped before they are uploaded and {@code draw} returns false for them.
+         * The capture time is taken from the {@link #realTime(Clock)} clock,
+         * {@link System#nanoTime()} or the time passed to {@code draw}.
+         * The canvas input isn't supported.
+         *
+         * @param ms the capture interval in milliseconds
+         * @return this builder, to allow for chaining.
+         */
+        @NonNull
+        public final Builder timeLapse(long ms) {
+            if (ms <= 0) {
+                throw new IllegalArgumentException("Invalid capture interval: " + ms);
+            }
+            mCaptureInterval = ms;
+            return this;
+        }
+
+        /**
+         * Sets the explicit bitrate instead of the motion-based estimation.
+         * The value is clamped to the range supported by the codec.
+         *
+         * @param bps the bitrate in bits per second
+         * @return this builder, to allow for chaining.
+         */
+        @NonNull
+        public final Builder bitRate(int bps) {
+            mBitRate = bps;
+            return this;
+        }
+
+        /**
+         * Sets the bitrate mode (API21).
+         * Unsupported by the codec mode is ignored.
+         *
+         * @param mode the bitrate mode
+         * @return this builder, to allow for chaining.
+         */
+        @NonNull
+        public final Builder bitRateMode(@BitRateMode int mode) {
+            mBitRateMode = mode;
+            return this;
+        }
+
+        /**
+         * Sets the quality target of {@link BitRateMode#CQ} mode (API28).
+         * The quality is clamped to the range supported by the codec.
+         *
+         * @param quality the codec-specific quality level
+         * @return this builder, to allow for chaining.
+         */
+        @NonNull
+        public final Builder quality(int quality) {
+            if (quality < 0) {
+                throw new IllegalArgumentException("Invalid quality: " + quality);
+            }
+            mQuality = quality;
+            return this;
+        }
+
+        /**
+         * Sets the bounds of the quantization parameter (API31).
+         *
+         * @param min the min QP, -1 for the codec default
+         * @param max the max QP, -1 for the codec default
+         * @return this builder, to allow for chaining.
+         */
+        @NonNull
+        public final Builder qp(int min, int max) {
+            if (min < NOT_SET || max < NOT_SET ||
+                    (min != NOT_SET && max != NOT_SET && min > max)) {
+                throw new IllegalArgumentException("Invalid QP bounds: " + min + ", " + max);
+            }
+            mMinQp = min;
+            mMaxQp = max;
+            return this;
+        }
+
+        /**
+         * Sets the controller adjusting the bitrate while encoding.
+         *
+         * @param controller the bitrate controller
+         * @return this builder, to allow for chaining.
+         *
+         * @see TargetBitRateController
+         */
+        @NonNull
+        public final Builder bitRate(@NonNull BitRateController controller) {
+            mController = controller;
+            return this;
+        }
+
+        /**
+         * Sets the listener of encoded samples, written to the output file as well.
+         *
+         * @param output the output listener
+         * @return this builder, to allow for chaining.
+         */
+        @NonNull
+        public final Builder output(@NonNull Output output) {
+            mOutput = output;
+            return this;
+        }
+
+        /**
+         * Writes the output file on its own thread through a preallocated ring,
+         * so that the codec output buffers are released at once and slow storage
+         * doesn't stall the encoder. By default, the samples are written by the drain.
+         * The ring is taken from the {@link BufferPool#getDefault()}, if it exceeds
+         * the memory budget, the samples are written by the drain as well.
+         *
+         * @param bytes the ring capacity in bytes, a few seconds of the bitrate at least
+         * @return this builder, to allow for chaining.
+         */
+        @NonNull
+        public final Builder writeBuffer(int bytes) {
+            if (bytes <= 0) {
+                throw new IllegalArgumentException("Invalid write buffer: " + bytes);
+            }
+            mWriteBuffer = bytes;
+            return this;
+        }
+
+        /**
+         * Configures the codec for the minimal latency of live encoding: the real-time
+         * priority, the operating rate of the frame-rate, the low-latency mode (API30),
+         * no B-frames (API29) and the intra refresh of one second with no periodic
+         * key frames (API25), where the codec supports them. The short GOP of
+         * {@link #iFrame(int)} is kept otherwise. The sample of each frame is drained
+         * right after the frame is submitted, waiting up to a half of the frame interval.
+         * <p>
+         * The latency is measured by {@link MpegEncoder#getFrameLatency()}.
+         *
+         * @return this builder, to allow for chaining.
+         */
+        @NonNull
+        public final Builder lowLatency() {
+            mLowLatency = true;
+            return this;
+        }
+
+        /**
+         * @param width the output width
+         * @param height the output height
+         *
+         * @return the encoder of the most preferred codec or null if none found
+         */
+        @Nullable
+        final EncoderInfo findEncoder(int width, int height) {
+            final List<EncoderInfo> result = findEncoders(width, height);
+            return result.isEmpty() ? null : result.get(0);
+        }
+
+        /**
+         * @param width the output width
+         * @param height the output height
+         *
+         * @return the encoders by the codec preference, then from the best to the worst
+         */
+        @NonNull
+        final List<EncoderInfo> findEncoders(int width, int height) {
+            final List<EncoderInfo> result = new ArrayList<>();
+            for (String mime : mCodecs) {
+                if (getOutputFormat(mime) != NOT_SET) {
+                    result.addAll(EncoderProbe.findAll(mCacheDir, mime, width, height));
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @param width the output width
+         * @param height the output height
+         *
+         * @return the output format without the codec parameters
+         */
+        @NonNull
+        final MediaFormat newFormat(int width, int height) {
+            final MediaFormat result = MediaFormat.createVideoFormat(Codec.AVC, width, height);
+            result.setInteger(MediaFormat.KEY_COLOR_FORMAT,
+                    MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
+            result.setInteger(MediaFormat.KEY_FRAME_RATE, mFPS);
+            result.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, mIFrame);
+            return result;
+        }
+
+        /** @return the key frame interval in frames or 0 if key frames aren't periodic */
+        final int getKeyFrameInterval() {
+            return mIFrame > 0 ? mIFrame * mFPS : 0;
+        }
+
+        /** @return true for the bitmap input with synthetic timestamps of every frame */
+        final boolean isBitmapInput() {
+            return !hasInputBuffer() && !mExternal && mRenderer == null && !mCanvas &&
+                    mClock == null && mCaptureInterval == 0;
+        }
+
+        /** @return true for the input buffer of the caller or of the pool */
+        final boolean hasInputBuffer() {
+            return inputBuffer != null || mInputPool != null;
+        }
+
+        /** @return true if the bitrate is adjusted by a controller */
+        final boolean hasBitRateController() {
+            return mController != null;
+        }
+
+        /** @return true if key frames are scheduled at explicit times */
+        final boolean hasKeyFrames() {
+            return mKeyFrames.length != 0;
+        }
+
         /** Create a {@link MpegEncoder} from this {@link Builder}. */
         @NonNull
         public final MpegEncoder to(@NonNull String path, int width, int height)  {
+            return to(path, width, height, null);
+        }
 
-            final MediaFormat format = MediaFormat.createVideoFormat(MIME_TYPE, width, height);
-            format.setInteger(MediaFormat.KEY_COLOR_FORMAT,
-                    MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
-            format.setInteger(MediaFormat.KEY_BIT_RATE,
-                    calcBitRate(width * height, mFPS, mMotion));
-            format.setInteger(MediaFormat.KEY_FRAME_RATE, mFPS);
-            format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, mIFrame);
+        /**
+         * Create a {@link MpegEncoder} on its own thread from this {@link Builder},
+         * so that frames can be drawn from any thread.
+         *
+         * @param path the output file
+         * @param width the output width
+         * @param height the output height
+         *
+         * @return the encoder
+         */
+        @NonNull
+        public final AsyncMpegEncoder toAsync(@NonNull String path, int width, int height) {
+            return new AsyncMpegEncoder(this, path, width, height);
+        }
+
+        /**
+         * Create a {@link MpegEncoder} from this {@link Builder}.
+         *
+         * @param path the output file
+         * @param width the output width
+         * @param height the output height
+         * @param pool the pool of stopped encoders or null
+         *
+         * @return the encoder
+         */
+        @NonNull
+        final MpegEncoder to(@NonNull String path, int width, int height,
+                @Nullable CodecPool pool) {
 
             try {
-                return new MpegEncoder(this, format, path);
+                return new MpegEncoder(this, path, width, height, pool);
             } catch (IOException exception) {
                 throw new RuntimeException(exception);
             }
         }
     }
 
+    /**
+     * The monotonic time source of the real-time mode.
+     *
+     * @author Nikitenko Gleb
+     * @since 1.0, 19/10/2026
+     */
+    @Keep@KeepPublicClassMembers
+    @SuppressWarnings("WeakerAccess, unused")
+    public interface Clock {
+
+        /** The system monotonic clock. */
+        Clock SYSTEM = new Clock() {
+            @Override
+            public final long nanoTime() {
+                return System.nanoTime();
+            }
+        };
+
+        /** @return the current time in nanoseconds */
+        long nanoTime();
+    }
+
+    /**
+     * Scaling of input frames to the output size.
+     *
+     * @author Nikitenko Gleb
+     * @since 1.0, 19/10/2026
+     */
+    @IntDef({ScaleType.STRETCH, ScaleType.FIT, ScaleType.FILL})
+    @Retention(RetentionPolicy.SOURCE)
+    @Keep@KeepPublicClassMembers
+    @SuppressWarnings("WeakerAccess, unused")
+    public @interface ScaleType {
+        /** Stretch to the output size. */
+        int STRETCH = 0;
+        /** Fit into the output size keeping aspect ratio, letterboxed by black. */
+        int FIT     = 1;
+        /** Fill the output size keeping aspect ratio, cropping the overflow. */
+        int FILL    = 2;
+    }
+
+    /**
+     * Supported codecs.
+     *
+     * @author Nikitenko Gleb
+     * @since 1.0, 19/10/2026
+     */
+    @StringDef({Codec.AVC, Codec.HEVC, Codec.VP8, Codec.VP9})
+    @Retention(RetentionPolicy.SOURCE)
+    @Keep@KeepPublicClassMembers
+    @SuppressWarnings("WeakerAccess, unused")
+    public @interface Codec {
+        /** H.264 Advanced Video Coding. */
+        String AVC  = "video/avc";
+        /** H.265 High Efficiency Video Coding. */
+        String HEVC = "video/hevc";
+        /** VP8 video. */
+        String VP8  = "video/x-vnd.on2.vp8";
+        /** VP9 video. */
+        String VP9  = "video/x-vnd.on2.vp9";
+    }
+
+    /**
+     * Draws frames with a custom GL code straight to the encoder surface.
+     *
+     * @author Nikitenko Gleb
+     * @since 1.0, 19/10/2026
+     */
+    @Keep@KeepPublicClassMembers
+    @SuppressWarnings("WeakerAccess, unused")
+    public interface Renderer {
+
+        /**
+         * Called to draw the frame with the EGL context current on the encoder surface.
+         * <p>
+         * The GL state changed by the renderer is restored after the call,
+         * the GL resources may be created at the first call.
+         *
+         * @param presentationTime the presentation time of the frame (in nanoseconds)
+         */
+        void onDrawFrame(long presentationTime);
+    }
+
+    /**
+     * Receives the encoded output on the thread of the encoder.
+     *
+     * @author Nikitenko Gleb
+     * @since 1.0, 19/10/2026
+     */
+    @Keep@KeepPublicClassMembers
+    @SuppressWarnings("WeakerAccess, unused")
+    public interface Output {
+
+        /**
+         * Called once before the first sample.
+         *
+         * @param format the output format with the codec config data
+         */
+        void onFormat(@NonNull MediaFormat format);
+
+        /**
+         * Called for every encoded sample.
+         * The buffer is only valid during the call and must not be changed.
+         *
+         * @param data the sample data from the position to the limit
+         * @param info the sample info
+         */
+        void onSample(@NonNull ByteBuffer data, @NonNull MediaCodec.BufferInfo info);
+
+        /** Called after the last sample, when the encoder is closed. */
+        void onEnd();
+    }
+
+    /**
+     * Adjusts the bitrate by the actual output of the encoder.
+     *
+     * @author Nikitenko Gleb
+     * @since 1.0, 19/10/2026
+     */
+    @Keep@KeepPublicClassMembers
+    @SuppressWarnings("WeakerAccess, unused")
+    public interface BitRateController {
+
+        /**
+         * Called for every encoded sample.
+         *
+         * @param presentationTime the presentation time of the sample (in microseconds)
+         * @param size the size of the sample in bytes
+         * @param bitRate the current bitrate
+         *
+         * @return the new bitrate or the current one to keep it
+         */
+        int onSample(long presentationTime, int size, int bitRate);
+    }
+
+    /**
+     * Bitrate modes of {@link MediaCodecInfo.EncoderCapabilities}.
+     *
+     * @author Nikitenko Gleb
+     * @since 1.0, 19/10/2026
+     */
+    @IntDef({BitRateMode.CQ, BitRateMode.VBR, BitRateMode.CBR})
+    @Retention(RetentionPolicy.SOURCE)
+    @Keep@KeepPublicClassMembers
+    @SuppressWarnings("WeakerAccess, unused")
+    public @interface BitRateMode {
+        /** Constant quality. */
+        int CQ  = 0;
+        /** Variable bitrate. */
+        int VBR = 1;
+        /** Constant bitrate. */
+        int CBR = 2;
+    }
+
     /**
      * Predefined motion modes.
      *
@@ -0,0 +1,185 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import android.media.MediaCodec;
+import android.media.MediaMuxer;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * Writes encoded samples to the muxer on its own thread.
+ * <p>
+ * The samples are copied to a {@link SampleRing}, so the codec output buffers are
+ * released at once and slow storage doesn't stall the encoder. The drain thread
+ * waits only if the ring is full.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+final class MuxerWriter implements Closeable {
+
+    /** The thread name. */
+    private static final String THREAD_NAME = "MuxerWriter";
+
+    /** The slots of samples per ring megabyte. */
+    private static final int SLOTS_PER_MB = 256;
+    /** The min number of slots. */
+    private static final int MIN_SLOTS = 64;
+
+    /** The wait of the full ring (in nanoseconds). */
+    private static final long FULL_WAIT = 100000L;
+
+    /** The muxer. */
+    @NonNull
+    private final MediaMuxer mMuxer;
+    /** The muxer track. */
+    private final int mTrack;
+
+    /** The samples. */
+    @NonNull
+    private final SampleRing mRing;
+
+    /** The writer thread. */
+    @NonNull
+    private final Thread mThread;
+
+    /** The sample info of the writer thread. */
+    @NonNull
+    private final MediaCodec.BufferInfo mBufferInfo = new MediaCodec.BufferInfo();
+
+    /** The close was requested. */
+    private volatile boolean mClosed = false;
+
+    /** The failure of the writer thread. */
+    @Nullable
+    private volatile RuntimeException mError = null;
+
+    /** The number of waits for the full ring. */
+    private long mStalls = 0;
+
+    /**
+     * Constructs a new {@link MuxerWriter}.
+     *
+     * @param muxer the started muxer
+     * @param track the muxer track
+     * @param ring the samples
+     */
+    private MuxerWriter(@NonNull MediaMuxer muxer, int track, @NonNull SampleRing ring) {
+        mMuxer = muxer;
+        mTrack = track;
+        mRing = ring;
+        mThread = new Thread(new Runnable() {
+            @Override
+            public final void run() {
+                loop();
+            }
+        }, THREAD_NAME);
+        mThread.start();
+    }
+
+    /**
+     * Create a {@link MuxerWriter} unless its ring exceeds the memory budget.
+     *
+     * @param muxer the started muxer
+     * @param track the muxer track
+     * @param capacity the ring capacity in bytes
+     *
+     * @return the writer or null if the memory budget of the {@link BufferPool} is exceeded
+     */
+    @Nullable
+    static MuxerWriter tryCreate(@NonNull MediaMuxer muxer, int track, int capacity) {
+        final SampleRing ring = SampleRing.tryCreate(capacity,
+                Math.max(MIN_SLOTS, (int) ((long) capacity * SLOTS_PER_MB >> 20)));
+        return ring != null ? new MuxerWriter(muxer, track, ring) : null;
+    }
+
+    /** The write loop of the writer thread. */
+    private void loop() {
+        try {
+            while (true) {
+                final ByteBuffer data = mRing.peek();
+                if (data == null) {
+                    if (mClosed && mRing.isEmpty()) {
+                        return;
+                    }
+                    LockSupport.park(this);
+                    continue;
+                }
+                mBufferInfo.set(data.position(), data.remaining(),
+                        mRing.getPresentationTime(), mRing.getFlags());
+                mMuxer.writeSampleData(mTrack, data, mBufferInfo);
+                mRing.remove();
+            }
+        } catch (RuntimeException exception) {
+            mError = exception;
+        }
+    }
+
+    /**
+     * Queues the sample, waits while the ring is full.
+     *
+     * @param data the sample data from the position to the limit
+     * @param info the sample info
+     */
+    final void write(@NonNull ByteBuffer data, @NonNull MediaCodec.BufferInfo info) {
+        checkError();
+        if (data.remaining() > mRing.getCapacity()) {
+            // Too large for the ring, wait for the queued samples to keep the order
+            while (!mRing.isEmpty()) {
+                checkError();
+                LockSupport.parkNanos(this, FULL_WAIT);
+            }
+            mMuxer.writeSampleData(mTrack, data, info);
+            return;
+        }
+        while (!mRing.offer(data, info.presentationTimeUs, info.flags)) {
+            mStalls++;
+            LockSupport.unpark(mThread);
+            LockSupport.parkNanos(this, FULL_WAIT);
+            checkError();
+        }
+        LockSupport.unpark(mThread);
+    }
+
+    /** @return the number of waits for the full ring */
+    final long getStalls() {
+        return mStalls;
+    }
+
+    /** Rethrows the failure of the writer thread. */
+    private void checkError() {
+        final RuntimeException error = mError;
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /** Writes the queued samples and stops the writer thread. */
+    @Override
+    public final void close() {
+        mClosed = true;
+        LockSupport.unpark(mThread);
+        boolean interrupted = false;
+        while (mThread.isAlive()) {
+            try {
+                mThread.join();
+            } catch (InterruptedException exception) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        mRing.close();
+        checkError();
+    }
+}
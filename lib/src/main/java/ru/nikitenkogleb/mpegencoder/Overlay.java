@@ -0,0 +1,92 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.opengl.Matrix;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * The overlay layer blended over every encoded frame, such as a watermark or a caption.
+ * <p>
+ * The bitmap is uploaded to the GPU once and then only after {@link #update(Bitmap)},
+ * so static overlays cost nothing per frame.
+ * Bitmaps are expected to be premultiplied (the default for {@link Bitmap}).
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+public final class Overlay {
+
+    /** The bounds in output pixels. */
+    @NonNull
+    private final Rect mBounds;
+
+    /** The current content. */
+    @NonNull
+    private Bitmap mBitmap;
+
+    /** The content version. */
+    private int mVersion = 0;
+
+    /**
+     * Constructs a new {@link Overlay}.
+     *
+     * @param bitmap the overlay content
+     * @param bounds the bounds in output pixels
+     */
+    public Overlay(@NonNull Bitmap bitmap, @NonNull Rect bounds) {
+        if (bounds.isEmpty()) {
+            throw new IllegalArgumentException("Empty bounds");
+        }
+        mBitmap = bitmap;
+        mBounds = new Rect(bounds);
+    }
+
+    /**
+     * Replaces the overlay content, uploaded with the next frame.
+     * The bitmap must not be changed or recycled until that frame is drawn.
+     *
+     * @param bitmap the new content
+     */
+    public final synchronized void update(@NonNull Bitmap bitmap) {
+        mBitmap = bitmap;
+        mVersion++;
+    }
+
+    /**
+     * @param versions the uploaded versions of overlays
+     * @param index the index of this overlay
+     *
+     * @return the content to upload or null if the uploaded version is current
+     */
+    @Nullable
+    final synchronized Bitmap poll(@NonNull int[] versions, int index) {
+        if (versions[index] == mVersion) {
+            return null;
+        }
+        versions[index] = mVersion;
+        return mBitmap;
+    }
+
+    /**
+     * Computes the vertex matrix.
+     *
+     * @param width the output width
+     * @param height the output height
+     * @param mvp the vertex matrix
+     */
+    final void compute(int width, int height, @NonNull float[] mvp) {
+        Matrix.setIdentityM(mvp, 0);
+        Matrix.translateM(mvp, 0, (float) (mBounds.left + mBounds.right) / width - 1f,
+                1f - (float) (mBounds.top + mBounds.bottom) / height, 0);
+        Matrix.scaleM(mvp, 0, (float) mBounds.width() / width,
+                (float) mBounds.height() / height, 1);
+    }
+}
@@ -0,0 +1,209 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * The disk cache of linked GL program binaries.
+ * <p>
+ * Binaries are keyed by the GL renderer, the driver version and the shader sources,
+ * so a driver update invalidates them. Requires an OpenGL ES 3 context,
+ * otherwise programs are always compiled from the sources.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+final class ProgramCache {
+
+    /** The log-cat tag. */
+    private static final String TAG = "GLTools";
+
+    /** Verbose mode logging. */
+    private static final boolean VERBOSE =
+            BuildConfig.DEBUG || Log.isLoggable(TAG, Log.VERBOSE);
+    /** Warning mode logging. */
+    private static final boolean WARNINGS =
+            BuildConfig.DEBUG || Log.isLoggable(TAG, Log.WARN);
+
+    /** The cache file prefix. */
+    private static final String CACHE_FILE = "mpegencoder.program.";
+
+    /** The cache format version. */
+    private static final int CACHE_VERSION = 1;
+
+    /**
+     * The caller should be prevented from constructing objects of this class.
+     * Also, this prevents even the native class from calling this constructor.
+     **/
+    private ProgramCache() {throw new AssertionError();}
+
+    /** @return true if program binaries are supported by the current context */
+    static boolean isSupported() {
+        return GLTools.isES3();
+    }
+
+    /**
+     * @param vertex the vertex shader source
+     * @param fragment the fragment shader source
+     *
+     * @return the cache key of the program for the current context
+     */
+    @NonNull
+    static String getKey(@NonNull String vertex, @NonNull String fragment) {
+        return CACHE_VERSION + ":" + GLES20.glGetString(GLES20.GL_RENDERER) + ":" +
+                GLES20.glGetString(GLES20.GL_VERSION) + ":" +
+                Integer.toHexString(vertex.hashCode()) + Integer.toHexString(fragment.hashCode());
+    }
+
+    /**
+     * @param dir the cache directory
+     * @param key the cache key
+     *
+     * @return the cache file
+     */
+    @NonNull
+    private static File getFile(@NonNull File dir, @NonNull String key) {
+        return new File(dir, CACHE_FILE + Integer.toHexString(key.hashCode()));
+    }
+
+    /**
+     * Loads the cached program.
+     *
+     * @param dir the cache directory
+     * @param key the cache key
+     *
+     * @return the linked program or 0 if the cache is missing or stale
+     */
+    static int load(@NonNull File dir, @NonNull String key) {
+        final File file = getFile(dir, key);
+        if (!file.exists()) {
+            return 0;
+        }
+
+        final int format;
+        final ByteBuffer binary;
+        try (final DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+            if (!key.equals(input.readUTF())) {
+                return 0;
+            }
+            format = input.readInt();
+            final byte[] bytes = new byte[input.readInt()];
+            input.readFully(bytes);
+            binary = ByteBuffer.allocateDirect(bytes.length).order(ByteOrder.nativeOrder());
+            binary.put(bytes).position(0);
+        } catch (IOException exception) {
+            logw(exception);
+            return 0;
+        }
+
+        final int result = GLES20.glCreateProgram();
+        GLES30.glProgramBinary(result, format, binary, binary.capacity());
+        final int[] status = new int[1];
+        GLES20.glGetProgramiv(result, GLES20.GL_LINK_STATUS, status, 0);
+        if (GLES20.glGetError() != GLES20.GL_NO_ERROR || status[0] != GLES20.GL_TRUE) {
+            GLES20.glDeleteProgram(result);
+            if (!file.delete()) {
+                logw("Unable to delete " + file);
+            }
+            logv("Program binary rejected");
+            return 0;
+        }
+        logv("Program binary loaded");
+        return result;
+    }
+
+    /**
+     * Prepares the program for the binary retrieval, before the linking.
+     *
+     * @param program the program
+     */
+    static void retrievable(int program) {
+        GLES30.glProgramParameteri(program, GLES30.GL_PROGRAM_BINARY_RETRIEVABLE_HINT,
+                GLES20.GL_TRUE);
+    }
+
+    /**
+     * Saves the linked program.
+     *
+     * @param dir the cache directory
+     * @param key the cache key
+     * @param program the linked program
+     */
+    static void save(@NonNull File dir, @NonNull String key, int program) {
+        final int[] values = new int[2];
+        GLES20.glGetProgramiv(program, GLES30.GL_PROGRAM_BINARY_LENGTH, values, 0);
+        if (values[0] <= 0) {
+            return;
+        }
+        final ByteBuffer binary =
+                ByteBuffer.allocateDirect(values[0]).order(ByteOrder.nativeOrder());
+        GLES30.glGetProgramBinary(program, values[0], values, 0, values, 1, binary);
+        if (GLES20.glGetError() != GLES20.GL_NO_ERROR) {
+            logw("Unable to get program binary");
+            return;
+        }
+        final byte[] bytes = new byte[values[0]];
+        binary.position(0);
+        binary.get(bytes);
+
+        final File file = getFile(dir, key);
+        final File temp = new File(file.getPath() + ".tmp");
+        try (final DataOutputStream output = new DataOutputStream(new FileOutputStream(temp))) {
+            output.writeUTF(key);
+            output.writeInt(values[1]);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        } catch (IOException exception) {
+            logw(exception);
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            logw("Unable to write " + file);
+        }
+    }
+
+    /** Log verbose. */
+    private static void logv(@NonNull String msg) {
+        log(Log.VERBOSE, VERBOSE, msg);
+    }
+
+    /** Log warning. */
+    private static void logw(@NonNull String msg) {
+        log(Log.WARN, WARNINGS, msg);
+    }
+
+    /** Log warning. */
+    private static void logw(@NonNull Throwable throwable) {
+        log(Log.WARN, WARNINGS, Log.getStackTraceString(throwable));
+    }
+
+    /**
+     * Common log-helper.
+     *
+     * @param level the log-level
+     * @param enable log-enabled flag
+     * @param msg the message
+     */
+    private static void log(int level, boolean enable, @NonNull String msg) {
+        if (enable) {
+            Log.println(level, TAG, msg);
+        }
+    }
+}
@@ -0,0 +1,587 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import android.graphics.Bitmap;
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicClassMembers;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * The reactive-streams adapter of the {@link MpegEncoder}.
+ * <p>
+ * Subscribes to frames and publishes encoded samples. The frames are requested as
+ * the encoder thread completes drawing the previous ones, so no more than the prefetch
+ * frames are pending and no thread blocks to apply backpressure. The demand tracks the draw
+ * completion rather than the input availability of the codec, which isn't observable
+ * through the input surface: a draw waits for the codec inside the encoder thread.
+ * <p>
+ * Once the samples are subscribed, the next frames are requested only while fewer than
+ * the prefetch samples wait for the demand of the samples subscriber, so the slow subscriber
+ * slows the frames down. Without a samples subscriber the samples are only written to
+ * the file, neither queued nor limiting the frames, so subscribe to {@link #getSamples()}
+ * before the frames to receive all of them.
+ * See {@link Flow} for the reactive-streams interfaces.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+public final class ReactiveEncoder implements Flow.Subscriber<ReactiveEncoder.Frame> {
+
+    /** The default number of pending frames. */
+    private static final int DEFAULT_PREFETCH = 2;
+
+    /** The encoder. */
+    @NonNull
+    private final AsyncMpegEncoder mEncoder;
+
+    /** The encoded samples. */
+    @NonNull
+    private final Samples mSamples;
+
+    /** The number of pending frames and the max number of undelivered samples. */
+    private final int mPrefetch;
+
+    /** The completed frames, which are not requested again yet. */
+    @NonNull
+    private final AtomicInteger mDeferred = new AtomicInteger();
+
+    /** The frames subscription. */
+    @Nullable
+    private volatile Flow.Subscription mSubscription = null;
+
+    /** The frames stream was terminated. */
+    @NonNull
+    private final AtomicBoolean mDone = new AtomicBoolean();
+
+    /** The output format. */
+    @Nullable
+    private volatile MediaFormat mFormat = null;
+
+    /**
+     * Constructs a new {@link ReactiveEncoder}.
+     *
+     * @param builder the encoder parameters, its output listener is replaced
+     * @param path the output file
+     * @param width the output width
+     * @param height the output height
+     * @param prefetch the number of pending frames
+     */
+    private ReactiveEncoder(@NonNull MpegEncoder.Builder builder, @NonNull String path,
+            int width, int height, int prefetch) {
+        if (prefetch <= 0) {
+            throw new IllegalArgumentException("Invalid prefetch: " + prefetch);
+        }
+        mPrefetch = prefetch;
+        mSamples = new Samples(new Runnable() {
+            @Override
+            public final void run() {
+                requestFrames();
+            }
+        });
+        builder.output(new MpegEncoder.Output() {
+            @Override
+            public final void onFormat(@NonNull MediaFormat format) {
+                mFormat = format;
+            }
+
+            @Override
+            public final void onSample(@NonNull ByteBuffer data,
+                    @NonNull MediaCodec.BufferInfo info) {
+                mSamples.emit(new EncodedSample(data, info));
+            }
+
+            @Override
+            public final void onEnd() {
+                mSamples.terminate(null);
+            }
+        });
+        mEncoder = builder.toAsync(path, width, height);
+    }
+
+    /**
+     * Create a {@link ReactiveEncoder} with two pending frames.
+     *
+     * @param builder the encoder parameters, its output listener is replaced
+     * @param path the output file
+     * @param width the output width
+     * @param height the output height
+     *
+     * @return a {@link ReactiveEncoder}
+     */
+    @NonNull
+    public static ReactiveEncoder to(@NonNull MpegEncoder.Builder builder, @NonNull String path,
+            int width, int height) {
+        return new ReactiveEncoder(builder, path, width, height, DEFAULT_PREFETCH);
+    }
+
+    /**
+     * Create a {@link ReactiveEncoder}.
+     *
+     * @param builder the encoder parameters, its output listener is replaced
+     * @param path the output file
+     * @param width the output width
+     * @param height the output height
+     * @param prefetch the number of pending frames
+     *
+     * @return a {@link ReactiveEncoder}
+     */
+    @NonNull
+    public static ReactiveEncoder to(@NonNull MpegEncoder.Builder builder, @NonNull String path,
+            int width, int height, int prefetch) {
+        return new ReactiveEncoder(builder, path, width, height, prefetch);
+    }
+
+    /**
+     * @return the publisher of encoded samples for one subscriber,
+     * the samples emitted after the subscription are kept until requested
+     */
+    @NonNull
+    public final Flow.Publisher<EncodedSample> getSamples() {
+        return mSamples;
+    }
+
+    /** @return the output format with the codec config data or null before the first sample */
+    @Nullable
+    public final MediaFormat getOutputFormat() {
+        return mFormat;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public final void onSubscribe(@NonNull Flow.Subscription subscription) {
+        if (mSubscription != null || mDone.get()) {
+            subscription.cancel();
+            return;
+        }
+        mSubscription = subscription;
+        subscription.request(mPrefetch);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public final void onNext(@NonNull final Frame frame) {
+        if (mDone.get()) {
+            return;
+        }
+        try {
+            submit(frame);
+        } catch (IllegalStateException exception) {
+            // The encoder is closed by the failure, the frame is dropped
+        }
+    }
+
+    /**
+     * Queues the frame to the encoder thread.
+     *
+     * @param frame the frame
+     * @throws IllegalStateException if the encoder is closed
+     */
+    private void submit(@NonNull final Frame frame) {
+        mEncoder.submit(new AsyncMpegEncoder.Command<Void>() {
+            @Override
+            public final Void run(@NonNull MpegEncoder encoder) {
+                if (mDone.get() && mSubscription == null) {
+                    return null;
+                }
+                try {
+                    frame.draw(encoder);
+                } catch (RuntimeException exception) {
+                    fail(exception);
+                    throw exception;
+                }
+                mDeferred.incrementAndGet();
+                requestFrames();
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Requests the completed frames again while the undelivered samples are below the bound
+     * or nobody has subscribed to the samples.
+     */
+    private void requestFrames() {
+        while (!mSamples.isSubscribed() || mSamples.getQueued() < mPrefetch) {
+            final int deferred = mDeferred.get();
+            if (deferred == 0) {
+                return;
+            }
+            if (mDeferred.compareAndSet(deferred, deferred - 1)) {
+                final Flow.Subscription subscription = mSubscription;
+                if (subscription != null) {
+                    subscription.request(1);
+                }
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public final void onError(@NonNull Throwable throwable) {
+        if (mDone.compareAndSet(false, true)) {
+            mSubscription = null;
+            mSamples.terminate(throwable);
+            mEncoder.closeAsync();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public final void onComplete() {
+        if (mDone.compareAndSet(false, true)) {
+            mEncoder.closeAsync();
+        }
+    }
+
+    /**
+     * Cancels the frames and closes the encoder after the failed frame.
+     *
+     * @param throwable the failure
+     */
+    private void fail(@NonNull Throwable throwable) {
+        if (mDone.compareAndSet(false, true)) {
+            final Flow.Subscription subscription = mSubscription;
+            mSubscription = null;
+            if (subscription != null) {
+                subscription.cancel();
+            }
+            mSamples.terminate(throwable);
+            mEncoder.closeAsync();
+        }
+    }
+
+    /**
+     * The publisher of encoded samples.
+     * <p>
+     * The samples are delivered by the thread that emits or requests them,
+     * serialized by the work-in-progress counter, so no locks are taken.
+     *
+     * @author Nikitenko Gleb
+     * @since 1.0, 19/10/2026
+     */
+    private static final class Samples
+            implements Flow.Publisher<EncodedSample>, Flow.Subscription {
+
+        /** The samples not delivered yet. */
+        @NonNull
+        private final ConcurrentLinkedQueue<EncodedSample> mQueue =
+                new ConcurrentLinkedQueue<>();
+        /** The number of samples not delivered yet. */
+        @NonNull
+        private final AtomicInteger mQueued = new AtomicInteger();
+
+        /** Called after the samples are delivered. */
+        @NonNull
+        private final Runnable mOnDelivered;
+
+        /** The requested samples. */
+        @NonNull
+        private final AtomicLong mRequested = new AtomicLong();
+
+        /** The work-in-progress counter of the delivery. */
+        @NonNull
+        private final AtomicInteger mWip = new AtomicInteger();
+
+        /** The subscriber. */
+        @Nullable
+        private volatile Flow.Subscriber<? super EncodedSample> mSubscriber = null;
+
+        /** The stream was terminated by the encoder. */
+        private volatile boolean mTerminated = false;
+        /** The failure of the stream or null. */
+        @Nullable
+        private volatile Throwable mError = null;
+        /** The subscription was cancelled. */
+        private volatile boolean mCancelled = false;
+
+        /**
+         * Constructs a new {@link Samples}.
+         *
+         * @param onDelivered called after the samples are delivered
+         */
+        Samples(@NonNull Runnable onDelivered) {
+            mOnDelivered = onDelivered;
+        }
+
+        /** @return the number of samples not delivered yet */
+        final int getQueued() {
+            return mQueued.get();
+        }
+
+        /** @return true if the samples have a subscriber */
+        final boolean isSubscribed() {
+            return mSubscriber != null;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public final void subscribe(@NonNull Flow.Subscriber<? super EncodedSample> subscriber) {
+            synchronized (this) {
+                if (mSubscriber != null) {
+                    subscriber.onSubscribe(EMPTY);
+                    subscriber.onError(new IllegalStateException("Already subscribed"));
+                    return;
+                }
+                mSubscriber = subscriber;
+            }
+            subscriber.onSubscribe(this);
+            drain();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public final void request(long count) {
+            if (count <= 0) {
+                terminate(new IllegalArgumentException("Non-positive request: " + count));
+                return;
+            }
+            long current, next;
+            do {
+                current = mRequested.get();
+                next = current + count < 0 ? Long.MAX_VALUE : current + count;
+            } while (!mRequested.compareAndSet(current, next));
+            drain();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public final void cancel() {
+            mCancelled = true;
+            clear();
+            mOnDelivered.run();
+        }
+
+        /** Drops the samples not delivered yet. */
+        private void clear() {
+            while (mQueue.poll() != null) {
+                mQueued.decrementAndGet();
+            }
+        }
+
+        /**
+         * Queues the encoded sample, it's dropped without a subscriber.
+         *
+         * @param sample the sample
+         */
+        final void emit(@NonNull EncodedSample sample) {
+            if (mSubscriber != null && !mCancelled) {
+                mQueued.incrementAndGet();
+                mQueue.offer(sample);
+                drain();
+            }
+        }
+
+        /**
+         * Ends the stream after the queued samples.
+         *
+         * @param throwable the failure or null
+         */
+        final void terminate(@Nullable Throwable throwable) {
+            if (!mTerminated) {
+                mError = throwable;
+                mTerminated = true;
+                drain();
+            }
+        }
+
+        /** Delivers the requested samples and the end of stream. */
+        private void drain() {
+            if (mWip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            boolean delivered = false;
+            do {
+                final Flow.Subscriber<? super EncodedSample> subscriber = mSubscriber;
+                if (subscriber != null && !mCancelled) {
+                    while (mRequested.get() > 0 && !mCancelled) {
+                        final EncodedSample sample = mQueue.poll();
+                        if (sample == null) {
+                            break;
+                        }
+                        mQueued.decrementAndGet();
+                        if (mRequested.get() != Long.MAX_VALUE) {
+                            mRequested.decrementAndGet();
+                        }
+                        subscriber.onNext(sample);
+                        delivered = true;
+                    }
+                    if (mTerminated && (mQueue.isEmpty() || mError != null)) {
+                        mCancelled = true;
+                        clear();
+                        final Throwable error = mError;
+                        if (error != null) {
+                            subscriber.onError(error);
+                        } else {
+                            subscriber.onComplete();
+                        }
+                    }
+                }
+                missed = mWip.addAndGet(-missed);
+            } while (missed != 0);
+            if (delivered) {
+                mOnDelivered.run();
+            }
+        }
+    }
+
+    /** The subscription of the rejected subscriber. */
+    private static final Flow.Subscription EMPTY = new Flow.Subscription() {
+        @Override
+        public final void request(long count) {}
+
+        @Override
+        public final void cancel() {}
+    };
+
+    /**
+     * The frame to encode.
+     *
+     * @author Nikitenko Gleb
+     * @since 1.0, 19/10/2026
+     */
+    @Keep@KeepPublicClassMembers
+    @SuppressWarnings("WeakerAccess, unused")
+    public static final class Frame {
+
+        /** The frame has no capture time. */
+        private static final long NO_TIME = -1;
+
+        /** The bitmap or null for the input buffer or the external input. */
+        @Nullable
+        private final Bitmap mBitmap;
+        /** The capture time (in nanoseconds) or {@link #NO_TIME}. */
+        private final long mCaptureTime;
+
+        /**
+         * Constructs a new {@link Frame}.
+         *
+         * @param bitmap the bitmap or null for the input buffer or the external input
+         * @param captureTime the capture time (in nanoseconds)
+         */
+        private Frame(@Nullable Bitmap bitmap, long captureTime) {
+            mBitmap = bitmap;
+            mCaptureTime = captureTime;
+        }
+
+        /** @return the frame of the input buffer or the external input */
+        @NonNull
+        public static Frame of() {
+            return new Frame(null, NO_TIME);
+        }
+
+        /**
+         * @param captureTime the capture time (in nanoseconds)
+         * @return the frame of the input buffer or the external input
+         */
+        @NonNull
+        public static Frame of(long captureTime) {
+            return new Frame(null, captureTime);
+        }
+
+        /**
+         * @param bitmap the bitmap, must not be changed until the next frame is requested
+         * @return the frame of the bitmap
+         */
+        @NonNull
+        public static Frame of(@NonNull Bitmap bitmap) {
+            return new Frame(bitmap, NO_TIME);
+        }
+
+        /**
+         * @param bitmap the bitmap, must not be changed until the next frame is requested
+         * @param captureTime the capture time (in nanoseconds)
+         *
+         * @return the frame of the bitmap
+         */
+        @NonNull
+        public static Frame of(@NonNull Bitmap bitmap, long captureTime) {
+            return new Frame(bitmap, captureTime);
+        }
+
+        /**
+         * Draws the frame.
+         *
+         * @param encoder the encoder
+         * @return false if the frame was decimated or dropped
+         */
+        final boolean draw(@NonNull MpegEncoder encoder) {
+            if (mBitmap != null) {
+                return mCaptureTime != NO_TIME ?
+                        encoder.draw(mBitmap, mCaptureTime) : encoder.draw(mBitmap);
+            } else {
+                return mCaptureTime != NO_TIME ? encoder.draw(mCaptureTime) : encoder.draw();
+            }
+        }
+    }
+
+    /**
+     * The encoded sample, copied from the codec output.
+     * <p>
+     * The copy is a heap buffer owned by the subscriber, it may be kept as long as needed
+     * and is not accounted by the {@link BufferPool}.
+     *
+     * @author Nikitenko Gleb
+     * @since 1.0, 19/10/2026
+     */
+    @Keep@KeepPublicClassMembers
+    @SuppressWarnings("WeakerAccess, unused")
+    public static final class EncodedSample {
+
+        /** The sample data. */
+        @NonNull
+        private final ByteBuffer mData;
+        /** The presentation time (in microseconds). */
+        private final long mPresentationTime;
+        /** The buffer flags of {@link MediaCodec}. */
+        private final int mFlags;
+
+        /**
+         * Constructs a new {@link EncodedSample}.
+         *
+         * @param data the sample data from the position to the limit
+         * @param info the sample info
+         */
+        EncodedSample(@NonNull ByteBuffer data, @NonNull MediaCodec.BufferInfo info) {
+            final ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+            copy.put(data.duplicate()).flip();
+            mData = copy.asReadOnlyBuffer();
+            mPresentationTime = info.presentationTimeUs;
+            mFlags = info.flags;
+        }
+
+        /** @return the read-only sample data */
+        @NonNull
+        public final ByteBuffer getData() {
+            return mData.duplicate();
+        }
+
+        /** @return the presentation time (in microseconds) */
+        public final long getPresentationTime() {
+            return mPresentationTime;
+        }
+
+        /** @return the buffer flags of {@link MediaCodec} */
+        public final int getFlags() {
+            return mFlags;
+        }
+
+        /** @return true for the key frame */
+        public final boolean isKeyFrame() {
+            return (mFlags & MediaCodec.BUFFER_FLAG_SYNC_FRAME) != 0;
+        }
+    }
+}
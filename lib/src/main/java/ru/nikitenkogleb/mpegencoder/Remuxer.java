@@ -0,0 +1,359 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * Trims and joins the encoded video without re-encoding, by copying the compressed samples.
+ * <p>
+ * Trimming starts at a key frame, so the actual start may be earlier than requested.
+ * Joined files must be produced with identical encoder settings: the same codec, size,
+ * rotation and codec config data, such as the files of one {@link MpegEncoder.Builder}.
+ * Each joined file is placed right after the previous one, from its first sample.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+public final class Remuxer {
+
+    /** The log-cat tag. */
+    private static final String TAG = "MpegEncoder";
+
+    /** Verbose mode logging. */
+    private static final boolean VERBOSE =
+            BuildConfig.DEBUG || Log.isLoggable(TAG, Log.VERBOSE);
+    /** Warning mode logging. */
+    private static final boolean WARNINGS =
+            BuildConfig.DEBUG || Log.isLoggable(TAG, Log.WARN);
+
+    /** The mime prefix of video tracks. */
+    private static final String VIDEO = "video/";
+
+    /** The rotation key ({@code MediaFormat.KEY_ROTATION}, API23). */
+    private static final String KEY_ROTATION = "rotation-degrees";
+
+    /** The codec config data keys. */
+    private static final String[] KEYS_CSD = {"csd-0", "csd-1", "csd-2"};
+
+    /** The default sample buffer size. */
+    private static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    /** The default frame duration (in microseconds). */
+    private static final long DEFAULT_FRAME_DURATION = 1000000L / 30;
+
+    /**
+     * The caller should be prevented from constructing objects of this class.
+     * Also, this prevents even the native class from calling this constructor.
+     **/
+    private Remuxer() {throw new AssertionError();}
+
+    /**
+     * Copies the part of the video from the key frame at or before the start.
+     *
+     * @param source the source file
+     * @param path the output file
+     * @param startUs the start time (in microseconds)
+     * @param endUs the end time (in microseconds), exclusive, or -1 for the end of the source
+     *
+     * @return the actual start time (in microseconds)
+     * @throws IOException if the source can't be read or the output can't be written
+     */
+    public static long trim(@NonNull String source, @NonNull String path,
+            long startUs, long endUs) throws IOException {
+        if (startUs < 0 || (endUs >= 0 && endUs <= startUs)) {
+            throw new IllegalArgumentException("Invalid range: " + startUs + " - " + endUs);
+        }
+        final MediaExtractor extractor = new MediaExtractor();
+        try {
+            extractor.setDataSource(source);
+            final MediaFormat format = selectVideoTrack(extractor);
+            extractor.seekTo(startUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+            final long start = Math.max(extractor.getSampleTime(), 0);
+
+            final MediaMuxer muxer = newMuxer(path, format);
+            try {
+                final int track = muxer.addTrack(format);
+                muxer.start();
+                final Copy copy = new Copy(format);
+                try {
+                    copy.run(extractor, muxer, track, start, endUs, 0);
+                } finally {
+                    copy.close();
+                }
+                muxer.stop();
+                logv("Trimmed " + copy.samples + " samples from " + start);
+            } finally {
+                muxer.release();
+            }
+            return start;
+        } finally {
+            extractor.release();
+        }
+    }
+
+    /**
+     * Joins the videos one after another.
+     *
+     * @param path the output file
+     * @param sources the source files
+     *
+     * @return the duration of the output (in microseconds)
+     * @throws IOException if a source can't be read or the output can't be written
+     */
+    public static long concat(@NonNull String path, @NonNull String... sources)
+            throws IOException {
+        if (sources.length == 0) {
+            throw new IllegalArgumentException("No sources");
+        }
+        // All sources are validated up front, so an incompatible one leaves no output
+        final MediaFormat first = readFormat(sources[0]);
+        for (int i = 1; i < sources.length; i++) {
+            if (!isCompatible(first, readFormat(sources[i]))) {
+                throw new IllegalArgumentException("Incompatible source: " + sources[i]);
+            }
+        }
+
+        final MediaMuxer muxer = newMuxer(path, first);
+        long offset = 0, samples = 0;
+        boolean done = false;
+        try {
+            final int track = muxer.addTrack(first);
+            muxer.start();
+            for (String source : sources) {
+                final MediaExtractor extractor = new MediaExtractor();
+                try {
+                    extractor.setDataSource(source);
+                    final MediaFormat format = selectVideoTrack(extractor);
+                    final long start = Math.max(extractor.getSampleTime(), 0);
+                    final Copy copy = new Copy(format);
+                    try {
+                        copy.run(extractor, muxer, track, start, -1, offset);
+                    } finally {
+                        copy.close();
+                    }
+                    offset = copy.end;
+                    samples += copy.samples;
+                } finally {
+                    extractor.release();
+                }
+            }
+            muxer.stop();
+            done = true;
+        } finally {
+            muxer.release();
+            if (!done && !new File(path).delete()) {
+                logw("Unable to delete " + path);
+            }
+        }
+        logv("Joined " + samples + " samples of " + sources.length + " sources");
+        return offset;
+    }
+
+    /**
+     * @param source the source file
+     * @return the format of the video track
+     *
+     * @throws IOException if the source can't be read
+     */
+    @NonNull
+    private static MediaFormat readFormat(@NonNull String source) throws IOException {
+        final MediaExtractor extractor = new MediaExtractor();
+        try {
+            extractor.setDataSource(source);
+            return selectVideoTrack(extractor);
+        } finally {
+            extractor.release();
+        }
+    }
+
+    /**
+     * @param extractor the media extractor
+     * @return the format of the selected video track
+     */
+    @NonNull
+    private static MediaFormat selectVideoTrack(@NonNull MediaExtractor extractor) {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            final MediaFormat format = extractor.getTrackFormat(i);
+            final String mime = format.getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith(VIDEO)) {
+                extractor.selectTrack(i);
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("No video track");
+    }
+
+    /**
+     * @param path the output file
+     * @param format the format of the video track
+     *
+     * @return the muxer of the same output format as {@link MpegEncoder} uses
+     * @throws IOException if the output can't be written
+     */
+    @NonNull
+    private static MediaMuxer newMuxer(@NonNull String path, @NonNull MediaFormat format)
+            throws IOException {
+        final int outputFormat =
+                MpegEncoder.getOutputFormat(format.getString(MediaFormat.KEY_MIME));
+        final MediaMuxer result = new MediaMuxer(path, outputFormat);
+        if (outputFormat == MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4) {
+            result.setOrientationHint(getRotation(format));
+        }
+        return result;
+    }
+
+    /**
+     * @param first the format of the first source
+     * @param format the format of the next source
+     *
+     * @return true if the samples of both formats can be put in one track
+     */
+    private static boolean isCompatible(@NonNull MediaFormat first, @NonNull MediaFormat format) {
+        final String mime = first.getString(MediaFormat.KEY_MIME);
+        if (!mime.equals(format.getString(MediaFormat.KEY_MIME)) ||
+                first.getInteger(MediaFormat.KEY_WIDTH) !=
+                        format.getInteger(MediaFormat.KEY_WIDTH) ||
+                first.getInteger(MediaFormat.KEY_HEIGHT) !=
+                        format.getInteger(MediaFormat.KEY_HEIGHT) ||
+                getRotation(first) != getRotation(format)) {
+            return false;
+        }
+        for (String key : KEYS_CSD) {
+            final ByteBuffer left = first.containsKey(key) ? first.getByteBuffer(key) : null;
+            final ByteBuffer right = format.containsKey(key) ? format.getByteBuffer(key) : null;
+            if (left == null ? right != null : !left.equals(right)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param format the format of the video track
+     * @return the clockwise rotation of the track in degrees
+     */
+    private static int getRotation(@NonNull MediaFormat format) {
+        return format.containsKey(KEY_ROTATION) ? format.getInteger(KEY_ROTATION) : 0;
+    }
+
+    /** Log verbose. */
+    private static void logv(@NonNull String msg) {
+        log(Log.VERBOSE, VERBOSE, msg);
+    }
+
+    /** Log warning. */
+    private static void logw(@NonNull String msg) {
+        log(Log.WARN, WARNINGS, msg);
+    }
+
+    /**
+     * Common log-helper.
+     *
+     * @param level the log-level
+     * @param enable log-enabled flag
+     * @param msg the message
+     */
+    private static void log(int level, boolean enable, @NonNull String msg) {
+        if (enable) {
+            Log.println(level, TAG, msg);
+        }
+    }
+
+    /**
+     * The sample copy of one source.
+     *
+     * @author Nikitenko Gleb
+     * @since 1.0, 19/10/2026
+     */
+    private static final class Copy implements Closeable {
+
+        /** The sample buffer of the {@link BufferPool#getDefault()}. */
+        @NonNull
+        private final ByteBuffer mBuffer;
+
+        /** The sample info. */
+        @NonNull
+        private final MediaCodec.BufferInfo mBufferInfo = new MediaCodec.BufferInfo();
+
+        /** The frame duration of the source (in microseconds). */
+        private final long mFrameDuration;
+
+        /** The number of copied samples. */
+        long samples = 0;
+
+        /** The end of copied samples in the output (in microseconds). */
+        long end = 0;
+
+        /**
+         * Constructs a new {@link Copy}.
+         *
+         * @param format the format of the source
+         */
+        Copy(@NonNull MediaFormat format) {
+            mBuffer = BufferPool.getDefault().acquire(
+                    format.containsKey(MediaFormat.KEY_MAX_INPUT_SIZE) ?
+                            format.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE) :
+                            DEFAULT_BUFFER_SIZE);
+            mFrameDuration = format.containsKey(MediaFormat.KEY_FRAME_RATE) &&
+                    format.getInteger(MediaFormat.KEY_FRAME_RATE) > 0 ?
+                    1000000L / format.getInteger(MediaFormat.KEY_FRAME_RATE) :
+                    DEFAULT_FRAME_DURATION;
+        }
+
+        /**
+         * Copies the samples.
+         *
+         * @param extractor the extractor positioned at the first sample
+         * @param muxer the started muxer
+         * @param track the output track
+         * @param startUs the source time mapped to the offset (in microseconds)
+         * @param endUs the exclusive end of the source (in microseconds) or -1
+         * @param offsetUs the output time of the start (in microseconds)
+         */
+        @SuppressWarnings("WrongConstant")
+        final void run(@NonNull MediaExtractor extractor, @NonNull MediaMuxer muxer,
+                int track, long startUs, long endUs, long offsetUs) {
+            long last = -1, previous = -1;
+            int size;
+            while ((size = extractor.readSampleData(mBuffer, 0)) >= 0) {
+                final long time = extractor.getSampleTime();
+                if (endUs >= 0 && time >= endUs) {
+                    break;
+                }
+                mBufferInfo.set(0, size, offsetUs + time - startUs,
+                        (extractor.getSampleFlags() & MediaExtractor.SAMPLE_FLAG_SYNC) != 0 ?
+                                MediaCodec.BUFFER_FLAG_SYNC_FRAME : 0);
+                muxer.writeSampleData(track, mBuffer, mBufferInfo);
+                if (mBufferInfo.presentationTimeUs > last) {
+                    previous = last;
+                    last = mBufferInfo.presentationTimeUs;
+                }
+                samples++;
+                extractor.advance();
+            }
+            end = last < 0 ? offsetUs :
+                    last + (previous < 0 ? mFrameDuration : last - previous);
+        }
+
+        /** Returns the sample buffer to the pool. */
+        @Override
+        public final void close() {
+            BufferPool.getDefault().release(mBuffer);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * The preallocated ring of encoded samples between one producer and one consumer thread.
+ * <p>
+ * The sample data is copied to a direct buffer, the metadata to primitive arrays,
+ * so nothing is allocated per sample. Each side owns its index and publishes it with
+ * {@link AtomicLong#lazySet(long)}, so no locks are taken. A sample never wraps around
+ * the end of the data buffer, the tail of the buffer is skipped instead.
+ * The data buffer is taken from the {@link BufferPool#getDefault()}.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+final class SampleRing implements Closeable {
+
+    /** The sample data. */
+    @NonNull
+    private final ByteBuffer mData;
+    /** The producer view of the data. */
+    @NonNull
+    private final ByteBuffer mWriteView;
+    /** The consumer view of the data. */
+    @NonNull
+    private final ByteBuffer mReadView;
+    /** The data capacity in bytes. */
+    private final int mCapacity;
+
+    /** The start of samples in the data stream. */
+    @NonNull
+    private final long[] mStarts;
+    /** The sizes of samples. */
+    @NonNull
+    private final int[] mSizes;
+    /** The presentation times of samples (in microseconds). */
+    @NonNull
+    private final long[] mTimes;
+    /** The buffer flags of samples. */
+    @NonNull
+    private final int[] mFlags;
+    /** The number of slots. */
+    private final int mSlots;
+
+    /** The number of published samples. */
+    @NonNull
+    private final AtomicLong mHead = new AtomicLong();
+    /** The number of consumed samples. */
+    @NonNull
+    private final AtomicLong mTail = new AtomicLong();
+    /** The end of consumed samples in the data stream. */
+    @NonNull
+    private final AtomicLong mFreed = new AtomicLong();
+
+    /** The end of published samples in the data stream, owned by the producer. */
+    private long mWritten = 0;
+    /** The slot of the peeked sample, owned by the consumer. */
+    private int mPeeked = -1;
+
+    /**
+     * Constructs a new {@link SampleRing}.
+     *
+     * @param capacity the data capacity in bytes
+     * @param slots the max number of samples
+     */
+    SampleRing(int capacity, int slots) {
+        this(BufferPool.getDefault().acquire(checkCapacity(capacity, slots)), capacity, slots);
+    }
+
+    /**
+     * Constructs a new {@link SampleRing}.
+     *
+     * @param data the data buffer of the {@link BufferPool#getDefault()}
+     * @param capacity the data capacity in bytes
+     * @param slots the max number of samples
+     */
+    private SampleRing(@NonNull ByteBuffer data, int capacity, int slots) {
+        mData = data;
+        mWriteView = mData.duplicate();
+        mReadView = mData.duplicate();
+        mCapacity = capacity;
+        mStarts = new long[slots];
+        mSizes = new int[slots];
+        mTimes = new long[slots];
+        mFlags = new int[slots];
+        mSlots = slots;
+    }
+
+    /**
+     * Create a {@link SampleRing} unless its data exceeds the memory budget.
+     *
+     * @param capacity the data capacity in bytes
+     * @param slots the max number of samples
+     *
+     * @return the ring or null if the memory budget of the {@link BufferPool} is exceeded
+     */
+    @Nullable
+    static SampleRing tryCreate(int capacity, int slots) {
+        final ByteBuffer data =
+                BufferPool.getDefault().tryAcquire(checkCapacity(capacity, slots));
+        return data != null ? new SampleRing(data, capacity, slots) : null;
+    }
+
+    /**
+     * @param capacity the data capacity in bytes
+     * @param slots the max number of samples
+     *
+     * @return the capacity
+     */
+    private static int checkCapacity(int capacity, int slots) {
+        if (capacity <= 0 || slots <= 0) {
+            throw new IllegalArgumentException("Invalid ring: " + capacity + ", " + slots);
+        }
+        return capacity;
+    }
+
+    /** @return the data capacity in bytes */
+    final int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * Copies the sample to the ring, called by the producer.
+     *
+     * @param data the sample data from the position to the limit, the position is kept
+     * @param presentationTime the presentation time (in microseconds)
+     * @param flags the buffer flags
+     *
+     * @return false if the ring is full
+     */
+    final boolean offer(@NonNull ByteBuffer data, long presentationTime, int flags) {
+        final int size = data.remaining();
+        if (size > mCapacity) {
+            throw new IllegalArgumentException("Too large sample: " + size);
+        }
+        final long head = mHead.get();
+        if (head - mTail.get() == mSlots) {
+            return false;
+        }
+        long start = mWritten;
+        int position = (int) (start % mCapacity);
+        if (position + size > mCapacity) {
+            start += mCapacity - position;
+            position = 0;
+        }
+        if (start + size - mFreed.get() > mCapacity) {
+            return false;
+        }
+
+        final int origin = data.position();
+        mWriteView.limit(position + size).position(position);
+        mWriteView.put(data);
+        data.position(origin);
+
+        final int slot = (int) (head % mSlots);
+        mStarts[slot] = start;
+        mSizes[slot] = size;
+        mTimes[slot] = presentationTime;
+        mFlags[slot] = flags;
+        mWritten = start + size;
+        mHead.lazySet(head + 1);
+        return true;
+    }
+
+    /**
+     * Gets the oldest sample without removing it, called by the consumer.
+     * The returned view is valid until {@link #remove()}.
+     *
+     * @return the sample data from the position to the limit or null if the ring is empty
+     */
+    @Nullable
+    final ByteBuffer peek() {
+        final long tail = mTail.get();
+        if (tail == mHead.get()) {
+            return null;
+        }
+        mPeeked = (int) (tail % mSlots);
+        final int position = (int) (mStarts[mPeeked] % mCapacity);
+        mReadView.limit(position + mSizes[mPeeked]).position(position);
+        return mReadView;
+    }
+
+    /** @return the presentation time of the peeked sample (in microseconds) */
+    final long getPresentationTime() {
+        return mTimes[mPeeked];
+    }
+
+    /** @return the buffer flags of the peeked sample */
+    final int getFlags() {
+        return mFlags[mPeeked];
+    }
+
+    /** Removes the peeked sample, called by the consumer. */
+    final void remove() {
+        if (mPeeked == -1) {
+            throw new IllegalStateException("Nothing peeked");
+        }
+        mFreed.lazySet(mStarts[mPeeked] + mSizes[mPeeked]);
+        mTail.lazySet(mTail.get() + 1);
+        mPeeked = -1;
+    }
+
+    /** @return true if the ring has no samples */
+    final boolean isEmpty() {
+        return mTail.get() == mHead.get();
+    }
+
+    /** Returns the data buffer to the pool, the ring must not be used after that. */
+    @Override
+    public final void close() {
+        BufferPool.getDefault().release(mData);
+    }
+}
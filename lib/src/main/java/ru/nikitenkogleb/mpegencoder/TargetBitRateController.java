@@ -0,0 +1,146 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import android.support.annotation.NonNull;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * The default {@link MpegEncoder.BitRateController}.
+ * <p>
+ * Measures the output bitrate over one-second windows and scales the encoder bitrate
+ * towards the target: a constant throughput or the rest of a file-size budget
+ * spread over the rest of the duration.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+public final class TargetBitRateController implements MpegEncoder.BitRateController {
+
+    /** Microseconds in one second. */
+    private static final long MICROS_PER_SECOND = 1000000L;
+
+    /** The measurement window (in microseconds). */
+    private static final long WINDOW = MICROS_PER_SECOND;
+
+    /** The min relative change of bitrate (in percents). */
+    private static final int THRESHOLD = 5;
+
+    /** The default min bitrate. */
+    private static final int MIN_BIT_RATE = 64000;
+
+    /** The target throughput (in bits per second), 0 for the file-size budget. */
+    private final int mThroughput;
+
+    /** The file-size budget (in bytes). */
+    private final long mBudget;
+
+    /** The expected duration (in microseconds). */
+    private final long mDuration;
+
+    /** The bitrate bounds. */
+    private final int mMinBitRate, mMaxBitRate;
+
+    /** The total number of bytes. */
+    private long mBytes = 0;
+
+    /** The presentation time of the first sample. */
+    private long mStartTime = -1;
+
+    /** The start of current window. */
+    private long mWindowStart = -1;
+
+    /** The bytes of current window. */
+    private long mWindowBytes = 0;
+
+    /** Constructs a new {@link TargetBitRateController}. */
+    private TargetBitRateController(int throughput, long budget, long duration,
+            int minBitRate, int maxBitRate) {
+        if (minBitRate <= 0 || maxBitRate < minBitRate) {
+            throw new IllegalArgumentException("Invalid bounds: " + minBitRate + "-" + maxBitRate);
+        }
+        mThroughput = throughput;
+        mBudget = budget;
+        mDuration = duration;
+        mMinBitRate = minBitRate;
+        mMaxBitRate = maxBitRate;
+    }
+
+    /**
+     * Creates a controller keeping the output at the given throughput.
+     *
+     * @param bps the target throughput in bits per second
+     *
+     * @return a new controller
+     */
+    @NonNull
+    public static TargetBitRateController throughput(int bps) {
+        if (bps <= 0) {
+            throw new IllegalArgumentException("Invalid throughput: " + bps);
+        }
+        return new TargetBitRateController(bps, 0, 0, Math.min(MIN_BIT_RATE, bps), bps);
+    }
+
+    /**
+     * Creates a controller keeping the output file within the given size.
+     *
+     * @param bytes the file-size budget in bytes
+     * @param durationMs the expected duration of video in milliseconds
+     * @param maxBitRate the max allowed bitrate
+     *
+     * @return a new controller
+     */
+    @NonNull
+    public static TargetBitRateController fileSize(long bytes, long durationMs, int maxBitRate) {
+        if (bytes <= 0 || durationMs <= 0) {
+            throw new IllegalArgumentException("Invalid budget: " + bytes + "/" + durationMs);
+        }
+        return new TargetBitRateController(0, bytes, durationMs * 1000,
+                Math.min(MIN_BIT_RATE, maxBitRate), maxBitRate);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public final int onSample(long presentationTime, int size, int bitRate) {
+        mBytes += size;
+        if (mWindowStart == -1) {
+            mWindowStart = presentationTime;
+            mStartTime = presentationTime;
+        }
+
+        final long elapsed = presentationTime - mWindowStart;
+        if (elapsed < WINDOW) {
+            mWindowBytes += size;
+            return bitRate;
+        }
+
+        final long actual = mWindowBytes * 8 * MICROS_PER_SECOND / elapsed;
+        mWindowStart = presentationTime;
+        mWindowBytes = size;
+        if (actual == 0) {
+            return bitRate;
+        }
+
+        final long target = getTarget(presentationTime);
+        final long result = Math.max(mMinBitRate,
+                Math.min(mMaxBitRate, (long) bitRate * target / actual));
+        return Math.abs(result - bitRate) * 100 < (long) bitRate * THRESHOLD ?
+                bitRate : (int) result;
+    }
+
+    /**
+     * @param presentationTime the current presentation time
+     * @return the target bitrate
+     */
+    private long getTarget(long presentationTime) {
+        if (mThroughput != 0) {
+            return mThroughput;
+        }
+        final long bytes = mBudget - mBytes;
+        final long duration = Math.max(WINDOW, mDuration - (presentationTime - mStartTime));
+        return bytes <= 0 ? mMinBitRate : bytes * 8 * MICROS_PER_SECOND / duration;
+    }
+}
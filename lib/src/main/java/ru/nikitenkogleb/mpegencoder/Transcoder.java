@@ -0,0 +1,328 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * Re-encodes the video track of a media file through the {@link MpegEncoder}.
+ * <p>
+ * The decoder renders straight to the external input of the encoder,
+ * so frames never leave the GPU and go through the same shader path as other inputs,
+ * including the transform and overlays of the encoder.
+ * Decoding is pipelined with encoding: the decoder input is queued as far ahead as
+ * the decoder takes it and a few decoded frames are held while the encoder draws
+ * the current one, so the decoder keeps working while the GPU and the encoder do.
+ * The frames are rendered to the input surface one at a time.
+ * <p>
+ * The rotation of the source is not applied to the frames, it is kept as the
+ * orientation hint of the output instead, see {@link #encoder()}.
+ * <p>
+ * The frame callbacks of the external input are delivered on the looper of the thread
+ * created the encoder or on the main looper, so {@link #transcode(MpegEncoder)}
+ * must not be called on that looper.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+public final class Transcoder implements Closeable {
+
+    /** The log-cat tag. */
+    private static final String TAG = "MpegEncoder";
+
+    /** Verbose mode logging. */
+    private static final boolean VERBOSE =
+            BuildConfig.DEBUG || Log.isLoggable(TAG, Log.VERBOSE);
+
+    /** The mime prefix of video tracks. */
+    private static final String VIDEO = "video/";
+
+    /** The rotation key ({@code MediaFormat.KEY_ROTATION}, API23). */
+    private static final String KEY_ROTATION = "rotation-degrees";
+
+    /** The decoder buffers waiting timeout (in microseconds). */
+    private static final int TIMEOUT_DECODER_WAIT = 10000;
+
+    /** The max decoded frames held ahead of the encoder. */
+    private static final int MAX_PENDING_FRAMES = 3;
+
+    /** The rendered frame waiting timeout (in milliseconds). */
+    private static final int TIMEOUT_FRAME_WAIT = 2500;
+
+    /** The not specified parameter. */
+    private static final int NOT_SET = -1;
+
+    /** The media extractor. */
+    @NonNull
+    private final MediaExtractor mExtractor = new MediaExtractor();
+
+    /** The format of the video track, without the rotation. */
+    @NonNull
+    private final MediaFormat mFormat;
+
+    /** The clockwise rotation of the source in degrees. */
+    private final int mRotation;
+
+    /** The decoded frames held ahead of the encoder, allocated up front. */
+    @NonNull
+    private final MediaCodec.BufferInfo[] mPending =
+            new MediaCodec.BufferInfo[MAX_PENDING_FRAMES];
+
+    /** The output buffer indices of the held frames. */
+    @NonNull
+    private final int[] mPendingIndices = new int[MAX_PENDING_FRAMES];
+
+    /** The object was released. */
+    private boolean mReleased;
+
+    /**
+     * Constructs a new {@link Transcoder}.
+     *
+     * @param path the source file
+     * @throws IOException if the source can't be read
+     */
+    public Transcoder(@NonNull String path) throws IOException {
+        try {
+            mExtractor.setDataSource(path);
+            mFormat = selectVideoTrack(mExtractor);
+        } catch (IOException | RuntimeException exception) {
+            mExtractor.release();
+            throw exception;
+        }
+
+        // The decoder would rotate the frames rendered to the surface,
+        // the rotation goes to the orientation hint of the output instead
+        mRotation = mFormat.containsKey(KEY_ROTATION) ? mFormat.getInteger(KEY_ROTATION) : 0;
+        mFormat.setInteger(KEY_ROTATION, 0);
+
+        for (int i = 0; i < MAX_PENDING_FRAMES; i++) {
+            mPending[i] = new MediaCodec.BufferInfo();
+        }
+    }
+
+    /**
+     * @param extractor the media extractor
+     * @return the format of the selected video track
+     */
+    @NonNull
+    private static MediaFormat selectVideoTrack(@NonNull MediaExtractor extractor) {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            final MediaFormat format = extractor.getTrackFormat(i);
+            final String mime = format.getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith(VIDEO)) {
+                extractor.selectTrack(i);
+                return format;
+            }
+        }
+        throw new IllegalArgumentException("No video track");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public final void close() {
+        checkState();
+        mExtractor.release();
+        mReleased = true;
+    }
+
+    /** Check current state. */
+    private void checkState() {
+        if (mReleased) {
+            throw new IllegalStateException("Already released");
+        }
+    }
+
+    /** @return the width of the source (in pixels) */
+    public final int getWidth() {
+        return mFormat.getInteger(MediaFormat.KEY_WIDTH);
+    }
+
+    /** @return the height of the source (in pixels) */
+    public final int getHeight() {
+        return mFormat.getInteger(MediaFormat.KEY_HEIGHT);
+    }
+
+    /** @return the clockwise rotation of the source in degrees */
+    public final int getRotation() {
+        return mRotation;
+    }
+
+    /** @return the frame-rate of the source or -1 if it isn't known */
+    public final int getFrameRate() {
+        return mFormat.containsKey(MediaFormat.KEY_FRAME_RATE) ?
+                mFormat.getInteger(MediaFormat.KEY_FRAME_RATE) : NOT_SET;
+    }
+
+    /** @return the duration of the source (in microseconds) or -1 if it isn't known */
+    public final long getDuration() {
+        return mFormat.containsKey(MediaFormat.KEY_DURATION) ?
+                mFormat.getLong(MediaFormat.KEY_DURATION) : NOT_SET;
+    }
+
+    /**
+     * Create a {@link MpegEncoder.Builder} with the external input of the source size,
+     * the source orientation and frame-rate.
+     * The frames are encoded unrotated in the coded size of the source,
+     * players apply the rotation by the orientation hint.
+     * The output size is given by {@link MpegEncoder.Builder#to(String, int, int)},
+     * the input is scaled on the GPU.
+     *
+     * @return a {@link MpegEncoder.Builder}
+     */
+    @NonNull
+    public final MpegEncoder.Builder encoder() {
+        final MpegEncoder.Builder result =
+                MpegEncoder.from(getWidth(), getHeight())
+                        .external()
+                        .orientation(getRotation());
+        final int fps = getFrameRate();
+        if (fps > 0) {
+            result.fps(fps);
+        }
+        return result;
+    }
+
+    /**
+     * Decodes the whole video track to the encoder.
+     * <p>
+     * The encoder must be built with the external input of the source size,
+     * see {@link #encoder()}. Frames are drawn with the source timestamps,
+     * so in the non real-time mode the timing of the source is preserved.
+     *
+     * @param encoder the encoder
+     * @return the number of encoded frames
+     *
+     * @throws IOException if the decoder can't be created
+     */
+    @SuppressWarnings("deprecation")
+    public final long transcode(@NonNull MpegEncoder encoder) throws IOException {
+        checkState();
+        mExtractor.seekTo(0, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+
+        final MediaCodec decoder =
+                MediaCodec.createDecoderByType(mFormat.getString(MediaFormat.KEY_MIME));
+        long result = 0;
+        try {
+            decoder.configure(mFormat, encoder.getInputSurface(), null, 0);
+            decoder.start();
+            final ByteBuffer[] inputs = decoder.getInputBuffers();
+
+            boolean inputDone = false, outputDone = false;
+            int head = 0, count = 0;
+            while (!outputDone || count != 0) {
+                while (!inputDone) {
+                    final int index = decoder.dequeueInputBuffer(0);
+                    if (index < 0) {
+                        break;
+                    }
+                    inputDone = queueSample(decoder, inputs, index);
+                }
+
+                // Take the decoded frames ahead, the decoder keeps working while they wait
+                while (!outputDone && count < MAX_PENDING_FRAMES) {
+                    final int slot = (head + count) % MAX_PENDING_FRAMES;
+                    final int status = decoder.dequeueOutputBuffer(mPending[slot],
+                            count == 0 ? TIMEOUT_DECODER_WAIT : 0);
+                    if (status == MediaCodec.INFO_TRY_AGAIN_LATER) {
+                        break;
+                    } else if (status < 0) {
+                        continue;
+                    }
+                    outputDone =
+                            (mPending[slot].flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+                    if (mPending[slot].size == 0) {
+                        decoder.releaseOutputBuffer(status, false);
+                    } else {
+                        mPendingIndices[slot] = status;
+                        count++;
+                    }
+                }
+                if (count == 0) {
+                    continue;
+                }
+
+                final long presentationTime = mPending[head].presentationTimeUs;
+                decoder.releaseOutputBuffer(mPendingIndices[head], true);
+                head = (head + 1) % MAX_PENDING_FRAMES;
+                count--;
+                if (!encoder.awaitFrame(TIMEOUT_FRAME_WAIT)) {
+                    throw new RuntimeException("Frame wait timed out");
+                }
+                if (encoder.draw(presentationTime * 1000L)) {
+                    result++;
+                }
+            }
+            decoder.stop();
+        } finally {
+            decoder.release();
+        }
+        logv("Transcoded frames: " + result);
+        return result;
+    }
+
+    /**
+     * Queues the next sample of the source to the decoder.
+     *
+     * @param decoder the decoder
+     * @param inputs the input buffers of the decoder
+     * @param index the index of the free input buffer
+     *
+     * @return true if the end of stream was queued
+     */
+    private boolean queueSample(@NonNull MediaCodec decoder, @NonNull ByteBuffer[] inputs,
+            int index) {
+        final int size = mExtractor.readSampleData(inputs[index], 0);
+        if (size < 0) {
+            decoder.queueInputBuffer(index, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+            return true;
+        }
+        decoder.queueInputBuffer(index, 0, size, mExtractor.getSampleTime(), 0);
+        mExtractor.advance();
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    protected final void finalize() throws Throwable {
+        try {
+            if (!mReleased) {
+                close();
+                throw new RuntimeException (
+                        "\nA resource was acquired at attached stack trace but never released." +
+                                "\nSee java.io.Closeable for info on avoiding resource leaks."
+                );
+            }
+        } finally {
+            super.finalize();
+        }
+    }
+
+    /** Log verbose. */
+    private static void logv(@NonNull String msg) {
+        log(Log.VERBOSE, VERBOSE, msg);
+    }
+
+    /**
+     * Common log-helper.
+     *
+     * @param level the log-level
+     * @param enable log-enabled flag
+     * @param msg the message
+     */
+    private static void log(int level, boolean enable, @NonNull String msg) {
+        if (enable) {
+            Log.println(level, TAG, msg);
+        }
+    }
+}
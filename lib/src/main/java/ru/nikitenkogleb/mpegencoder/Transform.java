@@ -0,0 +1,96 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import android.graphics.Rect;
+import android.opengl.Matrix;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import proguard.annotation.Keep;
+import proguard.annotation.KeepPublicProtectedClassMembers;
+
+/**
+ * The geometry transform of input frames: crop, rotation, mirror and scaling.
+ * <p>
+ * Computes the {@code uMVPMatrix} and {@code uSTMatrix} of the shader,
+ * so that the transform is applied on the GPU.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+@Keep
+@KeepPublicProtectedClassMembers
+@SuppressWarnings("WeakerAccess, unused")
+final class Transform {
+
+    /** The matrix size. */
+    static final int MATRIX_SIZE = 16;
+
+    /** The crop rectangle in input pixels. */
+    @Nullable
+    Rect crop = null;
+
+    /** The clockwise rotation in degrees. */
+    int rotation = 0;
+
+    /** The horizontal mirror. */
+    boolean mirror = false;
+
+    /** The scale type. */
+    @MpegEncoder.ScaleType
+    int scaleType = MpegEncoder.ScaleType.STRETCH;
+
+    /** @return true if no transform is specified */
+    final boolean isIdentity() {
+        return crop == null && rotation == 0 && !mirror &&
+                scaleType == MpegEncoder.ScaleType.STRETCH;
+    }
+
+    /**
+     * Computes the shader matrices.
+     *
+     * @param inWidth the input width
+     * @param inHeight the input height
+     * @param outWidth the output width
+     * @param outHeight the output height
+     * @param mvp the vertex matrix
+     * @param st the texture matrix
+     *
+     * @return true if the transformed frame doesn't cover the whole output
+     */
+    final boolean compute(int inWidth, int inHeight, int outWidth, int outHeight,
+            @NonNull float[] mvp, @NonNull float[] st) {
+        final Rect rect = crop != null ? crop : new Rect(0, 0, inWidth, inHeight);
+        if (rect.isEmpty() || rect.left < 0 || rect.top < 0 ||
+                rect.right > inWidth || rect.bottom > inHeight) {
+            throw new IllegalArgumentException("Invalid crop: " + rect);
+        }
+
+        Matrix.setIdentityM(st, 0);
+        Matrix.translateM(st, 0, (float) rect.left / inWidth,
+                1f - (float) rect.bottom / inHeight, 0);
+        Matrix.scaleM(st, 0, (float) rect.width() / inWidth, (float) rect.height() / inHeight, 1);
+
+        final boolean swap = rotation % 180 != 0;
+        final int width = swap ? rect.height() : rect.width();
+        final int height = swap ? rect.width() : rect.height();
+
+        float scaleX = 1f, scaleY = 1f;
+        if (scaleType != MpegEncoder.ScaleType.STRETCH) {
+            final float horizontal = (float) outWidth / width;
+            final float vertical = (float) outHeight / height;
+            final float scale = scaleType == MpegEncoder.ScaleType.FIT ?
+                    Math.min(horizontal, vertical) : Math.max(horizontal, vertical);
+            scaleX = width * scale / outWidth;
+            scaleY = height * scale / outHeight;
+        }
+
+        Matrix.setIdentityM(mvp, 0);
+        Matrix.scaleM(mvp, 0, scaleX, scaleY, 1);
+        Matrix.rotateM(mvp, 0, -rotation, 0, 0, 1);
+        if (mirror) {
+            Matrix.scaleM(mvp, 0, -1, 1, 1);
+        }
+
+        return scaleX < 1f || scaleY < 1f;
+    }
+}
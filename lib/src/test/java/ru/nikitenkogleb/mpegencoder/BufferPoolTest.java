@@ -0,0 +1,126 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The {@link BufferPool} Local Unit Test.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+public class BufferPoolTest {
+
+    /** The smallest size class. */
+    private static final int MIN_CLASS = 4096;
+
+    /** The test budget. */
+    private static final long BUDGET = 4 * MIN_CLASS;
+
+    /** Test for size classes. */
+    @Test
+    public final void testSizeClasses() throws Exception {
+        Assert.assertEquals(12, BufferPool.getSizeClass(1));
+        Assert.assertEquals(12, BufferPool.getSizeClass(MIN_CLASS));
+        Assert.assertEquals(13, BufferPool.getSizeClass(MIN_CLASS + 1));
+        Assert.assertEquals(20, BufferPool.getSizeClass(1 << 20));
+    }
+
+    /** Test for reuse of buffers by size class. */
+    @Test
+    public final void testReuse() throws Exception {
+        final BufferPool pool = new BufferPool(BUDGET);
+        final ByteBuffer first = pool.acquire(100);
+        Assert.assertTrue(first.isDirect());
+        Assert.assertEquals(100, first.limit());
+        Assert.assertEquals(MIN_CLASS, first.capacity());
+        pool.release(first);
+
+        final ByteBuffer second = pool.acquire(200);
+        Assert.assertSame(first, second);
+        Assert.assertEquals(200, second.limit());
+        Assert.assertEquals(1, pool.getHits());
+        Assert.assertEquals(1, pool.getMisses());
+        pool.release(second);
+    }
+
+    /** Test for the budget and the statistics. */
+    @Test
+    public final void testBudget() throws Exception {
+        final BufferPool pool = new BufferPool(BUDGET);
+        final ByteBuffer large = pool.acquire(2 * MIN_CLASS);
+        final ByteBuffer small = pool.acquire(MIN_CLASS);
+        Assert.assertEquals(3 * MIN_CLASS, pool.getInUse());
+        Assert.assertNull(pool.tryAcquire(2 * MIN_CLASS));
+        try {
+            pool.acquire(2 * MIN_CLASS);
+            Assert.fail();
+        } catch (IllegalStateException exception) {
+            Assert.assertNotNull(exception.getMessage());
+        }
+
+        // The free large buffer is dropped to make room for small ones
+        pool.release(large);
+        Assert.assertEquals(MIN_CLASS, pool.getInUse());
+        Assert.assertEquals(3 * MIN_CLASS, pool.getAllocated());
+        final ByteBuffer second = pool.acquire(MIN_CLASS);
+        final ByteBuffer third = pool.acquire(MIN_CLASS);
+        final ByteBuffer fourth = pool.acquire(MIN_CLASS);
+        Assert.assertEquals(BUDGET, pool.getAllocated());
+        Assert.assertEquals(BUDGET, pool.getPeak());
+
+        pool.release(small);
+        pool.release(second);
+        pool.release(third);
+        pool.release(fourth);
+        Assert.assertEquals(0, pool.getInUse());
+        Assert.assertEquals(BUDGET, pool.getAllocated());
+        pool.trim();
+        Assert.assertEquals(0, pool.getAllocated());
+        Assert.assertEquals(BUDGET, pool.getPeak());
+    }
+
+    /** Test for the lowered budget. */
+    @Test
+    public final void testLowerBudget() throws Exception {
+        final BufferPool pool = new BufferPool(BUDGET);
+        final ByteBuffer first = pool.acquire(MIN_CLASS);
+        final ByteBuffer second = pool.acquire(MIN_CLASS);
+        pool.release(first);
+        pool.setBudget(MIN_CLASS);
+        Assert.assertEquals(MIN_CLASS, pool.getAllocated());
+        Assert.assertNull(pool.tryAcquire(MIN_CLASS));
+        pool.release(second);
+        Assert.assertEquals(MIN_CLASS, pool.getAllocated());
+    }
+
+    /** Test for foreign buffers. */
+    @Test(expected = IllegalArgumentException.class)
+    public final void testForeign() throws Exception {
+        new BufferPool(BUDGET).release(ByteBuffer.allocate(MIN_CLASS));
+    }
+
+    /** Test for the duplicate of a pool buffer. */
+    @Test(expected = IllegalArgumentException.class)
+    public final void testDuplicate() throws Exception {
+        final BufferPool pool = new BufferPool(BUDGET);
+        pool.release(pool.acquire(MIN_CLASS).duplicate());
+    }
+
+    /** Test for the twice released buffer. */
+    @Test
+    public final void testDoubleRelease() throws Exception {
+        final BufferPool pool = new BufferPool(BUDGET);
+        final ByteBuffer buffer = pool.acquire(MIN_CLASS);
+        pool.acquire(MIN_CLASS);
+        pool.release(buffer);
+        try {
+            pool.release(buffer);
+            Assert.fail();
+        } catch (IllegalArgumentException exception) {
+            Assert.assertEquals(MIN_CLASS, pool.getInUse());
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@link EncoderInfo} Local Unit Test.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+public class EncoderInfoTest {
+
+    /** H.264 Advanced Video Coding. */
+    private static final String MIME_TYPE = "video/avc";
+
+    /** Test for serialization. */
+    @Test
+    public final void testSerialize() throws Exception {
+        final EncoderInfo info = newInfo("OMX.qcom.video.encoder.avc", true, 16, 60);
+        final EncoderInfo parsed = EncoderInfo.parse(info.serialize());
+        Assert.assertNotNull(parsed);
+        Assert.assertEquals(info, parsed);
+        Assert.assertTrue(parsed.isHardware());
+        Assert.assertTrue(parsed.isProfileSupported(8));
+        Assert.assertFalse(parsed.isProfileSupported(2));
+        Assert.assertTrue(parsed.isBitRateModeSupported(MpegEncoder.BitRateMode.CBR));
+        Assert.assertFalse(parsed.isBitRateModeSupported(MpegEncoder.BitRateMode.CQ));
+
+        final EncoderInfo empty = new EncoderInfo("c2.android.avc.encoder", MIME_TYPE,
+                false, true, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, new int[0]);
+        Assert.assertEquals(empty, EncoderInfo.parse(empty.serialize()));
+    }
+
+    /** Test for malformed lines. */
+    @Test
+    public final void testMalformed() throws Exception {
+        Assert.assertNull(EncoderInfo.parse(""));
+        Assert.assertNull(EncoderInfo.parse("name;video/avc;true"));
+        Assert.assertNull(EncoderInfo.parse(newInfo("name", true, 1, 30).serialize()
+                .replace(";30;", ";x;")));
+    }
+
+    /** Test for frame size limits. */
+    @Test
+    public final void testSize() throws Exception {
+        final EncoderInfo info = newInfo("name", true, 1, 30);
+        Assert.assertTrue(info.isSizeSupported(1920, 1088));
+        Assert.assertFalse(info.isSizeSupported(4096, 1088));
+        Assert.assertFalse(info.isSizeSupported(1921, 1088));
+    }
+
+    /** Test for ranking. */
+    @Test
+    public final void testRanking() throws Exception {
+        final EncoderInfo software = newInfo("OMX.google.h264.encoder", false, 32, 120);
+        final EncoderInfo slow = newInfo("OMX.slow.avc", true, 16, 30);
+        final EncoderInfo fast = newInfo("OMX.fast.avc", true, 2, 60);
+        final EncoderInfo wide = newInfo("OMX.wide.avc", true, 8, 60);
+
+        final List<EncoderInfo> list = new ArrayList<>();
+        Collections.addAll(list, software, slow, fast, wide);
+        Collections.sort(list, EncoderInfo.RANKING);
+
+        Assert.assertEquals(wide, list.get(0));
+        Assert.assertEquals(fast, list.get(1));
+        Assert.assertEquals(slow, list.get(2));
+        Assert.assertEquals(software, list.get(3));
+    }
+
+    /** Test for ranking by the performance points. */
+    @Test
+    public final void testPerformanceRanking() throws Exception {
+        final EncoderInfo fast = newInfo("OMX.fast.avc", true, 2, 30, 972000);
+        final EncoderInfo slow = newInfo("OMX.slow.avc", true, 16, 120, 244800);
+        final EncoderInfo unknown = newInfo("OMX.unknown.avc", true, 16, 240);
+
+        final List<EncoderInfo> list = new ArrayList<>();
+        Collections.addAll(list, unknown, slow, fast);
+        Collections.sort(list, EncoderInfo.RANKING);
+
+        Assert.assertEquals(fast, list.get(0));
+        Assert.assertEquals(slow, list.get(1));
+        Assert.assertEquals(unknown, list.get(2));
+        Assert.assertEquals(fast, EncoderInfo.parse(fast.serialize()));
+        Assert.assertEquals(972000, fast.getPerformance());
+    }
+
+    /**
+     * @param name the codec name
+     * @param hardware the hardware flag
+     * @param instances the max instances
+     * @param frameRate the max frame rate
+     *
+     * @return a new encoder info
+     */
+    private static EncoderInfo newInfo(String name, boolean hardware, int instances,
+            int frameRate) {
+        return newInfo(name, hardware, instances, frameRate, 0);
+    }
+
+    /**
+     * @param name the codec name
+     * @param hardware the hardware flag
+     * @param instances the max instances
+     * @param frameRate the max frame rate
+     * @param performance the max macroblocks per second of the performance points
+     *
+     * @return a new encoder info
+     */
+    private static EncoderInfo newInfo(String name, boolean hardware, int instances,
+            int frameRate, int performance) {
+        return new EncoderInfo(name, MIME_TYPE, hardware, true, instances, 1920, 1088, 2, 2,
+                frameRate, 1000, 40000000, (1 << MpegEncoder.BitRateMode.VBR) |
+                (1 << MpegEncoder.BitRateMode.CBR), performance, new int[] {1, 4, 8});
+    }
+}
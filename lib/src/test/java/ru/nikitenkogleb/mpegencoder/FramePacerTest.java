@@ -0,0 +1,154 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The {@link FramePacer} Local Unit Test.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+public class FramePacerTest {
+
+    /** The test frame-rate. */
+    private static final int FRAME_RATE = 10;
+    /** The frame interval (in nanoseconds). */
+    private static final long INTERVAL = 100000000L;
+    /** The max latency (in nanoseconds). */
+    private static final long MAX_LATENCY = 3 * INTERVAL;
+
+    /** Test for synthetic timestamps. */
+    @Test
+    public final void testSynthetic() throws Exception {
+        final FramePacer pacer = new FramePacer(null, FRAME_RATE, MAX_LATENCY);
+        Assert.assertEquals(0, pacer.next());
+        Assert.assertEquals(INTERVAL, pacer.next());
+        Assert.assertEquals(2 * INTERVAL, pacer.next());
+        Assert.assertEquals(3, pacer.getFrames());
+        Assert.assertEquals(0, pacer.getDecimated());
+        Assert.assertEquals(0, pacer.getDropped());
+    }
+
+    /** Test for clock timestamps. */
+    @Test
+    public final void testRealTime() throws Exception {
+        final TestClock clock = new TestClock();
+        final FramePacer pacer = new FramePacer(clock, FRAME_RATE, MAX_LATENCY);
+
+        clock.time = 5000;
+        Assert.assertEquals(0, pacer.next());
+        clock.time += 2 * INTERVAL + 7;
+        Assert.assertEquals(2 * INTERVAL + 7, pacer.next());
+        Assert.assertEquals(2, pacer.getFrames());
+    }
+
+    /** Test for decimation of too fast frames. */
+    @Test
+    public final void testDecimation() throws Exception {
+        final TestClock clock = new TestClock();
+        final FramePacer pacer = new FramePacer(clock, FRAME_RATE, MAX_LATENCY);
+
+        Assert.assertEquals(0, pacer.next());
+        clock.time += INTERVAL / 2;
+        Assert.assertEquals(FramePacer.SKIP, pacer.next());
+        clock.time += INTERVAL / 2 - 1;
+        Assert.assertEquals(INTERVAL - 1, pacer.next());
+
+        Assert.assertEquals(2, pacer.getFrames());
+        Assert.assertEquals(1, pacer.getDecimated());
+        Assert.assertEquals(0, pacer.getDropped());
+    }
+
+    /** Test for decimation of a faster cadence to the frame-rate grid. */
+    @Test
+    public final void testDecimationCadence() throws Exception {
+        final TestClock clock = new TestClock();
+        final FramePacer pacer = new FramePacer(clock, 30, MAX_LATENCY);
+
+        for (int i = 0; i < 40; i++) {
+            pacer.next();
+            clock.time += 25000000L;
+        }
+
+        Assert.assertEquals(30, pacer.getFrames());
+        Assert.assertEquals(10, pacer.getDecimated());
+        Assert.assertEquals(0, pacer.getDropped());
+    }
+
+    /** Test for dropping of late frames. */
+    @Test
+    public final void testLateFrames() throws Exception {
+        final TestClock clock = new TestClock();
+        final FramePacer pacer = new FramePacer(clock, FRAME_RATE, MAX_LATENCY);
+
+        clock.time = 10 * INTERVAL;
+        Assert.assertEquals(0, pacer.next(clock.time - INTERVAL));
+        Assert.assertEquals(FramePacer.SKIP, pacer.next(clock.time - MAX_LATENCY - 1));
+        Assert.assertEquals(FramePacer.SKIP, pacer.next(clock.time - INTERVAL));
+        Assert.assertEquals(INTERVAL, pacer.next(clock.time));
+
+        Assert.assertEquals(2, pacer.getFrames());
+        Assert.assertEquals(0, pacer.getDecimated());
+        Assert.assertEquals(2, pacer.getDropped());
+    }
+
+    /** Test for the time-lapse capture interval. */
+    @Test
+    public final void testTimeLapse() throws Exception {
+        final TestClock clock = new TestClock();
+        final long capture = 20 * INTERVAL;
+        final FramePacer pacer = new FramePacer(clock, FRAME_RATE, MAX_LATENCY, capture);
+        Assert.assertTrue(pacer.isTimeLapse());
+
+        clock.time = 5000;
+        Assert.assertEquals(0, pacer.next());
+        clock.time += capture / 2;
+        Assert.assertEquals(FramePacer.SKIP, pacer.next());
+        clock.time += capture / 2 - 1;
+        Assert.assertEquals(INTERVAL, pacer.next());
+        clock.time += 3 * capture;
+        Assert.assertEquals(2 * INTERVAL, pacer.next());
+        Assert.assertEquals(FramePacer.SKIP, pacer.next(clock.time - 1));
+
+        Assert.assertEquals(3, pacer.getFrames());
+        Assert.assertEquals(1, pacer.getDecimated());
+        Assert.assertEquals(1, pacer.getDropped());
+    }
+
+    /** Test for the time-lapse capture times without a clock. */
+    @Test
+    public final void testTimeLapseCaptureTimes() throws Exception {
+        final FramePacer pacer = new FramePacer(null, FRAME_RATE, MAX_LATENCY, INTERVAL);
+        Assert.assertEquals(0, pacer.next(1000));
+        Assert.assertEquals(FramePacer.SKIP, pacer.next(1000 + INTERVAL / 2));
+        Assert.assertEquals(INTERVAL, pacer.next(1000 + 5 * INTERVAL));
+        Assert.assertEquals(2, pacer.getFrames());
+        Assert.assertEquals(1, pacer.getDecimated());
+    }
+
+    /** Test for the time-lapse capture grid with a slower cadence than the interval. */
+    @Test
+    public final void testTimeLapseCadence() throws Exception {
+        final FramePacer pacer = new FramePacer(null, FRAME_RATE, MAX_LATENCY, 20 * INTERVAL);
+        for (int i = 0; i <= 8; i++) {
+            pacer.next(i * 15 * INTERVAL);
+        }
+        // 12 seconds of 1.5 second submissions keep a capture each 2 seconds
+        Assert.assertEquals(7, pacer.getFrames());
+        Assert.assertEquals(2, pacer.getDecimated());
+    }
+
+    /** The manual clock. */
+    private static final class TestClock implements MpegEncoder.Clock {
+
+        /** The current time. */
+        long time = 0;
+
+        /** {@inheritDoc} */
+        @Override
+        public final long nanoTime() {
+            return time;
+        }
+    }
+}
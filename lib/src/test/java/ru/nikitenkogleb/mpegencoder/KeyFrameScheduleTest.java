@@ -0,0 +1,41 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The {@link KeyFrameSchedule} Local Unit Test.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+public class KeyFrameScheduleTest {
+
+    /** Test for unordered scheduling. */
+    @Test
+    public final void testPoll() throws Exception {
+        final KeyFrameSchedule schedule = new KeyFrameSchedule();
+        schedule.add(300); schedule.add(100); schedule.add(200);
+        Assert.assertEquals(3, schedule.size());
+
+        Assert.assertFalse(schedule.poll(50));
+        Assert.assertTrue(schedule.poll(100));
+        Assert.assertFalse(schedule.poll(150));
+        Assert.assertTrue(schedule.poll(350));
+        Assert.assertFalse(schedule.poll(400));
+        Assert.assertEquals(0, schedule.size());
+    }
+
+    /** Test for growing. */
+    @Test
+    public final void testGrow() throws Exception {
+        final KeyFrameSchedule schedule = new KeyFrameSchedule();
+        for (int i = 100; i > 0; i--) {
+            schedule.add(i);
+        }
+        for (int i = 1; i <= 100; i++) {
+            Assert.assertTrue(schedule.poll(i));
+        }
+        Assert.assertEquals(0, schedule.size());
+    }
+}
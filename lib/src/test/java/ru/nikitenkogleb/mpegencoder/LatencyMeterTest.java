@@ -0,0 +1,91 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The {@link LatencyMeter} Local Unit Test.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+public class LatencyMeterTest {
+
+    /** The frame interval (in nanoseconds). */
+    private static final long INTERVAL = 100000000L;
+
+    /** Test for latencies of frames in and out of order. */
+    @Test
+    public final void testLatency() throws Exception {
+        final TestClock clock = new TestClock();
+        final LatencyMeter meter = new LatencyMeter(clock);
+
+        clock.time = 1000;
+        meter.onFrame(0, LatencyMeter.UNKNOWN);
+        meter.onFrame(INTERVAL, clock.time - 3000);
+        clock.time += 5000;
+        Assert.assertEquals(8000, meter.onSample(INTERVAL / 1000));
+        clock.time += 5000;
+        Assert.assertEquals(10000, meter.onSample(0));
+        Assert.assertEquals(LatencyMeter.UNKNOWN, meter.onSample(0));
+
+        Assert.assertEquals(2, meter.getCount());
+        Assert.assertEquals(10000, meter.getLast());
+        Assert.assertEquals(9000, meter.getAverage());
+        Assert.assertEquals(10000, meter.getMax());
+    }
+
+    /** Test for frames stamped later by the surface. */
+    @Test
+    public final void testLateStamp() throws Exception {
+        final TestClock clock = new TestClock();
+        final LatencyMeter meter = new LatencyMeter(clock);
+        meter.onFrame(0, 0);
+        meter.onFrame(INTERVAL, 0);
+        clock.time = 2 * INTERVAL;
+        Assert.assertEquals(LatencyMeter.UNKNOWN, meter.onSample(-1));
+        Assert.assertEquals(2 * INTERVAL, meter.onSample(INTERVAL / 1000 + 5));
+        Assert.assertEquals(2 * INTERVAL, meter.onSample(5));
+        Assert.assertEquals(LatencyMeter.UNKNOWN, meter.onSample(INTERVAL / 1000 + 10));
+    }
+
+    /** Test for frames never encoded. */
+    @Test
+    public final void testOverwrite() throws Exception {
+        final LatencyMeter meter = new LatencyMeter(new TestClock());
+        for (int i = 0; i < 1000; i++) {
+            meter.onFrame(i * INTERVAL, 0);
+        }
+        Assert.assertEquals(LatencyMeter.UNKNOWN, meter.onSample(0));
+        Assert.assertEquals(0, meter.onSample(999 * INTERVAL / 1000));
+        Assert.assertEquals(1, meter.getCount());
+        Assert.assertEquals(0, meter.getAverage());
+    }
+
+    /** Test for the pending frames. */
+    @Test
+    public final void testPending() throws Exception {
+        final LatencyMeter meter = new LatencyMeter(new TestClock());
+        Assert.assertFalse(meter.isPending(0));
+        meter.onFrame(0, 0);
+        meter.onFrame(INTERVAL, 0);
+        Assert.assertTrue(meter.isPending(0));
+        Assert.assertTrue(meter.isPending(INTERVAL));
+        meter.onSample(INTERVAL / 1000 + 5);
+        Assert.assertTrue(meter.isPending(0));
+        Assert.assertFalse(meter.isPending(INTERVAL));
+    }
+
+    /** The manual clock. */
+    private static final class TestClock implements MpegEncoder.Clock {
+
+        /** The current time. */
+        long time = 0;
+
+        /** {@inheritDoc} */
+        @Override
+        public final long nanoTime() {
+            return time;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The {@link SampleRing} Local Unit Test.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+public class SampleRingTest {
+
+    /** The test capacity in bytes. */
+    private static final int CAPACITY = 100;
+    /** The test number of slots. */
+    private static final int SLOTS = 4;
+    /** The number of samples of the concurrent test. */
+    private static final int SAMPLES = 100000;
+
+    /** Test for the order of samples and their metadata. */
+    @Test
+    public final void testOrder() throws Exception {
+        final SampleRing ring = new SampleRing(CAPACITY, SLOTS);
+        Assert.assertNull(ring.peek());
+
+        final ByteBuffer first = sample(1, 10);
+        Assert.assertTrue(ring.offer(first, 100, 1));
+        Assert.assertEquals(0, first.position());
+        Assert.assertTrue(ring.offer(sample(2, 20), 200, 0));
+
+        assertSample(ring.peek(), 1, 10);
+        Assert.assertEquals(100, ring.getPresentationTime());
+        Assert.assertEquals(1, ring.getFlags());
+        ring.remove();
+        assertSample(ring.peek(), 2, 20);
+        Assert.assertEquals(200, ring.getPresentationTime());
+        ring.remove();
+        Assert.assertNull(ring.peek());
+        Assert.assertTrue(ring.isEmpty());
+        ring.close();
+    }
+
+    /** Test for the full ring by slots and by bytes. */
+    @Test
+    public final void testFull() throws Exception {
+        final SampleRing ring = new SampleRing(CAPACITY, SLOTS);
+        for (int i = 0; i < SLOTS; i++) {
+            Assert.assertTrue(ring.offer(sample(i, 1), i, 0));
+        }
+        Assert.assertFalse(ring.offer(sample(0, 1), 0, 0));
+        ring.close();
+
+        final SampleRing bytes = new SampleRing(CAPACITY, SLOTS);
+        Assert.assertTrue(bytes.offer(sample(1, 60), 0, 0));
+        Assert.assertFalse(bytes.offer(sample(2, 60), 0, 0));
+        Assert.assertNotNull(bytes.peek());
+        bytes.remove();
+        Assert.assertTrue(bytes.offer(sample(2, 60), 0, 0));
+        bytes.close();
+    }
+
+    /** Test for the samples skipping the end of the data. */
+    @Test
+    public final void testWrap() throws Exception {
+        final SampleRing ring = new SampleRing(CAPACITY, SLOTS);
+        Assert.assertTrue(ring.offer(sample(1, 70), 0, 0));
+        Assert.assertNotNull(ring.peek());
+        ring.remove();
+        Assert.assertTrue(ring.offer(sample(2, 50), 0, 0));
+        final ByteBuffer data = ring.peek();
+        assertSample(data, 2, 50);
+        Assert.assertEquals(0, data.position());
+        ring.remove();
+        ring.close();
+    }
+
+    /** Test for the producer and the consumer on different threads. */
+    @Test
+    public final void testConcurrent() throws Exception {
+        final SampleRing ring = new SampleRing(CAPACITY, SLOTS);
+        final Thread producer = new Thread(new Runnable() {
+            @Override
+            public final void run() {
+                for (int i = 0; i < SAMPLES; i++) {
+                    final ByteBuffer data = sample(i, 1 + i % 40);
+                    while (!ring.offer(data, i, 0)) {
+                        Thread.yield();
+                    }
+                }
+            }
+        });
+        producer.start();
+        for (int i = 0; i < SAMPLES; i++) {
+            ByteBuffer data;
+            while ((data = ring.peek()) == null) {
+                Thread.yield();
+            }
+            Assert.assertEquals(i, ring.getPresentationTime());
+            assertSample(data, i, 1 + i % 40);
+            ring.remove();
+        }
+        producer.join();
+        Assert.assertTrue(ring.isEmpty());
+        ring.close();
+    }
+
+    /** Test for the ring over the memory budget. */
+    @Test
+    public final void testOverBudget() throws Exception {
+        final int capacity = (int) BufferPool.getDefault().getBudget() + 1;
+        Assert.assertNull(SampleRing.tryCreate(capacity, SLOTS));
+        final SampleRing ring = SampleRing.tryCreate(CAPACITY, SLOTS);
+        Assert.assertNotNull(ring);
+        ring.close();
+    }
+
+    /**
+     * @param value the byte value
+     * @param size the sample size
+     *
+     * @return the sample filled with the value
+     */
+    private static ByteBuffer sample(int value, int size) {
+        final ByteBuffer result = ByteBuffer.allocate(size);
+        for (int i = 0; i < size; i++) {
+            result.put((byte) value);
+        }
+        result.flip();
+        return result;
+    }
+
+    /**
+     * @param data the sample data
+     * @param value the expected byte value
+     * @param size the expected size
+     */
+    private static void assertSample(ByteBuffer data, int value, int size) {
+        Assert.assertNotNull(data);
+        Assert.assertEquals(size, data.remaining());
+        for (int i = data.position(); i < data.limit(); i++) {
+            Assert.assertEquals((byte) value, data.get(i));
+        }
+    }
+}
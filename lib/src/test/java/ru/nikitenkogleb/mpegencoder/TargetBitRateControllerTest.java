@@ -0,0 +1,102 @@
+package ru.nikitenkogleb.mpegencoder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The {@link TargetBitRateController} Local Unit Test.
+ *
+ * @author Nikitenko Gleb
+ * @since 1.0, 19/10/2026
+ */
+public class TargetBitRateControllerTest {
+
+    /** The test frame-rate. */
+    private static final int FRAME_RATE = 10;
+    /** The frame interval (in microseconds). */
+    private static final long INTERVAL = 100000L;
+
+    /** Test for throughput target. */
+    @Test
+    public final void testThroughput() throws Exception {
+        final TargetBitRateController controller = TargetBitRateController.throughput(1000000);
+
+        // 2 Mbps output at 2 Mbps bitrate must be halved after the first window
+        final int bitRate = feed(controller, 0, FRAME_RATE + 1, 2000000 / 8 / FRAME_RATE, 2000000);
+        Assert.assertEquals(1000000, bitRate);
+    }
+
+    /** Test for reached throughput target. */
+    @Test
+    public final void testStable() throws Exception {
+        final TargetBitRateController controller = TargetBitRateController.throughput(1000000);
+
+        // the deviation under the threshold doesn't change the bitrate
+        final int bitRate =
+                feed(controller, 0, 2 * FRAME_RATE + 1, 1020000 / 8 / FRAME_RATE, 1000000);
+        Assert.assertEquals(1000000, bitRate);
+    }
+
+    /** Test for throughput bounds. */
+    @Test
+    public final void testBounds() throws Exception {
+        final TargetBitRateController controller = TargetBitRateController.throughput(1000000);
+        final int bitRate = feed(controller, 0, FRAME_RATE + 1, 100, 1000000);
+        Assert.assertEquals(1000000, bitRate);
+    }
+
+    /** Test for file-size target. */
+    @Test
+    public final void testFileSize() throws Exception {
+        final TargetBitRateController controller =
+                TargetBitRateController.fileSize(1000000, 10000, 10000000);
+
+        // 1 MB for 10 seconds is 800 Kbps, 1.6 Mbps output must be reduced
+        final int bitRate = feed(controller, 0, FRAME_RATE + 1, 1600000 / 8 / FRAME_RATE, 1600000);
+        Assert.assertTrue(bitRate < 1000000);
+        Assert.assertTrue(bitRate > 500000);
+    }
+
+    /** Test for file-size target of samples not starting at zero. */
+    @Test
+    public final void testFileSizeOffset() throws Exception {
+        final TargetBitRateController first =
+                TargetBitRateController.fileSize(1000000, 10000, 10000000);
+        final TargetBitRateController second =
+                TargetBitRateController.fileSize(1000000, 10000, 10000000);
+
+        // the duration is measured from the first sample
+        final int size = 1600000 / 8 / FRAME_RATE;
+        Assert.assertEquals(feed(first, 0, FRAME_RATE + 1, size, 1600000),
+                feed(second, 5 * FRAME_RATE, FRAME_RATE + 1, size, 1600000));
+    }
+
+    /** Test for exhausted file-size budget. */
+    @Test
+    public final void testExhausted() throws Exception {
+        final TargetBitRateController controller =
+                TargetBitRateController.fileSize(1000, 10000, 10000000);
+        // the exhausted budget scales 80 Kbps output towards the min bitrate
+        final int bitRate = feed(controller, 0, FRAME_RATE + 1, 1000, 1000000);
+        Assert.assertEquals(800000, bitRate);
+    }
+
+    /**
+     * Feeds samples of the same size to the controller.
+     *
+     * @param controller the controller
+     * @param first the first frame index
+     * @param count the number of frames
+     * @param size the size of samples
+     * @param bitRate the initial bitrate
+     *
+     * @return the resulting bitrate
+     */
+    private static int feed(TargetBitRateController controller, int first, int count,
+            int size, int bitRate) {
+        for (int i = first; i < first + count; i++) {
+            bitRate = controller.onSample(i * INTERVAL, size, bitRate);
+        }
+        return bitRate;
+    }
+}